@@ -0,0 +1,10 @@
+package app;
+
+// The session lacks the permission for an action. Shown to the user like
+// any other ValidationException.
+public class AccessDeniedException extends ValidationException {
+
+    public AccessDeniedException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,682 @@
+package app;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Headless JSON API over the same services the Dashboard uses, for front
+// desks that don't run the Swing app:
+//   GET    /api/doctors                      GET  /api/doctors/{id}/slots?date=YYYY-MM-DD
+//   GET    /api/patients?q=&before=&limit=   GET  /api/patients/{id}   POST /api/patients
+//   GET    /api/appointments?doctor=&date=&before=&limit=
+//   GET    /api/appointments/{id}            POST /api/appointments
+//   PUT    /api/appointments/{id}  (date/time)   DELETE /api/appointments/{id}
+// Every request authenticates with HTTP Basic against the users table and
+// runs with that user's Session, so the permission and ownership rules are
+// the ones the Dashboard enforces. Requests run on a fixed worker pool with
+// a bounded queue; when it is full the accepting thread serves the request
+// itself, which slows accepts instead of queueing without limit. Each request
+// is admitted through RequestScheduler's INTERACTIVE lane; a full lane is
+// answered with 503 and Retry-After.
+public class ApiServer {
+
+    private static final int MAX_BODY = 64 * 1024;
+    private static final int MAX_LIMIT = FullTextSearch.MAX_RESULTS;
+    private static final long AUTH_CACHE_MS = Math.max(0, DBConfig.getLong("api.authCacheSeconds", 60)) * 1000;
+    private static final long SLOW_MS = DBConfig.getLong("api.slowMs", 500);
+
+    private final HttpServer server;
+    private final ThreadPoolExecutor workers;
+
+    // Basic credentials -> session, so a desk polling every second doesn't hit users each time
+    private static final class CachedLogin {
+        final Session session;
+        final long expires;
+
+        CachedLogin(Session session, long expires) {
+            this.session = session;
+            this.expires = expires;
+        }
+    }
+
+    private final Map<String, CachedLogin> logins = new ConcurrentHashMap<>();
+
+    // an HTTP status with a message for the client
+    private static final class ApiError extends Exception {
+        final int status;
+
+        ApiError(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+
+    private ApiServer(HttpServer server, ThreadPoolExecutor workers) {
+        this.server = server;
+        this.workers = workers;
+    }
+
+    // binds api.bind:port (default 127.0.0.1) and starts serving
+    public static ApiServer start(int port) throws IOException {
+        String bind = DBConfig.get("api.bind", "127.0.0.1");
+        int threads = Math.max(1, DBConfig.getInt("api.threads", 16));
+        int queue = Math.max(1, DBConfig.getInt("api.queue", 256));
+        AtomicInteger n = new AtomicInteger();
+        ThreadPoolExecutor workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queue), r -> {
+                    Thread t = new Thread(r, "api-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.CallerRunsPolicy());
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(bind, port), 0);
+        ApiServer api = new ApiServer(server, workers);
+        server.createContext("/api/", api::handle);
+        server.setExecutor(workers);
+        server.start();
+        System.out.println("ApiServer: listening on http://" + bind + ":" + port + "/api/ (" + threads + " workers)");
+        return api;
+    }
+
+    public void stop() {
+        server.stop(1);
+        workers.shutdownNow();
+    }
+
+    // ---- DISPATCH ----
+
+    private void handle(HttpExchange ex) throws IOException {
+        long started = System.nanoTime();
+        String method = ex.getRequestMethod();
+        String path = ex.getRequestURI().getPath();
+        int status;
+        String body;
+        try {
+            // every API call is a lookup or a booking: the INTERACTIVE lane
+            RequestScheduler.Permit permit = RequestScheduler.enter(RequestScheduler.Lane.INTERACTIVE);
+            try {
+                Session session = authenticate(ex);
+                String[] seg = path.substring("/api/".length()).split("/");
+                Map<String, String> query = parseQuery(ex.getRequestURI().getRawQuery());
+                Object[] result = route(session, method, seg, query, ex);
+                status = (Integer) result[0];
+                body = (String) result[1];
+            } finally {
+                permit.close();
+            }
+        } catch (BusyException e) {
+            status = 503;
+            body = error(e.getMessage());
+            ex.getResponseHeaders().set("Retry-After", "1");
+        } catch (ApiError e) {
+            status = e.status;
+            body = error(e.getMessage());
+            if (status == 401) ex.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"hospital\"");
+        } catch (AccessDeniedException e) {
+            status = 403;
+            body = error(e.getMessage());
+        } catch (ValidationException e) {
+            status = 400;
+            body = error(e.getMessage());
+        } catch (SQLException e) {
+            if (AppointmentService.isBusy(e)) {
+                status = 503;
+                body = error("The database is busy; try again.");
+                ex.getResponseHeaders().set("Retry-After", "1");
+            } else {
+                e.printStackTrace();
+                status = 500;
+                body = error("Internal error."); // details stay in the server log
+            }
+        } catch (IOException | RuntimeException e) {
+            e.printStackTrace();
+            status = 500;
+            body = error("Internal error.");
+        }
+        send(ex, status, body);
+
+        long ms = (System.nanoTime() - started) / 1_000_000;
+        if (ms >= SLOW_MS) System.out.println("ApiServer: slow " + method + " " + path + " -> " + status + " in " + ms + " ms");
+    }
+
+    // {status, json} (json null = no body)
+    private Object[] route(Session s, String method, String[] seg, Map<String, String> q, HttpExchange ex)
+            throws ApiError, SQLException, ValidationException, IOException {
+        String resource = seg.length > 0 ? seg[0] : "";
+        Integer id = seg.length > 1 ? parseId(seg[1]) : null;
+        switch (resource) {
+            case "doctors":
+                if (seg.length == 1 && method.equals("GET")) return ok(listDoctors(s));
+                if (seg.length == 3 && seg[2].equals("slots") && method.equals("GET")) return ok(freeSlots(s, id, q));
+                break;
+            case "patients":
+                if (seg.length == 1 && method.equals("GET")) return ok(listPatients(s, q));
+                if (seg.length == 1 && method.equals("POST")) return created(addPatient(s, readBody(ex)));
+                if (seg.length == 2 && method.equals("GET")) return ok(getPatient(s, id));
+                break;
+            case "appointments":
+                if (seg.length == 1 && method.equals("GET")) return ok(listAppointments(s, q));
+                if (seg.length == 1 && method.equals("POST")) return created(book(s, readBody(ex)));
+                if (seg.length == 2 && method.equals("GET")) return ok(getAppointment(s, id));
+                if (seg.length == 2 && method.equals("PUT")) return ok(reschedule(s, id, readBody(ex)));
+                if (seg.length == 2 && method.equals("DELETE")) {
+                    if (id == null || !AppointmentService.delete(s, id)) throw new ApiError(404, "Appointment not found.");
+                    return new Object[] {204, null};
+                }
+                break;
+            default:
+                throw new ApiError(404, "Unknown resource.");
+        }
+        throw new ApiError(405, "Method not allowed here.");
+    }
+
+    private static Object[] ok(String json) { return new Object[] {200, json}; }
+
+    private static Object[] created(String json) { return new Object[] {201, json}; }
+
+    // ---- AUTH ----
+
+    // same check as LoginForm
+    private Session authenticate(HttpExchange ex) throws ApiError, SQLException {
+        String header = ex.getRequestHeaders().getFirst("Authorization");
+        if (header == null || !header.regionMatches(true, 0, "Basic ", 0, 6)) {
+            throw new ApiError(401, "Authentication required.");
+        }
+        long now = System.currentTimeMillis();
+        CachedLogin cached = logins.get(header);
+        if (cached != null && cached.expires > now) return cached.session;
+
+        String decoded;
+        try {
+            decoded = new String(Base64.getDecoder().decode(header.substring(6).trim()), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException bad) {
+            throw new ApiError(401, "Malformed credentials.");
+        }
+        int colon = decoded.indexOf(':');
+        if (colon < 0) throw new ApiError(401, "Malformed credentials.");
+        String user = decoded.substring(0, colon);
+        String pass = decoded.substring(colon + 1);
+
+        String sql = "SELECT user_id, role, patient_ref_id FROM users WHERE username = ? AND password = ?";
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setString(1, user);
+            pst.setString(2, pass);
+            try (ResultSet rs = pst.executeQuery()) {
+                if (!rs.next()) {
+                    logins.remove(header);
+                    throw new ApiError(401, "Invalid username / password");
+                }
+                Session session = Session.of(rs.getInt("user_id"), user, rs.getString("role"), rs.getInt("patient_ref_id"));
+                if (AUTH_CACHE_MS > 0) {
+                    if (logins.size() > 10_000) logins.clear(); // stale entries from many users; cheap to rebuild
+                    logins.put(header, new CachedLogin(session, now + AUTH_CACHE_MS));
+                }
+                return session;
+            }
+        }
+    }
+
+    // ---- DOCTORS ----
+
+    // everyone who can book needs the doctor list, even without View Doctors
+    private static void requireDoctorList(Session s) throws AccessDeniedException {
+        if (!s.has(Permission.VIEW_DOCTORS) && !s.has(Permission.BOOK_ANY_PATIENT) && !s.has(Permission.BOOK_OWN)) {
+            s.require(Permission.VIEW_DOCTORS);
+        }
+    }
+
+    private static String listDoctors(Session s) throws SQLException, IOException, AccessDeniedException {
+        requireDoctorList(s);
+        StringWriter w = new StringWriter();
+        w.write("{\"items\":[");
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(
+                     "SELECT doctor_id, name, specialization, phone FROM doctors ORDER BY doctor_id");
+             ResultSet rs = pst.executeQuery()) {
+            boolean first = true;
+            while (rs.next()) {
+                if (!first) w.write(',');
+                first = false;
+                Map<String, Object> row = new LinkedHashMap<>();
+                row.put("doctor_id", rs.getInt("doctor_id"));
+                row.put("name", rs.getString("name"));
+                row.put("specialization", rs.getString("specialization"));
+                row.put("phone", rs.getString("phone"));
+                writeObject(w, row);
+            }
+        }
+        w.write("]}");
+        return w.toString();
+    }
+
+    private static String freeSlots(Session s, Integer doctorId, Map<String, String> q)
+            throws ApiError, SQLException, IOException, AccessDeniedException {
+        requireDoctorList(s);
+        if (doctorId == null) throw new ApiError(404, "Doctor not found.");
+        LocalDate day = requireDate(q.get("date"));
+        StringWriter w = new StringWriter();
+        w.write("{\"doctor_id\":" + doctorId + ",\"date\":\"" + day + "\",\"free\":[");
+        try (Connection con = DBConnection.getConnection()) {
+            List<Integer> free = SlotScheduler.freeMinutes(con, doctorId, day);
+            for (int i = 0; i < free.size(); i++) {
+                if (i > 0) w.write(',');
+                w.write('"');
+                w.write(DateTimeUtils.formatMinute(free.get(i)));
+                w.write('"');
+            }
+        }
+        w.write("]}");
+        return w.toString();
+    }
+
+    // ---- PATIENTS ----
+
+    private static final String PATIENT_COLUMNS = "SELECT patient_id, name, age, gender, phone, address FROM patients ";
+
+    // newest first; q = full-text search, before = keyset cursor from next_before
+    private static String listPatients(Session s, Map<String, String> q)
+            throws ApiError, SQLException, IOException, AccessDeniedException {
+        s.require(Permission.VIEW_PATIENTS);
+        String match = FullTextSearch.toMatchExpression(q.get("q"));
+        int before = optionalInt(q, "before", Integer.MAX_VALUE);
+        int limit = limit(q);
+        // with a search the cursor goes inside the FTS query, so every page sees all matches
+        String sql = PATIENT_COLUMNS
+            + (match == null ? "WHERE patient_id < ?" : "WHERE patient_id IN (" + FullTextSearch.PATIENT_IDS_BEFORE + ")")
+            + " ORDER BY patient_id DESC LIMIT ?";
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql)) {
+            int i = 1;
+            if (match != null) pst.setString(i++, match);
+            pst.setInt(i++, before);
+            if (match != null) pst.setInt(i++, limit);
+            pst.setInt(i, limit);
+            try (ResultSet rs = pst.executeQuery()) {
+                return page(rs, limit, "patient_id", ApiServer::patientJson);
+            }
+        }
+    }
+
+    // patients may read their own record
+    private static String getPatient(Session s, Integer id) throws ApiError, SQLException, IOException {
+        if (id == null || !(s.has(Permission.VIEW_PATIENTS) || (s.patientId > 0 && s.patientId == id))) {
+            throw new ApiError(404, "Patient not found.");
+        }
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(PATIENT_COLUMNS + "WHERE patient_id = ?")) {
+            pst.setInt(1, id);
+            try (ResultSet rs = pst.executeQuery()) {
+                if (!rs.next()) throw new ApiError(404, "Patient not found.");
+                return patientJson(rs);
+            }
+        }
+    }
+
+    private static String addPatient(Session s, Map<String, String> body) throws SQLException, ValidationException {
+        String gender = body.get("gender");
+        int id = PatientService.add(s, body.get("name"), body.get("age"), gender == null ? "Other" : gender,
+                body.get("phone"), body.get("address"), null);
+        return "{\"patient_id\":" + id + "}";
+    }
+
+    private static String patientJson(ResultSet rs) throws SQLException, IOException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("patient_id", rs.getInt("patient_id"));
+        row.put("name", rs.getString("name"));
+        row.put("age", rs.getInt("age"));
+        row.put("gender", rs.getString("gender"));
+        row.put("phone", rs.getString("phone"));
+        row.put("address", rs.getString("address"));
+        StringWriter w = new StringWriter();
+        writeObject(w, row);
+        return w.toString();
+    }
+
+    // ---- APPOINTMENTS ----
+
+    private static final String APPOINTMENT_COLUMNS =
+        "SELECT a.appointment_id, a.patient_id, p.name AS patient_name, a.doctor_id, d.name AS doctor_name, "
+        + "a.date, a.time, a.appt_day, a.appt_minute, a.symptoms "
+        + "FROM appointments a "
+        + "LEFT JOIN patients p ON a.patient_id = p.patient_id "
+        + "LEFT JOIN doctors d ON a.doctor_id = d.doctor_id ";
+
+    // newest first, limited to what the session may see
+    private static String listAppointments(Session s, Map<String, String> q)
+            throws ApiError, SQLException, IOException, AccessDeniedException {
+        if (!s.has(Permission.VIEW_ALL_APPOINTMENTS)) s.require(Permission.VIEW_OWN_APPOINTMENTS);
+        int scope = s.appointmentScope();
+        int doctorId = optionalInt(q, "doctor", -1);
+        int patientId = optionalInt(q, "patient", -1);
+        LocalDate day = q.get("date") == null ? null : requireDate(q.get("date"));
+        int before = optionalInt(q, "before", Integer.MAX_VALUE);
+        int limit = limit(q);
+
+        StringBuilder sql = new StringBuilder(APPOINTMENT_COLUMNS).append("WHERE a.appointment_id < ?");
+        if (scope >= 0) sql.append(" AND a.patient_id = ").append(scope);
+        if (patientId > 0) sql.append(" AND a.patient_id = ?");
+        if (doctorId > 0) sql.append(" AND a.doctor_id = ?");
+        if (day != null) sql.append(" AND a.appt_day = ?");
+        sql.append(" ORDER BY a.appointment_id DESC LIMIT ?");
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql.toString())) {
+            int i = 1;
+            pst.setInt(i++, before);
+            if (patientId > 0) pst.setInt(i++, patientId);
+            if (doctorId > 0) pst.setInt(i++, doctorId);
+            if (day != null) pst.setLong(i++, day.toEpochDay());
+            pst.setInt(i, limit);
+            try (ResultSet rs = pst.executeQuery()) {
+                return page(rs, limit, "appointment_id", ApiServer::appointmentJson);
+            }
+        }
+    }
+
+    // 404 rather than 403 for someone else's appointment, so ids can't be probed
+    private static String getAppointment(Session s, Integer id) throws ApiError, SQLException, IOException {
+        if (id == null) throw new ApiError(404, "Appointment not found.");
+        int scope = s.appointmentScope();
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(APPOINTMENT_COLUMNS + "WHERE a.appointment_id = ?")) {
+            pst.setInt(1, id);
+            try (ResultSet rs = pst.executeQuery()) {
+                if (!rs.next() || (scope >= 0 && rs.getInt("patient_id") != scope)) {
+                    throw new ApiError(404, "Appointment not found.");
+                }
+                return appointmentJson(rs);
+            }
+        }
+    }
+
+    // patient_id may be left out by a patient booking for themselves
+    private static String book(Session s, Map<String, String> body) throws ApiError, SQLException, ValidationException {
+        int patientId = body.get("patient_id") == null && s.patientId > 0 ? s.patientId : requireInt(body, "patient_id");
+        int doctorId = requireInt(body, "doctor_id");
+        LocalDate day = requireDate(body.get("date"));
+        int minute = requireMinute(body.get("time"));
+        String symptoms = body.get("symptoms") == null ? "" : body.get("symptoms").trim();
+        int id = AppointmentService.book(s, patientId, doctorId, day, minute, symptoms);
+        return "{\"appointment_id\":" + id + "}";
+    }
+
+    private static String reschedule(Session s, Integer id, Map<String, String> body)
+            throws ApiError, SQLException, ValidationException {
+        if (id == null) throw new ApiError(404, "Appointment not found.");
+        LocalDate day = requireDate(body.get("date"));
+        int minute = requireMinute(body.get("time"));
+        AppointmentService.reschedule(s, id, day, minute);
+        return "{\"appointment_id\":" + id + ",\"date\":\"" + day + "\",\"time\":\"" + DateTimeUtils.formatMinute(minute) + "\"}";
+    }
+
+    private static String appointmentJson(ResultSet rs) throws SQLException, IOException {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("appointment_id", rs.getInt("appointment_id"));
+        row.put("patient_id", rs.getInt("patient_id"));
+        row.put("patient_name", rs.getString("patient_name"));
+        row.put("doctor_id", rs.getInt("doctor_id"));
+        row.put("doctor_name", rs.getString("doctor_name"));
+        row.put("date", DateTimeUtils.formatApptDate(rs));
+        row.put("time", DateTimeUtils.formatApptTime(rs));
+        row.put("symptoms", rs.getString("symptoms"));
+        StringWriter w = new StringWriter();
+        writeObject(w, row);
+        return w.toString();
+    }
+
+    // ---- PARAMETERS ----
+
+    private static Integer parseId(String s) {
+        try {
+            int id = Integer.parseInt(s);
+            return id > 0 ? id : null;
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    private static int optionalInt(Map<String, String> m, String key, int def) throws ApiError {
+        String v = m.get(key);
+        if (v == null || v.trim().isEmpty()) return def;
+        try {
+            return Integer.parseInt(v.trim());
+        } catch (NumberFormatException ex) {
+            throw new ApiError(400, "\"" + key + "\" must be a number.");
+        }
+    }
+
+    private static int requireInt(Map<String, String> m, String key) throws ApiError {
+        int v = optionalInt(m, key, -1);
+        if (v <= 0) throw new ApiError(400, "\"" + key + "\" is required.");
+        return v;
+    }
+
+    private static int limit(Map<String, String> q) throws ApiError {
+        return Math.max(1, Math.min(MAX_LIMIT, optionalInt(q, "limit", 100)));
+    }
+
+    // same formats the booking form accepts
+    private static LocalDate requireDate(String s) throws ApiError {
+        LocalDate d = s == null ? null : DateTimeUtils.parseDate(s.trim());
+        if (d == null) throw new ApiError(400, "Unrecognized date. Use YYYY-MM-DD or DD-MM-YYYY or MM/DD/YYYY.");
+        return d;
+    }
+
+    private static int requireMinute(String s) throws ApiError {
+        LocalTime t = s == null ? null : DateTimeUtils.parseTime(s.trim());
+        if (t == null) throw new ApiError(400, "Enter a time, e.g. 10:30 AM or 15:30.");
+        return DateTimeUtils.toMinuteOfDay(t);
+    }
+
+    private static Map<String, String> parseQuery(String raw) {
+        Map<String, String> out = new HashMap<>();
+        if (raw == null || raw.isEmpty()) return out;
+        for (String pair : raw.split("&")) {
+            int eq = pair.indexOf('=');
+            String k = eq < 0 ? pair : pair.substring(0, eq);
+            String v = eq < 0 ? "" : pair.substring(eq + 1);
+            try {
+                out.put(URLDecoder.decode(k, StandardCharsets.UTF_8), URLDecoder.decode(v, StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException ignore) {
+                // malformed %-escape: drop the parameter
+            }
+        }
+        return out;
+    }
+
+    // ---- JSON ----
+
+    private interface RowJson {
+        String of(ResultSet rs) throws SQLException, IOException;
+    }
+
+    // {"items":[...],"next_before":<id of the last row, or null when this was the last page>}
+    private static String page(ResultSet rs, int limit, String idColumn, RowJson row) throws SQLException, IOException {
+        StringBuilder sb = new StringBuilder("{\"items\":[");
+        int n = 0;
+        int lastId = 0;
+        while (rs.next()) {
+            if (n++ > 0) sb.append(',');
+            sb.append(row.of(rs));
+            lastId = rs.getInt(idColumn);
+        }
+        sb.append("],\"next_before\":").append(n == limit ? String.valueOf(lastId) : "null").append('}');
+        return sb.toString();
+    }
+
+    private static void writeObject(StringWriter w, Map<String, Object> row) throws IOException {
+        w.write('{');
+        boolean first = true;
+        for (Map.Entry<String, Object> e : row.entrySet()) {
+            if (!first) w.write(',');
+            first = false;
+            w.write('"');
+            w.write(e.getKey());
+            w.write("\":");
+            Object v = e.getValue();
+            if (v == null) w.write("null");
+            else if (v instanceof Number) w.write(v.toString());
+            else ChangeFeed.writeJsonString(w, v.toString());
+        }
+        w.write('}');
+    }
+
+    private static String error(String message) {
+        StringWriter w = new StringWriter();
+        w.write("{\"error\":");
+        try {
+            ChangeFeed.writeJsonString(w, message == null ? "" : message);
+        } catch (IOException impossible) {
+            // StringWriter doesn't throw
+        }
+        w.write('}');
+        return w.toString();
+    }
+
+    private static Map<String, String> readBody(HttpExchange ex) throws ApiError, IOException {
+        byte[] bytes;
+        try (InputStream in = ex.getRequestBody()) {
+            bytes = in.readNBytes(MAX_BODY + 1);
+        }
+        if (bytes.length > MAX_BODY) throw new ApiError(413, "Request body too large.");
+        return JsonObjectParser.parse(new String(bytes, StandardCharsets.UTF_8));
+    }
+
+    private static void send(HttpExchange ex, int status, String json) throws IOException {
+        try {
+            if (json == null) {
+                ex.sendResponseHeaders(status, -1);
+                return;
+            }
+            byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+            ex.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            ex.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = ex.getResponseBody()) {
+                out.write(bytes);
+            }
+        } finally {
+            ex.close();
+        }
+    }
+
+    // Flat JSON objects only ({"key": "text" | number | true | false | null, ...}),
+    // which is all the request bodies are. Every value comes back as a string
+    // (null for JSON null) so the same parsing as the form fields applies.
+    static final class JsonObjectParser {
+        private final String s;
+        private int i;
+
+        private JsonObjectParser(String s) {
+            this.s = s;
+        }
+
+        static Map<String, String> parse(String text) throws ApiError {
+            JsonObjectParser p = new JsonObjectParser(text);
+            try {
+                Map<String, String> out = p.object();
+                p.skipSpace();
+                if (p.i != p.s.length()) throw p.bad();
+                return out;
+            } catch (IndexOutOfBoundsException ex) {
+                throw p.bad();
+            }
+        }
+
+        private Map<String, String> object() throws ApiError {
+            Map<String, String> out = new HashMap<>();
+            skipSpace();
+            expect('{');
+            skipSpace();
+            if (s.charAt(i) == '}') { i++; return out; }
+            while (true) {
+                skipSpace();
+                String key = string();
+                skipSpace();
+                expect(':');
+                skipSpace();
+                out.put(key, value());
+                skipSpace();
+                char ch = s.charAt(i++);
+                if (ch == '}') return out;
+                if (ch != ',') throw bad();
+            }
+        }
+
+        private String value() throws ApiError {
+            char ch = s.charAt(i);
+            if (ch == '"') return string();
+            int start = i;
+            while (i < s.length() && "{}[],: \t\r\n".indexOf(s.charAt(i)) < 0) i++;
+            String word = s.substring(start, i);
+            if (word.equals("null")) return null;
+            if (word.equals("true") || word.equals("false")) return word;
+            if (word.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) return word;
+            throw bad(); // nested objects/arrays aren't part of any request
+        }
+
+        private String string() throws ApiError {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char ch = s.charAt(i++);
+                if (ch == '"') return sb.toString();
+                if (ch != '\\') {
+                    sb.append(ch);
+                    continue;
+                }
+                char esc = s.charAt(i++);
+                switch (esc) {
+                    case '"': case '\\': case '/': sb.append(esc); break;
+                    case 'b': sb.append('\b'); break;
+                    case 'f': sb.append('\f'); break;
+                    case 'n': sb.append('\n'); break;
+                    case 'r': sb.append('\r'); break;
+                    case 't': sb.append('\t'); break;
+                    case 'u':
+                        try {
+                            sb.append((char) Integer.parseInt(s.substring(i, i + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw bad();
+                        }
+                        i += 4;
+                        break;
+                    default: throw bad();
+                }
+            }
+        }
+
+        private void expect(char ch) throws ApiError {
+            if (s.charAt(i++) != ch) throw bad();
+        }
+
+        private void skipSpace() {
+            while (i < s.length() && Character.isWhitespace(s.charAt(i))) i++;
+        }
+
+        private ApiError bad() {
+            return new ApiError(400, "Malformed JSON body (expected a flat object).");
+        }
+    }
+}
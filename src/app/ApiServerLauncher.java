@@ -0,0 +1,34 @@
+package app;
+
+// Headless server mode: the JSON API without the Swing UI, e.g. on the
+// machine that holds hospital.db:
+//   java -Djava.awt.headless=true -cp <classpath> app.ApiServerLauncher [port]
+// Runs until the process is stopped.
+public class ApiServerLauncher {
+    public static void main(String[] args) {
+        int port = DBConfig.getInt("api.port", 8085);
+        if (args.length > 0) {
+            try {
+                port = Integer.parseInt(args[0]);
+            } catch (NumberFormatException ex) {
+                System.err.println("usage: ApiServerLauncher [port]");
+                System.exit(2);
+            }
+        }
+
+        DBConnection.initializeIfNeeded();
+
+        DBSeed.seedIfNeeded();
+
+        // converts appointments stored before the typed date columns existed
+        AppointmentBackfill.startInBackground();
+
+        try {
+            ApiServer server = ApiServer.start(port);
+            Runtime.getRuntime().addShutdownHook(new Thread(server::stop, "api-shutdown"));
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
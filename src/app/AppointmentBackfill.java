@@ -0,0 +1,87 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+// One-time conversion of appointments written before the typed
+// appt_day / appt_minute columns existed. Runs on a daemon thread in
+// small batches so startup and the desk are never held up by it.
+public class AppointmentBackfill {
+
+    private static final int BATCH_SIZE = 500;
+
+    public static void startInBackground() {
+        Thread t = new Thread(AppointmentBackfill::run, "appointment-backfill");
+        t.setDaemon(true);
+        t.setPriority(Thread.MIN_PRIORITY);
+        t.start();
+    }
+
+    private static void run() {
+        String select = "SELECT appointment_id, date, time FROM appointments "
+                      + "WHERE appt_day IS NULL AND appointment_id > ? ORDER BY appointment_id LIMIT " + BATCH_SIZE;
+        String update = "UPDATE appointments SET appt_day = ?, date = ?, time = ? "
+                      + "WHERE appointment_id = ? AND appt_day IS NULL";
+        // separate so a legacy double booking keeps its day but not a second claim on the slot
+        String updateMinute = "UPDATE OR IGNORE appointments SET appt_minute = ? WHERE appointment_id = ?";
+        long lastId = 0;
+        int converted = 0, unreadable = 0;
+
+        try {
+            while (true) {
+                int seen = 0;
+                try (Connection c = DBConnection.getConnection()) {
+                    c.setAutoCommit(false);
+                    try (PreparedStatement sel = c.prepareStatement(select);
+                         PreparedStatement upd = c.prepareStatement(update);
+                         PreparedStatement updMin = c.prepareStatement(updateMinute)) {
+                        sel.setLong(1, lastId);
+                        try (ResultSet rs = sel.executeQuery()) {
+                            while (rs.next()) {
+                                seen++;
+                                lastId = rs.getLong("appointment_id");
+                                LocalDate d = DateTimeUtils.parseLegacyDate(rs.getObject("date"));
+                                if (d == null) { unreadable++; continue; } // left as-is; display falls back to raw text
+                                String rawTime = rs.getString("time");
+                                LocalTime t = DateTimeUtils.parseTime(rawTime);
+
+                                upd.setLong(1, d.toEpochDay());
+                                upd.setString(2, d.toString());
+                                upd.setString(3, t != null ? t.format(DateTimeUtils.DISPLAY_TIME) : rawTime);
+                                upd.setLong(4, lastId);
+                                upd.addBatch();
+                                if (t != null) {
+                                    updMin.setInt(1, DateTimeUtils.toMinuteOfDay(t));
+                                    updMin.setLong(2, lastId);
+                                    updMin.addBatch();
+                                }
+                                converted++;
+                            }
+                        }
+                        upd.executeBatch();
+                        updMin.executeBatch();
+                        c.commit();
+                    } catch (SQLException ex) {
+                        c.rollback();
+                        throw ex;
+                    } finally {
+                        c.setAutoCommit(true);
+                    }
+                }
+                if (seen < BATCH_SIZE) break;
+                Thread.yield();
+            }
+            if (converted > 0) SlotScheduler.invalidateAll(); // cached days may now have more bookings
+            if (converted > 0 || unreadable > 0) {
+                System.out.println("AppointmentBackfill: converted " + converted + " rows"
+                        + (unreadable > 0 ? ", " + unreadable + " with unreadable dates" : ""));
+            }
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+    }
+}
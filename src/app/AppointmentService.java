@@ -0,0 +1,289 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Booking, rescheduling and cancelling appointments. Each call is one
+// IMMEDIATE write transaction: the write lock is taken up front, so two
+// desks can't interleave a read and a write on the same appointment, and
+// SQLITE_BUSY (another process holding the lock past busy_timeout) is
+// retried with jittered exponential backoff. Every call takes the caller's
+// Session: patients may only book, move or cancel their own appointments.
+// Call from a background thread.
+public class AppointmentService {
+
+    private static final int MAX_ATTEMPTS = Math.max(1, DBConfig.getInt("db.write.retries", 5));
+    private static final long BASE_BACKOFF_MS = Math.max(1, DBConfig.getLong("db.write.backoffMs", 25));
+
+    // a unit of work run inside the transaction
+    interface TxWork<T> {
+        T run(Connection c) throws SQLException, ValidationException;
+    }
+
+    // ---- BOOK ----
+    // returns the new appointment id
+    public static int book(Session session, int patientId, int doctorId, LocalDate day, int minute, String symptoms)
+            throws SQLException, ValidationException {
+        session.requireActFor(patientId);
+        // the FK constraints check the patient/doctor and the unique slot index checks
+        // the slot, so the whole booking is this one statement
+        String ins = "INSERT INTO appointments (patient_id, doctor_id, date, time, symptoms, appt_day, appt_minute) "
+                   + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        int id = inWriteTransaction(c -> {
+            SlotScheduler.checkBookable(c, doctorId, day, minute); // cached bitmap, no query when warm
+            try (PreparedStatement pst = c.prepareStatement(ins, Statement.RETURN_GENERATED_KEYS)) {
+                pst.setInt(1, patientId);
+                pst.setInt(2, doctorId);
+                pst.setString(3, day.toString());
+                pst.setString(4, DateTimeUtils.formatMinute(minute));
+                pst.setString(5, symptoms);
+                pst.setLong(6, day.toEpochDay());
+                pst.setInt(7, minute);
+                try {
+                    pst.executeUpdate();
+                } catch (SQLException ex) {
+                    rethrow(c, ex, doctorId, day, minute);
+                }
+                try (ResultSet keys = pst.getGeneratedKeys()) {
+                    return keys.next() ? keys.getInt(1) : -1;
+                }
+            }
+        });
+        SlotScheduler.occupy(doctorId, day.toEpochDay(), minute);
+        if (id > 0) DataChangeBus.inserted("appointments", id); else DataChangeBus.reload("appointments");
+        return id;
+    }
+
+    // ---- RECURRING SERIES ----
+    // Books every date of the series at the same time with one doctor, in one
+    // transaction with one batched INSERT. Every occurrence is checked against the
+    // schedule first; taken or off-hours dates either fail the whole series or,
+    // with skipConflicts, are left out. Returns the ids booked.
+    public static int[] bookSeries(Session session, int patientId, int doctorId, LocalDate first, int minute,
+                                   String symptoms, Recurrence rule, boolean skipConflicts)
+            throws SQLException, ValidationException {
+        session.requireActFor(patientId);
+        List<LocalDate> dates = rule.dates(first);
+        if (dates.isEmpty()) throw new ValidationException("The series has no dates; check the end date.");
+        String ins = "INSERT INTO appointments (patient_id, doctor_id, date, time, symptoms, appt_day, appt_minute) "
+                   + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String time = DateTimeUtils.formatMinute(minute);
+
+        Series booked = inWriteTransaction(c -> {
+            SlotScheduler.warm(c, doctorId, dates.get(0), dates.get(dates.size() - 1)); // one read for the whole range
+            List<LocalDate> book = new ArrayList<>(dates.size());
+            List<String> problems = new ArrayList<>();
+            for (LocalDate d : dates) {
+                try {
+                    SlotScheduler.checkSlot(c, doctorId, d, minute);
+                    book.add(d);
+                } catch (ValidationException ex) {
+                    problems.add(d + ": " + ex.getMessage());
+                }
+            }
+            if (!problems.isEmpty() && !skipConflicts) {
+                StringBuilder sb = new StringBuilder(problems.size() + " of " + dates.size()
+                        + " dates can't be booked:");
+                for (int i = 0; i < problems.size() && i < 10; i++) sb.append("\n  ").append(problems.get(i));
+                if (problems.size() > 10) sb.append("\n  ...");
+                throw new ValidationException(sb.toString());
+            }
+            if (book.isEmpty()) throw new ValidationException("None of the " + dates.size() + " dates are free.");
+
+            try (PreparedStatement pst = c.prepareStatement(ins)) {
+                for (LocalDate d : book) {
+                    pst.setInt(1, patientId);
+                    pst.setInt(2, doctorId);
+                    pst.setString(3, d.toString());
+                    pst.setString(4, time);
+                    pst.setString(5, symptoms);
+                    pst.setLong(6, d.toEpochDay());
+                    pst.setInt(7, minute);
+                    pst.addBatch();
+                }
+                try {
+                    pst.executeBatch();
+                } catch (SQLException ex) {
+                    if (SlotScheduler.isSlotTaken(ex)) {
+                        SlotScheduler.invalidateDoctor(doctorId);
+                        throw new ValidationException("Another desk booked one of these slots meanwhile; nothing was booked. Try again.");
+                    }
+                    rethrow(c, ex, doctorId, first, minute);
+                }
+            }
+
+            // the new ids, read back through the unique slot index
+            List<Integer> out = new ArrayList<>(book.size());
+            try (PreparedStatement pst = c.prepareStatement(
+                    "SELECT appointment_id, appt_day FROM appointments "
+                    + "WHERE doctor_id = ? AND appt_day BETWEEN ? AND ? AND appt_minute = ? AND patient_id = ?")) {
+                pst.setInt(1, doctorId);
+                pst.setLong(2, book.get(0).toEpochDay());
+                pst.setLong(3, book.get(book.size() - 1).toEpochDay());
+                pst.setInt(4, minute);
+                pst.setInt(5, patientId);
+                java.util.Set<Long> days = new java.util.HashSet<>();
+                for (LocalDate d : book) days.add(d.toEpochDay());
+                try (ResultSet rs = pst.executeQuery()) {
+                    while (rs.next()) if (days.contains(rs.getLong(2))) out.add(rs.getInt(1));
+                }
+            }
+            return new Series(out.stream().mapToInt(Integer::intValue).toArray(), book);
+        });
+        // only once committed: a busy COMMIT is retried, and must not see its own marks
+        for (LocalDate d : booked.days) SlotScheduler.occupy(doctorId, d.toEpochDay(), minute);
+        int[] ids = booked.ids;
+        DataChangeBus.inserted("appointments", ids);
+        System.out.println("AppointmentService: booked series of " + ids.length + " (" + rule + ")");
+        return ids;
+    }
+
+    // ---- RESCHEDULE ----
+    public static void reschedule(Session session, int appointmentId, LocalDate day, int minute)
+            throws SQLException, ValidationException {
+        String upd = "UPDATE appointments SET date = ?, time = ?, appt_day = ?, appt_minute = ? WHERE appointment_id = ?";
+        Slot old = inWriteTransaction(c -> {
+            Slot cur = currentSlot(c, appointmentId);
+            if (cur == null) throw new ValidationException("Appointment not found.");
+            session.requireActFor(cur.patientId); // checked against the row as it is now, inside the lock
+            boolean moved = cur.day != day.toEpochDay() || cur.minute == null || cur.minute != minute;
+            if (moved) SlotScheduler.checkBookable(c, cur.doctorId, day, minute);
+            try (PreparedStatement pst = c.prepareStatement(upd)) {
+                pst.setString(1, day.toString());
+                pst.setString(2, DateTimeUtils.formatMinute(minute));
+                pst.setLong(3, day.toEpochDay());
+                pst.setInt(4, minute);
+                pst.setInt(5, appointmentId);
+                try {
+                    pst.executeUpdate();
+                } catch (SQLException ex) {
+                    rethrow(c, ex, cur.doctorId, day, minute);
+                }
+            }
+            return cur;
+        });
+        boolean moved = old.day != day.toEpochDay() || old.minute == null || old.minute != minute;
+        SlotScheduler.release(old.doctorId, old.day, old.minute);
+        SlotScheduler.occupy(old.doctorId, day.toEpochDay(), minute);
+        DataChangeBus.updated("appointments", appointmentId);
+        if (moved) Waitlist.slotFreed(old.doctorId, old.day, old.minute);
+    }
+
+    // ---- CANCEL ----
+    // false if it was already gone
+    public static boolean delete(Session session, int appointmentId) throws SQLException, ValidationException {
+        Slot freed = inWriteTransaction(c -> {
+            Slot cur = currentSlot(c, appointmentId);
+            if (cur == null) return null;
+            session.requireActFor(cur.patientId);
+            try (PreparedStatement pst = c.prepareStatement("DELETE FROM appointments WHERE appointment_id = ?")) {
+                pst.setInt(1, appointmentId);
+                pst.executeUpdate();
+            }
+            return cur;
+        });
+        if (freed == null) return false;
+        SlotScheduler.release(freed.doctorId, freed.day, freed.minute);
+        DataChangeBus.deleted("appointments", appointmentId);
+        Waitlist.slotFreed(freed.doctorId, freed.day, freed.minute);
+        return true;
+    }
+
+    // ---- TRANSACTION + RETRY ----
+    static <T> T inWriteTransaction(TxWork<T> work) throws SQLException, ValidationException {
+        for (int attempt = 1; ; attempt++) {
+            try (Connection c = DBConnection.getConnection();
+                 Statement st = c.createStatement()) {
+                st.execute("BEGIN IMMEDIATE");
+                try {
+                    T result = work.run(c);
+                    st.execute("COMMIT");
+                    return result;
+                } catch (SQLException | ValidationException | RuntimeException ex) {
+                    try { st.execute("ROLLBACK"); } catch (SQLException ignore) {}
+                    throw ex;
+                }
+            } catch (SQLException ex) {
+                if (!isBusy(ex) || attempt >= MAX_ATTEMPTS) throw ex;
+                long backoff = BASE_BACKOFF_MS << (attempt - 1);
+                long sleep = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+                System.out.println("AppointmentService: database busy, retry " + attempt + " in " + sleep + " ms");
+                try {
+                    Thread.sleep(sleep);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    throw ex;
+                }
+            }
+        }
+    }
+
+    // SQLITE_BUSY / SQLITE_LOCKED (primary codes 5 and 6; extended codes keep them in the low byte)
+    static boolean isBusy(SQLException ex) {
+        int code = ex.getErrorCode() & 0xFF;
+        if (code == 5 || code == 6) return true;
+        String msg = String.valueOf(ex.getMessage());
+        return msg.contains("SQLITE_BUSY") || msg.contains("database is locked");
+    }
+
+    // turns constraint failures the user can act on into ValidationExceptions; always throws
+    private static void rethrow(Connection c, SQLException ex, int doctorId, LocalDate day, int minute)
+            throws SQLException, ValidationException {
+        if (SlotScheduler.isSlotTaken(ex)) {
+            // another desk got there first; re-read the day for the alternatives
+            SlotScheduler.invalidate(doctorId, day.toEpochDay());
+            throw SlotScheduler.conflict(c, doctorId, day, minute);
+        }
+        if (String.valueOf(ex.getMessage()).contains("FOREIGN KEY")) {
+            throw new ValidationException("That patient or doctor no longer exists.");
+        }
+        throw ex;
+    }
+
+    private static final class Slot {
+        final int patientId;
+        final int doctorId;
+        final long day;
+        final Integer minute;
+
+        Slot(int patientId, int doctorId, long day, Integer minute) {
+            this.patientId = patientId;
+            this.doctorId = doctorId;
+            this.day = day;
+            this.minute = minute;
+        }
+    }
+
+    // what bookSeries wrote, marked in the slot cache after the commit
+    private static final class Series {
+        final int[] ids;
+        final List<LocalDate> days;
+
+        Series(int[] ids, List<LocalDate> days) {
+            this.ids = ids;
+            this.days = days;
+        }
+    }
+
+    private static Slot currentSlot(Connection c, int appointmentId) throws SQLException {
+        try (PreparedStatement pst = c.prepareStatement(
+                "SELECT patient_id, doctor_id, appt_day, appt_minute FROM appointments WHERE appointment_id = ?")) {
+            pst.setInt(1, appointmentId);
+            try (ResultSet rs = pst.executeQuery()) {
+                if (!rs.next()) return null;
+                int patientId = rs.getInt(1);
+                int doctorId = rs.getInt(2);
+                long day = rs.getLong(3);
+                int m = rs.getInt(4);
+                return new Slot(patientId, doctorId, day, rs.wasNull() ? null : m);
+            }
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package app;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.print.PageFormat;
+import java.awt.print.Printable;
+import java.awt.print.PrinterException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+// Appointment schedule for PrinterJob that reads its rows one page at a time,
+// when the print system asks for that page. Pages are keyset-paginated on
+// (appt_day, appt_minute, appointment_id), so page 500 costs the same as
+// page 1 and only the page being printed is in memory. Filtered by date
+// range and optionally doctor/patient; rows the background conversion
+// hasn't given an appt_day yet are not included. print() is called on
+// whatever thread runs PrinterJob.print(); run that off the EDT.
+public class AppointmentsPrintable implements Printable {
+
+    private static final double[] COLUMN_WIDTHS = {0.12, 0.11, 0.22, 0.22, 0.33}; // fractions of the page
+    private static final String[] COLUMN_TITLES = {"Date", "Time", "Patient", "Doctor", "Symptoms"};
+
+    private final long fromDay, toDay;
+    private final int doctorId;   // -1 = all
+    private final int patientId;  // -1 = all, 0 = none
+    private final String title;
+
+    // position in the sort order; a page starts just after its key
+    private static final class Key {
+        final long day;
+        final int minute; // -1 when the row has no slot
+        final int id;
+
+        Key(long day, int minute, int id) {
+            this.day = day;
+            this.minute = minute;
+            this.id = id;
+        }
+    }
+
+    private static final class Row {
+        final Key key;
+        final String[] cells;
+
+        Row(Key key, String[] cells) {
+            this.key = key;
+            this.cells = cells;
+        }
+    }
+
+    private final List<Key> pageStarts = new ArrayList<>(); // pageStarts.get(i) = key before page i
+    private int cachedPage = -1;
+    private List<Row> cachedRows;
+    private int rowsPerPage;
+    private Font font, bold;
+
+    // from/to inclusive; null = open-ended
+    public AppointmentsPrintable(LocalDate from, LocalDate to, int doctorId, int patientId, String title) {
+        this.fromDay = from == null ? Long.MIN_VALUE : from.toEpochDay();
+        this.toDay = to == null ? Long.MAX_VALUE : to.toEpochDay();
+        this.doctorId = doctorId;
+        this.patientId = patientId;
+        this.title = title;
+        pageStarts.add(new Key(Long.MIN_VALUE, Integer.MIN_VALUE, Integer.MIN_VALUE));
+    }
+
+    @Override
+    public int print(Graphics graphics, PageFormat pf, int pageIndex) throws PrinterException {
+        Graphics2D g = (Graphics2D) graphics;
+        g.translate(pf.getImageableX(), pf.getImageableY());
+        if (font == null) {
+            font = new Font("SansSerif", Font.PLAIN, 9);
+            bold = font.deriveFont(Font.BOLD);
+        }
+        FontMetrics fm = g.getFontMetrics(font);
+        int line = fm.getHeight() + 2;
+        int headerHeight = line * 4; // title, filter, column titles, rule
+        int footerHeight = line;
+        if (rowsPerPage == 0) {
+            rowsPerPage = Math.max(1, ((int) pf.getImageableHeight() - headerHeight - footerHeight) / line);
+        }
+
+        List<Row> rows;
+        try {
+            rows = page(pageIndex);
+        } catch (SQLException ex) {
+            throw new PrinterException("Could not read appointments: " + ex.getMessage());
+        }
+        if (rows == null || (rows.isEmpty() && pageIndex > 0)) return NO_SUCH_PAGE;
+
+        int width = (int) pf.getImageableWidth();
+        int[] x = new int[COLUMN_WIDTHS.length + 1];
+        for (int i = 0; i < COLUMN_WIDTHS.length; i++) x[i + 1] = x[i] + (int) (width * COLUMN_WIDTHS[i]);
+        x[x.length - 1] = width;
+
+        g.setColor(Color.BLACK);
+        int y = fm.getAscent();
+        g.setFont(bold.deriveFont(12f));
+        g.drawString(title, 0, y);
+        y += line;
+        g.setFont(font);
+        g.drawString(describeFilter() + (rows.isEmpty() ? " - no appointments" : ""), 0, y);
+        y += line;
+        g.setFont(bold);
+        FontMetrics bfm = g.getFontMetrics(bold);
+        for (int i = 0; i < COLUMN_TITLES.length; i++) g.drawString(fit(COLUMN_TITLES[i], bfm, x[i + 1] - x[i] - 4), x[i], y);
+        y += 3;
+        g.drawLine(0, y, width, y);
+        y += line;
+
+        g.setFont(font);
+        for (Row r : rows) {
+            for (int i = 0; i < r.cells.length; i++) g.drawString(fit(r.cells[i], fm, x[i + 1] - x[i] - 4), x[i], y);
+            y += line;
+        }
+        g.drawString("Page " + (pageIndex + 1), 0, (int) pf.getImageableHeight() - fm.getDescent());
+        return PAGE_EXISTS;
+    }
+
+    // ---- PAGING ----
+
+    // rows of page index, or null if the schedule ends before it
+    private List<Row> page(int index) throws SQLException {
+        if (index == cachedPage) return cachedRows;
+        // walk forward from the last known page start (the print system asks in order)
+        while (pageStarts.size() <= index) {
+            int last = pageStarts.size() - 1;
+            List<Row> rows = fetch(pageStarts.get(last));
+            remember(last, rows);
+            if (rows.size() < rowsPerPage) return null;
+            pageStarts.add(rows.get(rows.size() - 1).key);
+        }
+        List<Row> rows = fetch(pageStarts.get(index));
+        remember(index, rows);
+        return rows;
+    }
+
+    private void remember(int index, List<Row> rows) {
+        cachedPage = index;
+        cachedRows = rows;
+    }
+
+    private List<Row> fetch(Key after) throws SQLException {
+        StringBuilder sql = new StringBuilder(
+            "SELECT a.appointment_id, a.appt_day, a.appt_minute, a.time, p.name AS patient_name, d.name AS doctor_name, a.symptoms "
+            + "FROM appointments a LEFT JOIN patients p ON a.patient_id = p.patient_id "
+            + "LEFT JOIN doctors d ON a.doctor_id = d.doctor_id "
+            + "WHERE a.appt_day BETWEEN ? AND ? ");
+        if (doctorId > 0) sql.append("AND a.doctor_id = ? ");
+        if (patientId >= 0) sql.append("AND a.patient_id = ? ");
+        // NULL minutes sort first; IFNULL(-1) keeps the keyset comparison in that order
+        sql.append("AND (a.appt_day > ? OR (a.appt_day = ? AND (IFNULL(a.appt_minute, -1) > ? "
+                 + "OR (IFNULL(a.appt_minute, -1) = ? AND a.appointment_id > ?)))) "
+                 + "ORDER BY a.appt_day, a.appt_minute, a.appointment_id LIMIT ?");
+
+        List<Row> rows = new ArrayList<>(rowsPerPage);
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql.toString())) {
+            int i = 1;
+            pst.setLong(i++, fromDay);
+            pst.setLong(i++, toDay);
+            if (doctorId > 0) pst.setInt(i++, doctorId);
+            if (patientId >= 0) pst.setInt(i++, patientId);
+            pst.setLong(i++, after.day);
+            pst.setLong(i++, after.day);
+            pst.setInt(i++, after.minute);
+            pst.setInt(i++, after.minute);
+            pst.setInt(i++, after.id);
+            pst.setInt(i, rowsPerPage);
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    long day = rs.getLong("appt_day");
+                    int m = rs.getInt("appt_minute");
+                    boolean noSlot = rs.wasNull();
+                    int id = rs.getInt("appointment_id");
+                    rows.add(new Row(new Key(day, noSlot ? -1 : m, id), new String[] {
+                        DateTimeUtils.formatDay(day),
+                        noSlot ? rs.getString("time") : DateTimeUtils.formatMinute(m),
+                        rs.getString("patient_name"),
+                        rs.getString("doctor_name"),
+                        rs.getString("symptoms")
+                    }));
+                }
+            }
+        }
+        return rows;
+    }
+
+    // ---- TEXT ----
+
+    private String describeFilter() {
+        String range;
+        if (fromDay == Long.MIN_VALUE && toDay == Long.MAX_VALUE) range = "All dates";
+        else if (fromDay == toDay) range = DateTimeUtils.formatDay(fromDay);
+        else range = (fromDay == Long.MIN_VALUE ? "..." : DateTimeUtils.formatDay(fromDay)) + " to "
+                   + (toDay == Long.MAX_VALUE ? "..." : DateTimeUtils.formatDay(toDay));
+        return range + (doctorId > 0 ? ", doctor #" + doctorId : "");
+    }
+
+    // cut to maxWidth pixels with an ellipsis
+    private static String fit(String s, FontMetrics fm, int maxWidth) {
+        if (s == null) return "";
+        s = s.replace('\n', ' ').replace('\r', ' ');
+        if (fm.stringWidth(s) <= maxWidth) return s;
+        int ell = fm.stringWidth("…");
+        int end = Math.min(s.length(), maxWidth / Math.max(1, fm.charWidth('i')) + 1); // no narrower glyph fits more
+        while (end > 0 && fm.stringWidth(s.substring(0, end)) + ell > maxWidth) end--;
+        return s.substring(0, end) + "…";
+    }
+}
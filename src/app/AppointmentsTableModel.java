@@ -0,0 +1,471 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import javax.swing.table.AbstractTableModel;
+
+// Lazy model for View Appointments (newest first). Only the row count is
+// loaded up front; rows are fetched a page at a time, using keyset
+// pagination on appointment_id, when the JTable asks for them.
+// An optional full-text filter (symptoms or patient name/phone/address)
+// narrows both the count and the pages, and a patient scope (from the
+// Session) limits patients to their own appointments.
+// Writes reported on the DataChangeBus are applied row by row: bookings made
+// since the last refresh sit in a small in-memory list above the paged rows.
+public class AppointmentsTableModel extends AbstractTableModel {
+
+    static final int PAGE_SIZE = 100;
+    // longest OFFSET one query may skip; further jumps walk there in id-only steps
+    private static final int MAX_SKIP = 20 * PAGE_SIZE;
+    private static final int MAX_CACHED_PAGES = 12;
+    // a page whose query failed is retried after this, doubling up to the max
+    private static final int RETRY_MIN_MS = 2_000;
+    private static final int RETRY_MAX_MS = 60_000;
+    private static final String LOAD_ERROR = "Couldn't load these rows; retrying...";
+
+    private static final String[] COLS = {"appointment_id","patient_name","doctor_name","date","time","symptoms"};
+
+    private static final String SELECT_PAGE =
+        "SELECT a.appointment_id, p.name AS patient_name, d.name AS doctor_name, a.date, a.time, "
+        + "a.appt_day, a.appt_minute, a.symptoms "
+        + "FROM appointments a "
+        + "LEFT JOIN patients p ON a.patient_id = p.patient_id "
+        + "LEFT JOIN doctors d ON a.doctor_id = d.doctor_id ";
+
+    // both subqueries are FTS lookups; SQLite unions them via the rowid and patient_id indexes
+    private static final String FILTER =
+        " AND (a.appointment_id IN (SELECT rowid FROM appointments_fts WHERE appointments_fts MATCH ?)"
+        + " OR a.patient_id IN (SELECT rowid FROM patients_fts WHERE patients_fts MATCH ?))";
+
+    private final BusyBar busy;
+    private final int patientScope;   // -1 = every patient, else only this patient_id
+
+    // all fields below are touched on the EDT only
+    private int snapshotCount = 0;    // rows with id <= snapshotMaxId, served from pages
+    private long snapshotMaxId = 0;   // rows above this id arrived after the last refresh
+    private final List<Object[]> fresh = new ArrayList<>(); // rows above snapshotMaxId, newest first
+    private int generation = 0;       // bumps on refresh so late loads are dropped
+    private int pageEpoch = 0;        // bumps when cached pages are invalidated
+    private final Map<Integer, List<Object[]>> pages = new LinkedHashMap<Integer, List<Object[]>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Object[]>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    // page index -> last (smallest) appointment_id on that page; the next page starts below it
+    private final TreeMap<Integer, Long> anchors = new TreeMap<>();
+    private final Set<Integer> pending = new HashSet<>();
+    private final Map<Integer, Failure> failed = new HashMap<>(); // page -> when to try again
+    private DbExecutor.Task<?> countTask;
+    private String match;             // FTS expression, null = no filter
+
+    public AppointmentsTableModel(BusyBar busy) {
+        this(busy, -1);
+    }
+
+    // patientScope: Session.appointmentScope()
+    public AppointmentsTableModel(BusyBar busy, int patientScope) {
+        this.busy = busy;
+        this.patientScope = patientScope;
+    }
+
+    @Override public int getRowCount() { return fresh.size() + snapshotCount; }
+    @Override public int getColumnCount() { return COLS.length; }
+    @Override public String getColumnName(int c) { return COLS[c]; }
+    @Override public boolean isCellEditable(int r, int c) { return false; }
+
+    @Override
+    public Object getValueAt(int row, int col) {
+        Object[] r = rowAt(row);
+        if (r == null) return col == 1 && row >= fresh.size() && failed.containsKey((row - fresh.size()) / PAGE_SIZE)
+                ? LOAD_ERROR : null;
+        return r[col];
+    }
+
+    // appointment_id for a view row, or -1 if that page isn't loaded yet
+    public int getAppointmentId(int row) {
+        Object[] r = rowAt(row);
+        return r == null ? -1 : (Integer) r[0];
+    }
+
+    private Object[] rowAt(int row) {
+        if (row < 0 || row >= getRowCount()) return null;
+        if (row < fresh.size()) return fresh.get(row);
+        row -= fresh.size();
+        int page = row / PAGE_SIZE;
+        List<Object[]> rows = pages.get(page);
+        if (rows == null) {
+            Failure f = failed.get(page);
+            if (f == null || System.currentTimeMillis() >= f.retryAt) requestPage(page);
+            return null;
+        }
+        int offset = row % PAGE_SIZE;
+        return offset < rows.size() ? rows.get(offset) : null;
+    }
+
+    // ---- FILTER ----
+    // text as typed in the search box; blank shows everything
+    public void setFilter(String text) {
+        String m = FullTextSearch.toMatchExpression(text);
+        if (java.util.Objects.equals(m, match)) return;
+        match = m;
+        fresh.clear();
+        refresh();
+    }
+
+    // ---- REFRESH: cheap COUNT + MAX, pages are loaded lazily afterwards ----
+    public void refresh() {
+        if (countTask != null) countTask.cancel();
+        final int gen = ++generation;
+        pageEpoch++;
+        pages.clear();
+        anchors.clear();
+        pending.clear();
+        failed.clear();
+
+        final String m = match;
+        begin();
+        countTask = DbExecutor.submit(() -> {
+            String sql = "SELECT COUNT(*), COALESCE(MAX(a.appointment_id), 0) FROM appointments a WHERE 1=1"
+                + scope(patientScope) + (m == null ? "" : FILTER);
+            try (Connection con = DBConnection.getConnection();
+                 PreparedStatement pst = con.prepareStatement(sql)) {
+                bindFilter(pst, 1, m);
+                try (ResultSet rs = pst.executeQuery()) {
+                    rs.next();
+                    return new long[] { rs.getLong(1), rs.getLong(2) };
+                }
+            }
+        }, countAndMax -> {
+            if (gen != generation) return;
+            snapshotCount = (int) Math.min(Integer.MAX_VALUE, countAndMax[0]);
+            snapshotMaxId = countAndMax[1];
+            fresh.removeIf(r -> (Integer) r[0] <= snapshotMaxId); // now part of the count
+            fireTableDataChanged();
+        }, Exception::printStackTrace).whenFinished(this::end);
+    }
+
+    // ---- PAGE LOADING ----
+
+    // rows of one page plus any anchors found on the way to it
+    private static final class PageLoad {
+        final List<Object[]> rows;
+        final Map<Integer, Long> anchors;
+
+        PageLoad(List<Object[]> rows, Map<Integer, Long> anchors) {
+            this.rows = rows;
+            this.anchors = anchors;
+        }
+    }
+
+    // a page that failed to load: shown as an error row until the retry succeeds
+    private static final class Failure {
+        final long retryAt;
+        final int delayMs;
+
+        Failure(long retryAt, int delayMs) {
+            this.retryAt = retryAt;
+            this.delayMs = delayMs;
+        }
+    }
+
+    private void requestPage(int page) {
+        if (!pending.add(page)) return;
+        final int gen = generation, epoch = pageEpoch;
+
+        // pick the cheapest way in: keyset from the nearest earlier anchor (or the
+        // top) plus an OFFSET, or counting back from the oldest row when the page is
+        // nearer the end, so dragging the scrollbar to the bottom doesn't scan the table
+        Map.Entry<Integer, Long> near = anchors.lowerEntry(page);
+        final int fromPage = near != null ? near.getKey() + 1 : 0;
+        final long upperId = near != null ? near.getValue() : snapshotMaxId;
+        final boolean inclusive = near == null;
+        final int end = Math.min(snapshotCount, (page + 1) * PAGE_SIZE);
+        final int pageRows = end - page * PAGE_SIZE;
+        final int tailSkip = snapshotCount - end;
+        final boolean fromTail = pageRows > 0 && tailSkip < (page - fromPage) * PAGE_SIZE;
+        final long maxId = snapshotMaxId;
+
+        final String m = match;
+        begin();
+        DbExecutor.submit(() -> fromTail
+                ? new PageLoad(fetchFromTail(maxId, tailSkip, pageRows, m, patientScope), java.util.Collections.emptyMap())
+                : walkAndFetch(fromPage, page, upperId, inclusive, m, patientScope), load -> {
+            if (gen != generation || epoch != pageEpoch) return;
+            pending.remove(page);
+            failed.remove(page);
+            anchors.putAll(load.anchors);
+            List<Object[]> rows = load.rows;
+            pages.put(page, rows);
+            if (!rows.isEmpty()) anchors.put(page, (long) (Integer) rows.get(rows.size() - 1)[0]);
+            firePageUpdated(page);
+        }, ex -> {
+            if (gen != generation || epoch != pageEpoch) return;
+            pending.remove(page);
+            ex.printStackTrace();
+            // back off instead of re-running the query on every repaint; the timer's
+            // repaint asks for the page again once the delay is over
+            Failure prev = failed.get(page);
+            int delay = prev == null ? RETRY_MIN_MS : Math.min(RETRY_MAX_MS, prev.delayMs * 2);
+            failed.put(page, new Failure(System.currentTimeMillis() + delay, delay));
+            firePageUpdated(page);
+            javax.swing.Timer retry = new javax.swing.Timer(delay, e -> {
+                if (gen == generation && epoch == pageEpoch) firePageUpdated(page);
+            });
+            retry.setRepeats(false);
+            retry.start();
+        }).whenFinished(this::end);
+    }
+
+    private void firePageUpdated(int page) {
+        int first = page * PAGE_SIZE;
+        int last = Math.min(snapshotCount, first + PAGE_SIZE) - 1;
+        if (first <= last) fireTableRowsUpdated(fresh.size() + first, fresh.size() + last);
+    }
+
+    // ---- DELTAS from the DataChangeBus ----
+    public void applyChange(DataChangeBus.Change change) {
+        switch (change.kind) {
+            case RELOAD:
+                refresh();
+                break;
+            case DELETE:
+                for (int id : change.ids) removeRow(id);
+                break;
+            case INSERT:
+            case UPDATE:
+                for (int id : change.ids) {
+                    if (change.kind == DataChangeBus.Kind.INSERT && id <= snapshotMaxId) continue; // already counted
+                    final int gen = generation;
+                    final String m = match;
+                    DbExecutor.submit(() -> fetchById(id, m, patientScope), row -> {
+                        if (gen != generation) return;
+                        if (row == null) {
+                            // gone, or edited so it no longer matches the filter
+                            if (change.kind == DataChangeBus.Kind.UPDATE && m != null) removeLoadedRow(id);
+                            return;
+                        }
+                        if (change.kind == DataChangeBus.Kind.INSERT) addFreshRow(row); else replaceRow(row);
+                    }, Exception::printStackTrace);
+                }
+                break;
+        }
+    }
+
+    private void addFreshRow(Object[] row) {
+        int id = (Integer) row[0];
+        int pos = 0;
+        while (pos < fresh.size() && (Integer) fresh.get(pos)[0] > id) pos++;
+        if (pos < fresh.size() && (Integer) fresh.get(pos)[0] == id) return; // duplicate event
+        fresh.add(pos, row);
+        fireTableRowsInserted(pos, pos);
+    }
+
+    private void replaceRow(Object[] row) {
+        int view = findViewRow((Integer) row[0]);
+        if (view < 0) return; // not loaded; it'll be read fresh when scrolled into view
+        if (view < fresh.size()) {
+            fresh.set(view, row);
+        } else {
+            int snap = view - fresh.size();
+            pages.get(snap / PAGE_SIZE).set(snap % PAGE_SIZE, row);
+        }
+        fireTableRowsUpdated(view, view);
+    }
+
+    private void removeRow(int id) {
+        if (findViewRow(id) < 0) {
+            // deleted row isn't loaded, so its position is unknown; recount
+            if (id <= snapshotMaxId) refresh();
+            return;
+        }
+        removeLoadedRow(id);
+    }
+
+    private void removeLoadedRow(int id) {
+        int view = findViewRow(id);
+        if (view < 0) return;
+        if (view < fresh.size()) {
+            fresh.remove(view);
+        } else {
+            // every row after this one shifts up: keep earlier pages, reload later ones lazily
+            int page = (view - fresh.size()) / PAGE_SIZE;
+            pages.keySet().removeIf(p -> p >= page);
+            anchors.tailMap(page, true).clear();
+            pending.clear();
+            failed.clear();
+            pageEpoch++;
+            snapshotCount--;
+        }
+        fireTableRowsDeleted(view, view);
+    }
+
+    private int findViewRow(int id) {
+        for (int i = 0; i < fresh.size(); i++) {
+            if ((Integer) fresh.get(i)[0] == id) return i;
+        }
+        for (Map.Entry<Integer, List<Object[]>> e : pages.entrySet()) {
+            List<Object[]> rows = e.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                if ((Integer) rows.get(i)[0] == id) return fresh.size() + e.getKey() * PAGE_SIZE + i;
+            }
+        }
+        return -1;
+    }
+
+    // null if the row doesn't exist or doesn't match the filter
+    private static Object[] fetchById(int id, String match, int patientScope) throws SQLException {
+        String sql = SELECT_PAGE + "WHERE a.appointment_id = ?" + scope(patientScope) + (match == null ? "" : FILTER);
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setInt(1, id);
+            bindFilter(pst, 2, match);
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next() ? toRow(rs) : null;
+            }
+        }
+    }
+
+    // Page `page`, starting from the rows below upperId (which begin at fromPage).
+    // Skips longer than MAX_SKIP go in steps that read only appointment_id, and
+    // each step leaves an anchor behind for later jumps nearby.
+    private static PageLoad walkAndFetch(int fromPage, int page, long upperId, boolean inclusive, String match,
+                                         int patientScope) throws SQLException {
+        Map<Integer, Long> found = new HashMap<>();
+        int at = fromPage;
+        while ((page - at) * PAGE_SIZE > MAX_SKIP) {
+            Long id = idAt(upperId, inclusive, MAX_SKIP - 1, match, patientScope); // last row of page at+K-1
+            if (id == null) return new PageLoad(new ArrayList<>(), found);
+            at += MAX_SKIP / PAGE_SIZE;
+            found.put(at - 1, id);
+            upperId = id;
+            inclusive = false;
+        }
+        return new PageLoad(fetch(upperId, inclusive, (page - at) * PAGE_SIZE, match, patientScope), found);
+    }
+
+    private static Long idAt(long upperId, boolean inclusive, int skip, String match, int patientScope)
+            throws SQLException {
+        String sql = "SELECT a.appointment_id FROM appointments a "
+            + "WHERE a.appointment_id " + (inclusive ? "<=" : "<") + " ?"
+            + scope(patientScope)
+            + (match == null ? "" : FILTER)
+            + " ORDER BY a.appointment_id DESC LIMIT 1 OFFSET ?";
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setLong(1, upperId);
+            int i = bindFilter(pst, 2, match);
+            pst.setInt(i, skip);
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    // count rows of a page that ends tailSkip rows above the oldest one; read
+    // oldest-first from the tail, then flipped to the table's newest-first order
+    private static List<Object[]> fetchFromTail(long maxId, int tailSkip, int count, String match, int patientScope)
+            throws SQLException {
+        long lowerId = 0;
+        while (tailSkip > MAX_SKIP) {
+            Long id = idFromTail(lowerId, MAX_SKIP - 1, maxId, match, patientScope);
+            if (id == null) return new ArrayList<>();
+            lowerId = id;
+            tailSkip -= MAX_SKIP;
+        }
+        String sql = SELECT_PAGE
+            + "WHERE a.appointment_id > ? AND a.appointment_id <= " + maxId
+            + scope(patientScope)
+            + (match == null ? "" : FILTER)
+            + " ORDER BY a.appointment_id ASC LIMIT ? OFFSET ?";
+        List<Object[]> rows = new ArrayList<>(count);
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setLong(1, lowerId);
+            int i = bindFilter(pst, 2, match);
+            pst.setInt(i, count);
+            pst.setInt(i + 1, tailSkip);
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) rows.add(toRow(rs));
+            }
+        }
+        java.util.Collections.reverse(rows);
+        return rows;
+    }
+
+    private static Long idFromTail(long lowerId, int skip, long maxId, String match, int patientScope)
+            throws SQLException {
+        String sql = "SELECT a.appointment_id FROM appointments a "
+            + "WHERE a.appointment_id > ? AND a.appointment_id <= " + maxId
+            + scope(patientScope)
+            + (match == null ? "" : FILTER)
+            + " ORDER BY a.appointment_id ASC LIMIT 1 OFFSET ?";
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setLong(1, lowerId);
+            int i = bindFilter(pst, 2, match);
+            pst.setInt(i, skip);
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : null;
+            }
+        }
+    }
+
+    private static List<Object[]> fetch(long upperId, boolean inclusive, int skip, String match, int patientScope)
+            throws SQLException {
+        String sql = SELECT_PAGE
+            + "WHERE a.appointment_id " + (inclusive ? "<=" : "<") + " ?"
+            + scope(patientScope)
+            + (match == null ? "" : FILTER)
+            + " ORDER BY a.appointment_id DESC LIMIT ? OFFSET ?";
+        List<Object[]> rows = new ArrayList<>(PAGE_SIZE);
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setLong(1, upperId);
+            int i = bindFilter(pst, 2, match);
+            pst.setInt(i, PAGE_SIZE);
+            pst.setInt(i + 1, skip);
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) rows.add(toRow(rs));
+            }
+        }
+        return rows;
+    }
+
+    // an int, so inlined rather than bound; keeps the FILTER parameter positions unchanged
+    private static String scope(int patientScope) {
+        return patientScope < 0 ? "" : " AND a.patient_id = " + patientScope;
+    }
+
+    // binds FILTER's two MATCH parameters (if filtering); returns the next parameter index
+    private static int bindFilter(PreparedStatement pst, int index, String match) throws SQLException {
+        if (match == null) return index;
+        pst.setString(index, match);
+        pst.setString(index + 1, match);
+        return index + 2;
+    }
+
+    static Object[] toRow(ResultSet rs) throws SQLException {
+        return new Object[] {
+            rs.getInt("appointment_id"),
+            rs.getString("patient_name"),
+            rs.getString("doctor_name"),
+            DateTimeUtils.formatApptDate(rs),
+            DateTimeUtils.formatApptTime(rs),
+            rs.getString("symptoms")
+        };
+    }
+
+    private void begin() { if (busy != null) busy.begin(); }
+    private void end() { if (busy != null) busy.end(); }
+}
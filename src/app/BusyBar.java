@@ -0,0 +1,27 @@
+package app;
+
+import java.awt.Dimension;
+import javax.swing.JProgressBar;
+
+// Thin indeterminate progress bar shown while a card has database work in flight.
+public class BusyBar extends JProgressBar {
+    private int inFlight = 0;
+
+    public BusyBar() {
+        setIndeterminate(true);
+        setPreferredSize(new Dimension(10, 4));
+        setBorderPainted(false);
+        setVisible(false);
+    }
+
+    // call on the EDT
+    public void begin() {
+        inFlight++;
+        setVisible(true);
+    }
+
+    public void end() {
+        if (inFlight > 0) inFlight--;
+        if (inFlight == 0) setVisible(false);
+    }
+}
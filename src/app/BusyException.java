@@ -0,0 +1,11 @@
+package app;
+
+// A scheduler lane is full (RequestScheduler). Nothing was run, so the
+// caller can simply try again; the Dashboard shows the message like any
+// ValidationException and the HTTP API answers 503.
+public class BusyException extends ValidationException {
+
+    public BusyException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,226 @@
+package app;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.CancellationException;
+
+// "What changed since last time" exports of appointments for downstream
+// systems. Each named feed keeps a watermark (the last change_log id it has
+// seen); a run emits one line per appointment touched since then: its current
+// values ("upsert") or a tombstone ("delete"), so the cost follows the number
+// of changes, not the size of the table. A feed's first run is a full
+// snapshot. The watermark only moves once the file is complete. Call from a
+// background thread.
+public class ChangeFeed {
+
+    public enum Format { CSV, JSONL }
+
+    private static final String[] HEADERS =
+        {"op", "change_id", "appointment_id", "patient_id", "doctor_id", "date", "time", "symptoms"};
+
+    private static final String CHANGES_SQL =
+        "SELECT c.row_id AS appointment_id, c.last_change, a.appointment_id AS live_id, "
+        + "a.patient_id, a.doctor_id, a.date, a.time, a.appt_day, a.appt_minute, a.symptoms "
+        + "FROM (SELECT row_id, MAX(change_id) AS last_change FROM change_log "
+        + "      WHERE tbl = 'appointments' AND change_id > ? AND change_id <= ? GROUP BY row_id) c "
+        + "LEFT JOIN appointments a ON a.appointment_id = c.row_id "
+        + "ORDER BY c.last_change";
+
+    private static final String SNAPSHOT_SQL =
+        "SELECT a.appointment_id, ? AS last_change, a.appointment_id AS live_id, "
+        + "a.patient_id, a.doctor_id, a.date, a.time, a.appt_day, a.appt_minute, a.symptoms "
+        + "FROM appointments a ORDER BY a.appointment_id";
+
+    public static final class Result {
+        public final long rows;
+        public final long fromChange;   // exclusive; -1 for a full snapshot
+        public final long toChange;     // the feed's new watermark
+        public final boolean snapshot;
+
+        Result(long rows, long fromChange, long toChange, boolean snapshot) {
+            this.rows = rows;
+            this.fromChange = fromChange;
+            this.toChange = toChange;
+            this.snapshot = snapshot;
+        }
+    }
+
+    // Writes the changes for feed to out (via out.part), then advances the watermark.
+    public static Result export(Session session, String feed, Format format, File out, CsvExporter.Progress progress)
+            throws SQLException, IOException, ValidationException {
+        session.require(Permission.EXPORT);
+        File part = new File(out.getAbsolutePath() + ".part");
+        long from, to, rows;
+        try (Connection c = DBConnection.getConnection();
+             Statement st = c.createStatement()) {
+            // one read transaction: the upper bound and the rows come from the same snapshot
+            st.execute("BEGIN");
+            try {
+                from = watermark(c, feed);
+                // the AUTOINCREMENT counter, not MAX(change_id): once pruning has emptied
+                // the log, MAX would be 0 and move the watermark backwards
+                try (ResultSet rs = st.executeQuery(
+                        "SELECT IFNULL((SELECT seq FROM sqlite_sequence WHERE name = 'change_log'), 0)")) {
+                    to = Math.max(from, rs.next() ? rs.getLong(1) : 0);
+                }
+                try (PreparedStatement pst = c.prepareStatement(from < 0 ? SNAPSHOT_SQL : CHANGES_SQL);
+                     Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(part), StandardCharsets.UTF_8), 1 << 20)) {
+                    if (from < 0) {
+                        pst.setLong(1, to);
+                    } else {
+                        pst.setLong(1, from);
+                        pst.setLong(2, to);
+                    }
+                    try (ResultSet rs = pst.executeQuery()) {
+                        rows = write(rs, format, w, progress);
+                    }
+                }
+            } finally {
+                try { st.execute("COMMIT"); } catch (SQLException ignore) {}
+            }
+        } catch (SQLException | IOException | RuntimeException ex) {
+            Files.deleteIfExists(part.toPath());
+            throw ex;
+        }
+        Files.move(part.toPath(), out.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        advance(feed, from, to);
+        System.out.println("ChangeFeed: " + feed + " " + rows + " rows, changes " + (from < 0 ? "snapshot" : from + "..")
+                + to + " -> " + out.getAbsolutePath());
+        return new Result(rows, from, to, from < 0);
+    }
+
+    // ---- WATERMARKS ----
+
+    // -1 when the feed has never run
+    private static long watermark(Connection c, String feed) throws SQLException {
+        try (PreparedStatement pst = c.prepareStatement("SELECT last_change_id FROM export_watermarks WHERE feed = ?")) {
+            pst.setString(1, feed);
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : -1;
+            }
+        }
+    }
+
+    // compare-and-set, so two overlapping runs of one feed can't both advance it;
+    // then drops log rows every feed has already exported
+    private static void advance(String feed, long from, long to) throws SQLException, ValidationException {
+        AppointmentService.inWriteTransaction(c -> {
+            int n;
+            if (from < 0) {
+                try (PreparedStatement pst = c.prepareStatement(
+                        "INSERT OR IGNORE INTO export_watermarks (feed, last_change_id) VALUES (?, ?)")) {
+                    pst.setString(1, feed);
+                    pst.setLong(2, to);
+                    n = pst.executeUpdate();
+                }
+            } else {
+                try (PreparedStatement pst = c.prepareStatement(
+                        "UPDATE export_watermarks SET last_change_id = ?, exported_at = datetime('now') "
+                        + "WHERE feed = ? AND last_change_id = ?")) {
+                    pst.setLong(1, to);
+                    pst.setString(2, feed);
+                    pst.setLong(3, from);
+                    n = pst.executeUpdate();
+                }
+            }
+            if (n == 0) throw new ValidationException("Feed \"" + feed + "\" was advanced by another export meanwhile; "
+                    + "this file overlaps it.");
+            try (Statement st = c.createStatement()) {
+                st.executeUpdate("DELETE FROM change_log WHERE change_id <= (SELECT MIN(last_change_id) FROM export_watermarks)");
+            }
+            return null;
+        });
+    }
+
+    // ---- OUTPUT ----
+
+    private static long write(ResultSet rs, Format format, Writer w, CsvExporter.Progress progress)
+            throws SQLException, IOException {
+        if (format == Format.CSV) {
+            for (int i = 0; i < HEADERS.length; i++) {
+                if (i > 0) w.write(',');
+                w.write(HEADERS[i]);
+            }
+            w.write("\r\n");
+        }
+        String[] v = new String[HEADERS.length];
+        long n = 0;
+        while (rs.next()) {
+            rs.getInt("live_id");
+            boolean deleted = rs.wasNull();
+            v[0] = deleted ? "delete" : "upsert";
+            v[1] = rs.getString("last_change");
+            v[2] = rs.getString("appointment_id");
+            for (int i = 3; i < v.length; i++) v[i] = null;
+            if (!deleted) {
+                v[3] = rs.getString("patient_id");
+                v[4] = rs.getString("doctor_id");
+                v[5] = DateTimeUtils.formatApptDate(rs);
+                v[6] = DateTimeUtils.formatApptTime(rs);
+                v[7] = rs.getString("symptoms");
+            }
+            if (format == Format.CSV) writeCsv(w, v); else writeJson(w, v);
+            if (++n % 10_000 == 0 && progress != null) {
+                if (progress.cancelled()) throw new CancellationException();
+                progress.rows(n);
+            }
+        }
+        if (progress != null) progress.rows(n);
+        return n;
+    }
+
+    private static void writeCsv(Writer w, String[] v) throws IOException {
+        for (int i = 0; i < v.length; i++) {
+            if (i > 0) w.write(',');
+            CsvExporter.writeField(w, v[i]);
+        }
+        w.write("\r\n");
+    }
+
+    // ids are numbers; a tombstone carries only op, change_id and appointment_id
+    private static void writeJson(Writer w, String[] v) throws IOException {
+        w.write('{');
+        for (int i = 0; i < v.length; i++) {
+            if (v[i] == null) continue;
+            if (i > 0) w.write(',');
+            w.write('"');
+            w.write(HEADERS[i]);
+            w.write("\":");
+            if (i >= 1 && i <= 4) w.write(v[i]); else writeJsonString(w, v[i]);
+        }
+        w.write("}\n");
+    }
+
+    static void writeJsonString(Writer w, String s) throws IOException {
+        w.write('"');
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            switch (ch) {
+                case '"':  w.write("\\\""); break;
+                case '\\': w.write("\\\\"); break;
+                case '\n': w.write("\\n"); break;
+                case '\r': w.write("\\r"); break;
+                case '\t': w.write("\\t"); break;
+                default:
+                    if (ch < 0x20) {
+                        w.write(String.format("\\u%04x", (int) ch));
+                    } else {
+                        w.write(ch);
+                    }
+            }
+        }
+        w.write('"');
+    }
+}
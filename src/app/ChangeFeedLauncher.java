@@ -0,0 +1,33 @@
+package app;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+// Command-line incremental export, e.g. for a nightly job:
+//   java -cp <classpath> app.ChangeFeedLauncher <feed> [csv|jsonl] [file]
+// The first run of a feed writes every appointment; later runs only what changed since.
+public class ChangeFeedLauncher {
+    public static void main(String[] args) {
+        if (args.length < 1) {
+            System.err.println("usage: ChangeFeedLauncher <feed> [csv|jsonl] [file]");
+            System.exit(2);
+        }
+        String feed = args[0];
+        ChangeFeed.Format format = args.length > 1 && args[1].equalsIgnoreCase("jsonl")
+                ? ChangeFeed.Format.JSONL : ChangeFeed.Format.CSV;
+        String name = args.length > 2 ? args[2]
+                : feed + "-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"))
+                  + (format == ChangeFeed.Format.CSV ? ".csv" : ".jsonl");
+
+        DBConnection.initializeIfNeeded();
+        try {
+            ChangeFeed.Result r = ChangeFeed.export(Session.SYSTEM, feed, format, new File(name), null);
+            System.out.println((r.snapshot ? "Full snapshot: " : "Changes " + r.fromChange + ".." + r.toChange + ": ")
+                    + r.rows + " rows -> " + new File(name).getAbsolutePath());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+package app;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// Small bounded JDBC pool. Callers get a proxy whose close() hands the
+// physical connection back instead of closing the sqlite file. Statements
+// and result sets are the driver's own (no per-call indirection on hot
+// paths), so code must close the connection it borrowed, never the one a
+// statement reports from getConnection().
+public class ConnectionPool {
+
+    // opens and prepares a brand-new physical connection
+    public interface ConnectionFactory {
+        Connection open() throws SQLException;
+    }
+
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final int minIdle;
+    private final long borrowTimeoutMillis;
+    private final long maxIdleMillis;
+    private final long validateAfterMillis;
+    private final long leakThresholdMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<PhysicalConnection> idle = new ArrayDeque<>();
+    private final Map<PhysicalConnection, Lease> active = new IdentityHashMap<>();
+    private final ScheduledExecutorService housekeeper;
+    private int total = 0;
+    private boolean closed = false;
+
+    // stats (guarded by lock)
+    private long borrowCount = 0;
+    private long waitCount = 0;
+    private long totalWaitNanos = 0;
+    private long maxWaitNanos = 0;
+    private long timeoutCount = 0;
+    private long createdCount = 0;
+    private long evictedCount = 0;
+    private long leakCount = 0;
+
+    public ConnectionPool(ConnectionFactory factory, int maxSize, int minIdle, long borrowTimeoutMillis,
+                          long maxIdleMillis, long validateAfterMillis, long leakThresholdMillis) {
+        if (maxSize < 1) throw new IllegalArgumentException("maxSize must be >= 1");
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.minIdle = Math.max(0, Math.min(minIdle, maxSize));
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        this.maxIdleMillis = maxIdleMillis;
+        this.validateAfterMillis = validateAfterMillis;
+        this.leakThresholdMillis = leakThresholdMillis;
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-pool-housekeeper");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(1000L, Math.min(maxIdleMillis, 30_000L));
+        housekeeper.scheduleWithFixedDelay(this::housekeep, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    // ---- BORROW ----
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        boolean waited = false;
+        PhysicalConnection pc;
+
+        // a stale idle connection is dropped and the loop tries again within the same deadline
+        while (true) {
+            pc = null;
+            boolean mustCreate = false;
+            lock.lock();
+            try {
+                while (true) {
+                    if (closed) throw new SQLException("Connection pool is closed");
+                    if (!idle.isEmpty()) {
+                        pc = idle.pollFirst(); // most recently returned first (warm page cache)
+                        break;
+                    }
+                    if (total < maxSize) {
+                        total++;
+                        mustCreate = true;
+                        break;
+                    }
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeoutCount++;
+                        throw new SQLException("Timed out after " + borrowTimeoutMillis
+                                + " ms waiting for a database connection (pool size " + maxSize + ")");
+                    }
+                    waited = true;
+                    try {
+                        available.awaitNanos(remaining);
+                    } catch (InterruptedException ie) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLException("Interrupted while waiting for a database connection", ie);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            // open / validate outside the lock so a slow file open doesn't block returns
+            if (mustCreate) {
+                try {
+                    pc = new PhysicalConnection(factory.open());
+                } catch (SQLException | RuntimeException ex) {
+                    lock.lock();
+                    try { total--; available.signal(); } finally { lock.unlock(); }
+                    throw ex;
+                }
+                lock.lock();
+                try { createdCount++; } finally { lock.unlock(); }
+                break;
+            }
+            if (System.currentTimeMillis() - pc.lastUsed <= validateAfterMillis || pc.isUsable()) break;
+            discard(pc);
+        }
+        long waitedNanos = System.nanoTime() - start;
+
+        Lease lease = new Lease(pc, Thread.currentThread().getName()); // no stack trace: borrows are hot
+        lock.lock();
+        try {
+            active.put(pc, lease);
+            borrowCount++;
+            if (waited) waitCount++;
+            totalWaitNanos += waitedNanos;
+            if (waitedNanos > maxWaitNanos) maxWaitNanos = waitedNanos;
+        } finally {
+            lock.unlock();
+        }
+        return lease.proxy;
+    }
+
+    // ---- RETURN ----
+    private void giveBack(Lease lease) {
+        PhysicalConnection pc = lease.physical;
+        boolean healthy = pc.reset();
+
+        lock.lock();
+        try {
+            if (active.remove(pc) == null) return;
+            if (closed || !healthy) {
+                total--;
+                available.signal();
+            } else {
+                pc.lastUsed = System.currentTimeMillis();
+                idle.addFirst(pc);
+                available.signal();
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        pc.closeQuietly();
+    }
+
+    private void discard(PhysicalConnection pc) {
+        pc.closeQuietly();
+        lock.lock();
+        try {
+            total--;
+            evictedCount++;
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ---- HOUSEKEEPING: idle eviction + leak detection ----
+    private void housekeep() {
+        List<PhysicalConnection> toClose = new ArrayList<>();
+        List<Lease> leaked = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        lock.lock();
+        try {
+            if (closed) return;
+            // idle deque is most-recent-first, so the stale ones sit at the tail
+            while (idle.size() > minIdle) {
+                PhysicalConnection oldest = idle.peekLast();
+                if (now - oldest.lastUsed < maxIdleMillis) break;
+                idle.pollLast();
+                toClose.add(oldest);
+                total--;
+                evictedCount++;
+            }
+            if (leakThresholdMillis > 0) {
+                for (Lease l : active.values()) {
+                    if (!l.reportedLeak && now - l.borrowedAt > leakThresholdMillis) {
+                        l.reportedLeak = true;
+                        leakCount++;
+                        leaked.add(l);
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        for (PhysicalConnection pc : toClose) pc.closeQuietly();
+        for (Lease l : leaked) {
+            System.err.println("ConnectionPool: possible connection leak, held for "
+                    + (now - l.borrowedAt) + " ms by thread " + l.borrowedBy);
+        }
+    }
+
+    // ---- SHUTDOWN ----
+    public void close() {
+        List<PhysicalConnection> toClose;
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            total -= idle.size();
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        housekeeper.shutdownNow();
+        for (PhysicalConnection pc : toClose) pc.closeQuietly();
+        // connections still on loan are closed when their borrowers give them back
+    }
+
+    // ---- STATS ----
+    public Stats getStats() {
+        lock.lock();
+        try {
+            return new Stats(maxSize, total, active.size(), idle.size(), borrowCount, waitCount,
+                    totalWaitNanos, maxWaitNanos, timeoutCount, createdCount, evictedCount, leakCount);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public static final class Stats {
+        public final int maxSize, total, active, idle;
+        public final long borrows, waits, totalWaitNanos, maxWaitNanos, timeouts, created, evicted, leaks;
+
+        Stats(int maxSize, int total, int active, int idle, long borrows, long waits, long totalWaitNanos,
+              long maxWaitNanos, long timeouts, long created, long evicted, long leaks) {
+            this.maxSize = maxSize; this.total = total; this.active = active; this.idle = idle;
+            this.borrows = borrows; this.waits = waits; this.totalWaitNanos = totalWaitNanos;
+            this.maxWaitNanos = maxWaitNanos; this.timeouts = timeouts; this.created = created;
+            this.evicted = evicted; this.leaks = leaks;
+        }
+
+        public double avgWaitMillis() {
+            return borrows == 0 ? 0.0 : (totalWaitNanos / 1_000_000.0) / borrows;
+        }
+
+        public double maxWaitMillis() {
+            return maxWaitNanos / 1_000_000.0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("pool[max=%d total=%d active=%d idle=%d borrows=%d waits=%d avgWait=%.2fms "
+                    + "maxWait=%.2fms timeouts=%d created=%d evicted=%d leaks=%d]",
+                    maxSize, total, active, idle, borrows, waits, avgWaitMillis(), maxWaitMillis(),
+                    timeouts, created, evicted, leaks);
+        }
+    }
+
+    // ---- internals ----
+
+    private static final class PhysicalConnection {
+        final Connection conn;
+        volatile long lastUsed = System.currentTimeMillis();
+
+        PhysicalConnection(Connection conn) { this.conn = conn; }
+
+        boolean isUsable() {
+            try { return !conn.isClosed() && conn.isValid(2); } catch (SQLException ex) { return false; }
+        }
+
+        // undo whatever the borrower left behind; false means the connection is not reusable
+        boolean reset() {
+            try {
+                if (conn.isClosed()) return false;
+                if (!conn.getAutoCommit()) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+                conn.clearWarnings();
+                return true;
+            } catch (SQLException ex) {
+                return false;
+            }
+        }
+
+        void closeQuietly() {
+            try { conn.close(); } catch (SQLException ignore) {}
+        }
+    }
+
+    private final class Lease implements InvocationHandler {
+        final PhysicalConnection physical;
+        final String borrowedBy; // thread name
+        final long borrowedAt = System.currentTimeMillis();
+        final Connection proxy;
+        boolean reportedLeak = false;
+        private boolean returned = false;
+
+        Lease(PhysicalConnection physical, String borrowedBy) {
+            this.physical = physical;
+            this.borrowedBy = borrowedBy;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[] { Connection.class }, this);
+        }
+
+        @Override
+        public Object invoke(Object p, Method m, Object[] args) throws Throwable {
+            switch (m.getName()) {
+                case "close":
+                    synchronized (this) {
+                        if (returned) return null;
+                        returned = true;
+                    }
+                    giveBack(this);
+                    return null;
+                case "isClosed":
+                    synchronized (this) { if (returned) return true; }
+                    break;
+                case "equals":
+                    return p == args[0];
+                case "hashCode":
+                    return System.identityHashCode(p);
+                case "toString":
+                    return "PooledConnection[" + physical.conn + "]";
+                default:
+                    synchronized (this) {
+                        if (returned) throw new SQLException("Connection already returned to the pool");
+                    }
+            }
+            try {
+                return m.invoke(physical.conn, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package app;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CancellationException;
+
+// Streams a query straight from the ResultSet into a CSV file: one row in
+// memory at a time, a large buffered UTF-8 writer, and fields quoted only
+// when they contain a comma, quote or line break. Call from a background thread.
+public class CsvExporter {
+
+    private static final int BUFFER_CHARS = 1 << 20;
+    private static final int PROGRESS_EVERY = 10_000;
+
+    // reads one field of the current row
+    public interface Column {
+        String value(ResultSet rs) throws SQLException;
+    }
+
+    // progress callback; cancelled() is polled between rows
+    public interface Progress {
+        void rows(long written);
+        boolean cancelled();
+    }
+
+    public static Column column(String label) {
+        return rs -> rs.getString(label);
+    }
+
+    // Writes to f.part and renames it over f when complete, so a cancelled or failed
+    // export never leaves a truncated file behind. Returns the number of data rows.
+    public static long exportToFile(Session session, String sql, String[] headers, Column[] columns, File f,
+                                    Progress progress) throws SQLException, IOException, ValidationException {
+        session.require(Permission.EXPORT);
+        File part = new File(f.getAbsolutePath() + ".part");
+        long rows;
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql);
+             ResultSet rs = pst.executeQuery();
+             Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(part), StandardCharsets.UTF_8), BUFFER_CHARS)) {
+            rows = write(rs, headers, columns, out, progress);
+        } catch (SQLException | IOException | RuntimeException ex) {
+            Files.deleteIfExists(part.toPath());
+            throw ex;
+        }
+        Files.move(part.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        System.out.println("CsvExporter: " + rows + " rows -> " + f.getAbsolutePath());
+        return rows;
+    }
+
+    // writes the header and every row of rs; the caller owns (and flushes/closes) out
+    public static long write(ResultSet rs, String[] headers, Column[] columns, Writer out, Progress progress)
+            throws SQLException, IOException {
+        writeRow(out, headers);
+        long n = 0;
+        while (rs.next()) {
+            for (int i = 0; i < columns.length; i++) {
+                if (i > 0) out.write(',');
+                writeField(out, columns[i].value(rs));
+            }
+            out.write("\r\n");
+            if (++n % PROGRESS_EVERY == 0 && progress != null) {
+                if (progress.cancelled()) throw new CancellationException();
+                progress.rows(n);
+            }
+        }
+        if (progress != null) progress.rows(n);
+        return n;
+    }
+
+    private static void writeRow(Writer out, String[] values) throws IOException {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) out.write(',');
+            writeField(out, values[i]);
+        }
+        out.write("\r\n");
+    }
+
+    // RFC 4180: plain fields as-is, otherwise wrapped in quotes with quotes doubled
+    static void writeField(Writer out, String s) throws IOException {
+        if (s == null || s.isEmpty()) return;
+        int len = s.length();
+        boolean quote = false;
+        for (int i = 0; i < len && !quote; i++) {
+            char ch = s.charAt(i);
+            quote = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+        }
+        if (!quote) {
+            out.write(s);
+            return;
+        }
+        out.write('"');
+        int start = 0;
+        for (int i = 0; i < len; i++) {
+            if (s.charAt(i) == '"') {
+                out.write(s, start, i - start + 1); // up to and including the quote...
+                out.write('"');                      // ...then double it
+                start = i + 1;
+            }
+        }
+        out.write(s, start, len - start);
+        out.write('"');
+    }
+}
@@ -0,0 +1,505 @@
+package app;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Bulk CSV import of patients, doctors or appointments. Three stages:
+// a reader thread parses the file into chunks, a validator pool checks each
+// chunk (dates/times through DateTimeUtils, patient/doctor ids against
+// in-memory id sets, appointment times against the doctor's working days,
+// hours and slot grid), and the calling thread writes the valid rows of each
+// chunk, in file order, as one batched INSERT in one transaction. Rows that
+// fail validation, or hit an already booked slot, go to <file>.rejected.csv
+// with the line number and reason. The first line must be a header; columns
+// are matched by name, in any order. Call from a background thread.
+public class CsvImporter {
+
+    private static final int CHUNK_ROWS = Math.max(100, DBConfig.getInt("import.batchSize", 5000));
+    private static final int THREADS = Math.max(1, DBConfig.getInt("import.threads",
+            Runtime.getRuntime().availableProcessors()));
+
+    private static final Future<Chunk> END = CompletableFuture.completedFuture(null);
+
+    public enum Target {
+        PATIENTS("patients", "INSERT INTO patients (name, age, gender, phone, address) VALUES (?, ?, ?, ?, ?)",
+                "name"),
+        DOCTORS("doctors", "INSERT INTO doctors (name, specialization, phone) VALUES (?, ?, ?)",
+                "name"),
+        // OR IGNORE: a row on a slot that is already taken is skipped and reported, not fatal
+        APPOINTMENTS("appointments", "INSERT OR IGNORE INTO appointments "
+                + "(patient_id, doctor_id, date, time, symptoms, appt_day, appt_minute) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                "patient_id", "doctor_id", "date", "time");
+
+        final String table;
+        final String insertSql;
+        final String[] required;
+
+        Target(String table, String insertSql, String... required) {
+            this.table = table;
+            this.insertSql = insertSql;
+            this.required = required;
+        }
+    }
+
+    public static final class Result {
+        public final long read;
+        public final long imported;
+        public final long rejected;
+        public final File rejectFile; // null when nothing was rejected
+        public final boolean cancelled; // stopped early; chunks already written stay imported
+        public final long millis;
+
+        Result(long read, long imported, long rejected, File rejectFile, boolean cancelled, long millis) {
+            this.read = read;
+            this.imported = imported;
+            this.rejected = rejected;
+            this.rejectFile = rejectFile;
+            this.cancelled = cancelled;
+            this.millis = millis;
+        }
+    }
+
+    public static Result importFile(Session session, Target target, File csv, CsvExporter.Progress progress)
+            throws SQLException, IOException, ValidationException {
+        session.require(target == Target.DOCTORS ? Permission.IMPORT_DOCTORS : Permission.IMPORT);
+        long started = System.currentTimeMillis();
+        try (RecordReader in = new RecordReader(new InputStreamReader(new FileInputStream(csv), StandardCharsets.UTF_8))) {
+            String[] header = in.next();
+            if (header == null) throw new ValidationException("The file is empty.");
+            Columns cols = new Columns(header);
+            for (String name : target.required) {
+                if (!cols.has(name)) throw new ValidationException("Missing column \"" + name + "\" in the header line.");
+            }
+            Refs refs = target == Target.APPOINTMENTS ? Refs.load() : null;
+
+            Pipeline p = new Pipeline(target, csv, header, cols, refs, progress);
+            p.run(in);
+
+            if (p.imported > 0) {
+                if (target == Target.APPOINTMENTS) SlotScheduler.invalidateAll();
+                DataChangeBus.reload(target.table);
+            }
+            Result r = new Result(p.read, p.imported, p.rejected, p.rejectFile, p.stop, System.currentTimeMillis() - started);
+            System.out.println("CsvImporter: " + target.table + " " + r.imported + " imported, " + r.rejected
+                    + " rejected of " + r.read + " in " + r.millis + " ms");
+            return r;
+        }
+    }
+
+    // ---- PIPELINE ----
+
+    private static final class Chunk {
+        final int[] lines;
+        final String[][] raw;
+        final Object[][] values;  // insert parameters; null where the row was rejected
+        final String[] reasons;   // why a row was rejected
+
+        Chunk(int[] lines, String[][] raw) {
+            this.lines = lines;
+            this.raw = raw;
+            this.values = new Object[raw.length][];
+            this.reasons = new String[raw.length];
+        }
+    }
+
+    private static final class Pipeline {
+        final Target target;
+        final File csv;
+        final String[] header;
+        final Columns cols;
+        final Refs refs;
+        final CsvExporter.Progress progress;
+
+        volatile boolean stop;
+        long read, imported, rejected;
+        File rejectFile;
+        Writer rejects;
+
+        Pipeline(Target target, File csv, String[] header, Columns cols, Refs refs, CsvExporter.Progress progress) {
+            this.target = target;
+            this.csv = csv;
+            this.header = header;
+            this.cols = cols;
+            this.refs = refs;
+            this.progress = progress;
+        }
+
+        void run(RecordReader in) throws SQLException, IOException, ValidationException {
+            AtomicInteger n = new AtomicInteger();
+            ExecutorService validators = Executors.newFixedThreadPool(THREADS, r -> {
+                Thread t = new Thread(r, "csv-import-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            // bounded: the reader waits when validation or the writer falls behind
+            BlockingQueue<Future<Chunk>> pending = new ArrayBlockingQueue<>(THREADS * 2);
+            Thread reader = new Thread(() -> readChunks(in, validators, pending), "csv-import-reader");
+            reader.setDaemon(true);
+            reader.start();
+            try {
+                for (;;) {
+                    Future<Chunk> f = pending.take();
+                    if (f == END) break;
+                    Chunk chunk = await(f);
+                    if (stop) continue; // drain so the reader can finish
+                    write(chunk);
+                    read += chunk.raw.length;
+                    if (progress != null) {
+                        progress.rows(read);
+                        if (progress.cancelled()) stop = true;
+                    }
+                }
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                stop = true;
+                throw new CancellationException();
+            } catch (SQLException | IOException | ValidationException | RuntimeException ex) {
+                stop = true;
+                throw ex;
+            } finally {
+                reader.interrupt(); // in case it is blocked on a full queue
+                validators.shutdownNow();
+                if (rejects != null) rejects.close();
+            }
+        }
+
+        private void readChunks(RecordReader in, ExecutorService validators, BlockingQueue<Future<Chunk>> pending) {
+            try {
+                try {
+                    while (!stop) {
+                        int[] lines = new int[CHUNK_ROWS];
+                        String[][] raw = new String[CHUNK_ROWS][];
+                        int size = 0;
+                        String[] rec;
+                        while (size < CHUNK_ROWS && (rec = in.next()) != null) {
+                            lines[size] = in.recordLine();
+                            raw[size++] = rec;
+                        }
+                        if (size == 0) break;
+                        Chunk chunk = new Chunk(java.util.Arrays.copyOf(lines, size), java.util.Arrays.copyOf(raw, size));
+                        pending.put(validators.submit(() -> validate(chunk)));
+                        if (size < CHUNK_ROWS) break;
+                    }
+                } catch (IOException | RuntimeException ex) {
+                    CompletableFuture<Chunk> failed = new CompletableFuture<>();
+                    failed.completeExceptionally(ex);
+                    pending.put(failed);
+                }
+                pending.put(END);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        private Chunk validate(Chunk chunk) {
+            for (int i = 0; i < chunk.raw.length; i++) {
+                try {
+                    chunk.values[i] = convert(chunk.raw[i]);
+                } catch (ValidationException ex) {
+                    chunk.reasons[i] = ex.getMessage();
+                }
+            }
+            return chunk;
+        }
+
+        // one CSV row -> insert parameters, in the order of target.insertSql
+        private Object[] convert(String[] r) throws ValidationException {
+            switch (target) {
+                case PATIENTS: {
+                    String name = required(r, "name");
+                    String age = cols.get(r, "age");
+                    Integer ageVal = null;
+                    if (age != null) {
+                        try {
+                            ageVal = Integer.valueOf(age);
+                        } catch (NumberFormatException ex) {
+                            throw new ValidationException("age is not a number: " + age);
+                        }
+                        if (ageVal < 0 || ageVal > 150) throw new ValidationException("age out of range: " + age);
+                    }
+                    return new Object[] { name, ageVal, cols.get(r, "gender"), cols.get(r, "phone"), cols.get(r, "address") };
+                }
+                case DOCTORS:
+                    return new Object[] { required(r, "name"), cols.get(r, "specialization"), cols.get(r, "phone") };
+                default: {
+                    int pid = id(r, "patient_id");
+                    int did = id(r, "doctor_id");
+                    if (!refs.patients.get(pid)) throw new ValidationException("no patient with id " + pid);
+                    if (!refs.doctors.get(did)) throw new ValidationException("no doctor with id " + did);
+                    String dateStr = required(r, "date");
+                    LocalDate date = DateTimeUtils.parseDate(dateStr);
+                    if (date == null) throw new ValidationException("unrecognized date: " + dateStr);
+                    // every imported appointment takes a slot, like one booked at the desk
+                    String timeStr = required(r, "time");
+                    LocalTime t = DateTimeUtils.parseTime(timeStr);
+                    if (t == null) throw new ValidationException("unrecognized time: " + timeStr);
+                    int minute = DateTimeUtils.toMinuteOfDay(t);
+                    SlotScheduler.checkHours(SlotScheduler.hoursFor(refs.hours, did, date), date, minute);
+                    return new Object[] { pid, did, date.toString(), DateTimeUtils.formatMinute(minute),
+                            cols.get(r, "symptoms"), date.toEpochDay(), minute };
+                }
+            }
+        }
+
+        private String required(String[] r, String name) throws ValidationException {
+            String v = cols.get(r, name);
+            if (v == null) throw new ValidationException(name + " is empty");
+            return v;
+        }
+
+        private int id(String[] r, String name) throws ValidationException {
+            String v = required(r, name);
+            try {
+                return Integer.parseInt(v);
+            } catch (NumberFormatException ex) {
+                throw new ValidationException(name + " is not a number: " + v);
+            }
+        }
+
+        // ---- WRITER ----
+
+        private void write(Chunk chunk) throws SQLException, IOException, ValidationException {
+            List<Integer> rows = new ArrayList<>(chunk.raw.length);
+            for (int i = 0; i < chunk.raw.length; i++) {
+                if (chunk.values[i] != null) rows.add(i); else reject(chunk, i);
+            }
+            if (rows.isEmpty()) return;
+
+            int[] counts;
+            try {
+                counts = AppointmentService.inWriteTransaction(c -> {
+                    try (PreparedStatement pst = c.prepareStatement(target.insertSql)) {
+                        for (int i : rows) {
+                            Object[] v = chunk.values[i];
+                            for (int k = 0; k < v.length; k++) pst.setObject(k + 1, v[k]);
+                            pst.addBatch();
+                        }
+                        return pst.executeBatch();
+                    }
+                });
+            } catch (SQLException ex) {
+                if (AppointmentService.isBusy(ex)) throw ex;
+                // a constraint the validators don't know about; the chunk was rolled back
+                for (int i : rows) {
+                    chunk.reasons[i] = "database rejected batch: " + ex.getMessage();
+                    reject(chunk, i);
+                }
+                return;
+            }
+            for (int k = 0; k < rows.size(); k++) {
+                int i = rows.get(k);
+                if (k < counts.length && counts[k] == 0) {
+                    chunk.reasons[i] = "doctor already has an appointment at that date and time";
+                    reject(chunk, i);
+                } else {
+                    imported++;
+                }
+            }
+        }
+
+        private void reject(Chunk chunk, int i) throws IOException {
+            rejected++;
+            if (rejects == null) {
+                String name = csv.getName();
+                int dot = name.lastIndexOf('.');
+                rejectFile = new File(csv.getParentFile(), (dot > 0 ? name.substring(0, dot) : name) + ".rejected.csv");
+                rejects = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(rejectFile), StandardCharsets.UTF_8), 1 << 16);
+                rejects.write("line,reason");
+                for (String h : header) {
+                    rejects.write(',');
+                    CsvExporter.writeField(rejects, h);
+                }
+                rejects.write("\r\n");
+            }
+            rejects.write(Integer.toString(chunk.lines[i]));
+            rejects.write(',');
+            CsvExporter.writeField(rejects, chunk.reasons[i]);
+            for (String v : chunk.raw[i]) {
+                rejects.write(',');
+                CsvExporter.writeField(rejects, v);
+            }
+            rejects.write("\r\n");
+        }
+
+        private Chunk await(Future<Chunk> f) throws SQLException, IOException {
+            try {
+                return f.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new CancellationException();
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException) throw (IOException) cause;
+                if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    // ---- HEADER ----
+
+    private static final class Columns {
+        private final Map<String, Integer> index = new HashMap<>();
+
+        Columns(String[] header) {
+            for (int i = 0; i < header.length; i++) {
+                String h = header[i].trim().toLowerCase(Locale.ROOT);
+                if (i == 0 && h.startsWith("\uFEFF")) h = h.substring(1); // UTF-8 BOM
+                index.putIfAbsent(h, i);
+            }
+        }
+
+        boolean has(String name) {
+            return index.containsKey(name);
+        }
+
+        // trimmed value, or null if the column is missing or blank
+        String get(String[] row, String name) {
+            Integer i = index.get(name);
+            if (i == null || i >= row.length) return null;
+            String v = row[i].trim();
+            return v.isEmpty() ? null : v;
+        }
+    }
+
+    // ---- FOREIGN KEYS ----
+
+    // ids that exist, loaded once per import (ids are small ints, so a bitset),
+    // and the doctors' working hours for the slot checks
+    private static final class Refs {
+        final BitSet patients = new BitSet();
+        final BitSet doctors = new BitSet();
+        Map<Integer, Map<Integer, SlotScheduler.Hours>> hours;
+
+        static Refs load() throws SQLException {
+            Refs r = new Refs();
+            try (Connection c = DBConnection.getConnection()) {
+                fill(c, "SELECT patient_id FROM patients", r.patients);
+                fill(c, "SELECT doctor_id FROM doctors", r.doctors);
+                r.hours = SlotScheduler.doctorHours(c);
+            }
+            return r;
+        }
+
+        private static void fill(Connection c, String sql, BitSet ids) throws SQLException {
+            try (PreparedStatement pst = c.prepareStatement(sql);
+                 ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    int id = rs.getInt(1);
+                    if (id >= 0) ids.set(id);
+                }
+            }
+        }
+    }
+
+    // ---- CSV PARSER ----
+
+    // RFC 4180 records: quoted fields may hold commas, doubled quotes and line breaks
+    static final class RecordReader implements AutoCloseable {
+        private final Reader in;
+        private final char[] buf = new char[1 << 16];
+        private int pos, len;
+        private int line = 1;
+        private int recordLine;
+        private final StringBuilder field = new StringBuilder(64);
+        private final List<String> fields = new ArrayList<>();
+
+        RecordReader(Reader in) {
+            this.in = in;
+        }
+
+        // line number the last record started on
+        int recordLine() {
+            return recordLine;
+        }
+
+        // next record, or null at end of file; blank lines are skipped
+        String[] next() throws IOException {
+            int c = read();
+            while (c == '\r' || c == '\n') c = read();
+            if (c < 0) return null;
+            recordLine = line;
+            fields.clear();
+            field.setLength(0);
+            boolean inQuotes = false;
+            for (;; c = read()) {
+                if (inQuotes) {
+                    if (c < 0) throw new IOException("Unterminated quoted field starting on line " + recordLine);
+                    if (c == '"') {
+                        if (peek() == '"') {
+                            read();
+                            field.append('"');
+                        } else {
+                            inQuotes = false;
+                        }
+                    } else {
+                        field.append((char) c);
+                    }
+                } else if (c == '"' && field.length() == 0) {
+                    inQuotes = true;
+                } else if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                } else if (c == '\n' || c == '\r' || c < 0) {
+                    if (c == '\r' && peek() == '\n') read();
+                    fields.add(field.toString());
+                    return fields.toArray(new String[0]);
+                } else {
+                    field.append((char) c);
+                }
+            }
+        }
+
+        private int read() throws IOException {
+            if (pos >= len && !fill()) return -1;
+            char ch = buf[pos++];
+            if (ch == '\n') line++;
+            return ch;
+        }
+
+        private int peek() throws IOException {
+            if (pos >= len && !fill()) return -1;
+            return buf[pos];
+        }
+
+        private boolean fill() throws IOException {
+            len = in.read(buf, 0, buf.length);
+            pos = 0;
+            return len > 0;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
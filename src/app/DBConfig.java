@@ -0,0 +1,88 @@
+package app;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+// Tunables for the database layer. Defaults below can be overridden from
+// hospital.properties in the app data folder (or -Dhospital.config=<file>).
+public class DBConfig {
+
+    // PRAGMAs applied to every new physical connection, in this order
+    private static final String[][] DEFAULT_PRAGMAS = {
+        {"journal_mode", "WAL"},          // readers no longer block the writer
+        {"synchronous", "NORMAL"},        // WAL + NORMAL: fsync on checkpoint only
+        {"busy_timeout", "5000"},         // wait for a lock instead of failing immediately
+        {"cache_size", "-16000"},         // ~16 MB page cache per connection
+        {"mmap_size", "268435456"},       // 256 MB memory-mapped reads
+        {"temp_store", "MEMORY"},
+        {"wal_autocheckpoint", "1000"},   // pages
+        {"foreign_keys", "ON"}
+    };
+
+    private static final Pattern SAFE_VALUE = Pattern.compile("-?[A-Za-z0-9_]+");
+
+    private static volatile Properties props;
+
+    private static Properties props() {
+        Properties p = props;
+        if (p != null) return p;
+        synchronized (DBConfig.class) {
+            if (props == null) props = load();
+            return props;
+        }
+    }
+
+    private static Properties load() {
+        Properties p = new Properties();
+        String override = System.getProperty("hospital.config");
+        Path file = (override != null && !override.trim().isEmpty())
+                ? Paths.get(override.trim())
+                : DBConnection.getAppDataBaseDir().resolve("hospital.properties");
+        if (Files.isRegularFile(file)) {
+            try (InputStream in = Files.newInputStream(file)) {
+                p.load(in);
+                System.out.println("DBConfig: loaded " + file.toAbsolutePath());
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
+        return p;
+    }
+
+    public static String get(String key, String def) {
+        String v = props().getProperty(key);
+        return (v == null || v.trim().isEmpty()) ? def : v.trim();
+    }
+
+    public static int getInt(String key, int def) {
+        try { return Integer.parseInt(get(key, String.valueOf(def))); } catch (NumberFormatException ex) { return def; }
+    }
+
+    public static long getLong(String key, long def) {
+        try { return Long.parseLong(get(key, String.valueOf(def))); } catch (NumberFormatException ex) { return def; }
+    }
+
+    // db.pragma.<name>=<value> overrides a default; an empty value drops it
+    public static Map<String, String> pragmas() {
+        Map<String, String> out = new LinkedHashMap<>();
+        for (String[] kv : DEFAULT_PRAGMAS) out.put(kv[0], kv[1]);
+        for (String key : props().stringPropertyNames()) {
+            if (!key.startsWith("db.pragma.")) continue;
+            String name = key.substring("db.pragma.".length()).trim().toLowerCase();
+            String value = props().getProperty(key).trim();
+            if (value.isEmpty()) { out.remove(name); continue; }
+            if (!SAFE_VALUE.matcher(name).matches() || !SAFE_VALUE.matcher(value).matches()) {
+                System.err.println("DBConfig: ignoring unsafe pragma " + key + "=" + value);
+                continue;
+            }
+            out.put(name, value);
+        }
+        return out;
+    }
+}
@@ -2,16 +2,21 @@ package app;
 
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class DBConnection {
 
     // LOCALAPPDATA on Windows; fallback to user.home
-    private static Path getAppDataBaseDir() {
+    static Path getAppDataBaseDir() {
         String localApp = System.getenv("LOCALAPPDATA");
         if (localApp != null && !localApp.trim().isEmpty()) {
             return Paths.get(localApp, "HospitalAppointmentSystem");
@@ -29,9 +34,85 @@ public class DBConnection {
         return "jdbc:sqlite:" + dbFile.toAbsolutePath().toString().replace("\\", "/");
     }
 
+    private static volatile ConnectionPool pool;
+    private static ScheduledExecutorService checkpointer;
+
     // ---- GET CONNECTION ----
+    // returns a pooled connection; close() hands it back to the pool
     public static Connection getConnection() throws SQLException {
+        return getPool().borrow();
+    }
+
+    // current pool counters (active / idle / wait time) for sizing
+    public static ConnectionPool.Stats getPoolStats() {
+        ConnectionPool p = pool;
+        return p == null ? null : p.getStats();
+    }
+
+    public static void shutdown() {
+        ConnectionPool p;
+        synchronized (DBConnection.class) {
+            p = pool;
+            pool = null;
+            if (checkpointer != null) checkpointer.shutdownNow();
+            checkpointer = null;
+        }
+        if (p != null) {
+            // fold the WAL back into hospital.db so the file is self-contained on exit
+            checkpoint(p, "TRUNCATE");
+            System.out.println("DBConnection: " + p.getStats());
+            p.close();
+        }
+    }
+
+    private static ConnectionPool getPool() throws SQLException {
+        ConnectionPool p = pool;
+        if (p != null) return p;
+        synchronized (DBConnection.class) {
+            if (pool == null) {
+                prepareEnvironment();
+                // sqlite serialises writers, so a handful of connections covers a front desk
+                pool = new ConnectionPool(DBConnection::openPhysicalConnection,
+                        DBConfig.getInt("db.pool.maxSize", 8),
+                        DBConfig.getInt("db.pool.minIdle", 1),
+                        DBConfig.getLong("db.pool.borrowTimeoutMs", 10_000),
+                        DBConfig.getLong("db.pool.maxIdleMs", 5 * 60_000),
+                        DBConfig.getLong("db.pool.validateAfterMs", 30_000),
+                        DBConfig.getLong("db.pool.leakThresholdMs", 60_000));
+                startCheckpointer(pool);
+                Runtime.getRuntime().addShutdownHook(new Thread(DBConnection::shutdown, "db-pool-shutdown"));
+            }
+            return pool;
+        }
+    }
 
+    // ---- WAL CHECKPOINTS ----
+    // wal_autocheckpoint already runs on commit; this passive pass keeps the WAL
+    // short during quiet periods without ever blocking readers or the writer
+    private static void startCheckpointer(ConnectionPool p) {
+        long interval = DBConfig.getLong("db.checkpoint.intervalSeconds", 300);
+        if (interval <= 0) return;
+        checkpointer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-wal-checkpoint");
+            t.setDaemon(true);
+            return t;
+        });
+        checkpointer.scheduleWithFixedDelay(() -> checkpoint(p, "PASSIVE"), interval, interval, TimeUnit.SECONDS);
+    }
+
+    private static void checkpoint(ConnectionPool p, String mode) {
+        try (Connection c = p.borrow(); Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("PRAGMA wal_checkpoint(" + mode + ")")) {
+            if (rs.next() && rs.getInt(1) != 0) {
+                System.out.println("DBConnection: " + mode + " checkpoint incomplete (busy)");
+            }
+        } catch (SQLException ex) {
+            // not in WAL mode or pool closing; nothing to do
+        }
+    }
+
+    // one-time setup: db folder + JDBC driver
+    private static void prepareEnvironment() throws SQLException {
         // ensures parent folders exist
         try {
             Path base = getAppDataBaseDir();
@@ -52,42 +133,31 @@ public class DBConnection {
             e.printStackTrace();
             // will fail on getConnection if jar missing
         }
+    }
 
+    // opens a new physical connection (only called by the pool)
+    private static Connection openPhysicalConnection() throws SQLException {
         String sqliteUrl = getSqliteUrl();
         Connection conn = DriverManager.getConnection(sqliteUrl);
 
-        // enable foreign keys
+        // apply the PRAGMA profile once per physical connection
         try (Statement st = conn.createStatement()) {
-            st.execute("PRAGMA foreign_keys = ON");
-        } catch (SQLException ex) {
-            // ignore if not supported
+            for (Map.Entry<String, String> pragma : DBConfig.pragmas().entrySet()) {
+                try {
+                    st.execute("PRAGMA " + pragma.getKey() + " = " + pragma.getValue());
+                } catch (SQLException ex) {
+                    // ignore if not supported
+                    System.err.println("DBConnection: PRAGMA " + pragma.getKey() + " failed: " + ex.getMessage());
+                }
+            }
         }
         return conn;
     }
 
-    // ---- CREATES TABLES AUTOMATICALLY IF THEY DO NOT EXIST ----
+    // ---- BRINGS THE SCHEMA UP TO DATE (creates tables on first run) ----
     public static void initializeIfNeeded() {
-        String[] ddl = new String[] {
-            "CREATE TABLE IF NOT EXISTS patients ("
-                + "patient_id INTEGER PRIMARY KEY AUTOINCREMENT, "
-                + "name TEXT NOT NULL, age INTEGER, gender TEXT, phone TEXT, address TEXT)",
-            "CREATE TABLE IF NOT EXISTS doctors ("
-                + "doctor_id INTEGER PRIMARY KEY AUTOINCREMENT, "
-                + "name TEXT NOT NULL, specialization TEXT, phone TEXT)",
-            "CREATE TABLE IF NOT EXISTS appointments ("
-                + "appointment_id INTEGER PRIMARY KEY AUTOINCREMENT, "
-                + "patient_id INTEGER NOT NULL, doctor_id INTEGER NOT NULL, "
-                + "date TEXT NOT NULL, time TEXT, symptoms TEXT, "
-                + "FOREIGN KEY(patient_id) REFERENCES patients(patient_id) ON DELETE CASCADE, "
-                + "FOREIGN KEY(doctor_id) REFERENCES doctors(doctor_id) ON DELETE CASCADE)",
-            "CREATE TABLE IF NOT EXISTS users ("
-                + "user_id INTEGER PRIMARY KEY AUTOINCREMENT, "
-                + "username TEXT UNIQUE NOT NULL, password TEXT NOT NULL, "
-                + "role TEXT NOT NULL, patient_ref_id INTEGER)"
-        };
-
-        try (Connection c = getConnection(); Statement st = c.createStatement()) {
-            for (String s : ddl) st.execute(s);
+        try {
+            SchemaMigrations.migrate();
         } catch (SQLException ex) {
             ex.printStackTrace();
         }
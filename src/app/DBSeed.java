@@ -25,7 +25,7 @@ public class DBSeed {
         // proceeds to insert sample data in a transaction
         String insertPatientSql = "INSERT INTO patients (name, age, gender, phone, address) VALUES (?, ?, ?, ?, ?)";
         String insertDoctorSql = "INSERT INTO doctors (name, specialization, phone) VALUES (?, ?, ?)";
-        String insertApptSql = "INSERT INTO appointments (patient_id, doctor_id, date, time, symptoms) VALUES (?, ?, ?, ?, ?)";
+        String insertApptSql = "INSERT INTO appointments (patient_id, doctor_id, date, time, symptoms, appt_day, appt_minute) VALUES (?, ?, ?, ?, ?, ?, ?)";
         String insertUserSql = "INSERT INTO users (username, password, role, patient_ref_id) VALUES (?, ?, ?, ?)";
 
         try (Connection c = DBConnection.getConnection()) {
@@ -81,9 +81,9 @@ public class DBSeed {
                 int did3 = getGeneratedId(psDoctor);
 
                 // --- Appointments ---
-                psAppt.setInt(1, pid1); psAppt.setInt(2, did2); psAppt.setString(3, "2025-02-15"); psAppt.setString(4, "10:30 AM"); psAppt.setString(5, "Chest pain"); psAppt.executeUpdate();
-                psAppt.setInt(1, pid2); psAppt.setInt(2, did3); psAppt.setString(3, "2025-02-17"); psAppt.setString(4, "04:45 PM"); psAppt.setString(5, "Skin allergy"); psAppt.executeUpdate();
-                psAppt.setInt(1, pid2); psAppt.setInt(2, did1); psAppt.setString(3, "2025-02-18"); psAppt.setString(4, "11:15 AM"); psAppt.setString(5, "Fever & cough"); psAppt.executeUpdate();
+                insertAppointment(psAppt, pid1, did2, "2025-02-15", "10:30 AM", "Chest pain");
+                insertAppointment(psAppt, pid2, did3, "2025-02-17", "04:45 PM", "Skin allergy");
+                insertAppointment(psAppt, pid2, did1, "2025-02-18", "11:15 AM", "Fever & cough");
 
                 // --- Users (default credentials for demo) ---
                 psUser.setString(1, "admin");
@@ -119,6 +119,18 @@ public class DBSeed {
         }
     }
 
+    // writes both the display text and the typed appt_day / appt_minute columns
+    private static void insertAppointment(PreparedStatement ps, int pid, int did, String date, String time, String symptoms) throws SQLException {
+        ps.setInt(1, pid);
+        ps.setInt(2, did);
+        ps.setString(3, date);
+        ps.setString(4, time);
+        ps.setString(5, symptoms);
+        ps.setLong(6, java.time.LocalDate.parse(date).toEpochDay());
+        ps.setInt(7, DateTimeUtils.toMinuteOfDay(DateTimeUtils.parseTime(time)));
+        ps.executeUpdate();
+    }
+
     private static int getGeneratedId(PreparedStatement ps) throws SQLException {
         try (ResultSet keys = ps.getGeneratedKeys()) {
             if (keys != null && keys.next()) return keys.getInt(1);
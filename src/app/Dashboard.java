@@ -3,7 +3,6 @@ package app;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
-import java.sql.Statement;
 import java.sql.SQLException;
 import javax.swing.table.DefaultTableModel;
 import javax.swing.SwingUtilities;
@@ -12,18 +11,8 @@ import javax.swing.*;
 
 // CSV + File I/O
 import java.io.File;
-import java.io.PrintWriter;
-import java.io.OutputStreamWriter;
-import java.io.FileOutputStream;
 import java.io.IOException;
 
-// PDFBox
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
-
-
 public class Dashboard extends JFrame {
 
     private JPanel sidePanel;
@@ -31,44 +20,43 @@ public class Dashboard extends JFrame {
     private CardLayout cardLayout;
 
     // Buttons (side menu)
-    private JButton btnAddPatient, btnViewPatients, btnAddDoctor, btnViewDoctors, btnBookAppointment, btnViewAppointments, btnLogout, btnRefresh, btnCreatePatientUser;
+    private JButton btnAddPatient, btnViewPatients, btnAddDoctor, btnViewDoctors, btnBookAppointment, btnViewAppointments, btnWaitlist, btnCalendar, btnExportAll, btnLogout, btnCreatePatientUser;
     private JTable patientsTable;
     private DefaultTableModel patientsModel;
     private JTable doctorsTable;
     private DefaultTableModel doctorsModel;
+    private AppointmentsTableModel appointmentsModel;
+
+    // card name -> builder for cards not created yet (see showCard)
+    private final java.util.Map<String, java.util.function.Supplier<JPanel>> cardFactories = new java.util.HashMap<>();
+    private final java.util.Set<String> builtCards = new java.util.HashSet<>();
+
 
+    // who is signed in; fixed for the lifetime of the window
+    private final Session session;
 
-    private String userRole = "guest"; // default
+    // background DB work started by this window (cancelled on dispose)
+    private final java.util.Set<DbExecutor.Task<?>> tasks = new java.util.HashSet<>();
+    private DbExecutor.Task<?> patientsLoad, doctorsLoad;
+    private volatile String patientsQuery; // FTS match expression for View Patients, null = all
+    private BusyBar patientsBusy, doctorsBusy, appointmentsBusy;
 
     // --- Constructors ---
-    public Dashboard(String role) {
-        this.userRole = (role == null ? "guest" : role);
-        Session.currentUserRole = this.userRole;
+    public Dashboard(Session session) {
+        this.session = (session == null ? Session.GUEST : session);
         initUI();
         applyRolePermissions();
+        DataChangeBus.addListener(changeListener);
     }
 
 
     // default constructor for testing
     public Dashboard() {
-        this("admin");
+        this(Session.of(-1, "admin", "admin", -1));
     }
 
     // --- init UI ---
     private void initUI() {
-        // DEBUG: quick DB connection test when Dashboard opens
-        try (java.sql.Connection c = DBConnection.getConnection()) {
-            System.out.println("DBG: Dashboard DB OK");
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            javax.swing.JOptionPane.showMessageDialog(this, "DBG: Dashboard DB error: " + ex.getMessage());
-        }
-
-        // page background
-        mainPanel = new JPanel(cardLayout);
-        mainPanel.setBackground(new Color(240,240,240)); // light gray page
-
-        
         setTitle("Hospital Appointment System - Dashboard");
         setDefaultCloseOperation(WindowConstants.EXIT_ON_CLOSE);
         setSize(1000, 650);
@@ -98,6 +86,9 @@ public class Dashboard extends JFrame {
         btnCreatePatientUser= makeMenuButton("Create Patient User"); 
         btnBookAppointment = makeMenuButton("Book Appointment");
         btnViewAppointments= makeMenuButton("View Appointments");
+        btnWaitlist        = makeMenuButton("Waitlist");
+        btnCalendar        = makeMenuButton("Doctor Calendar");
+        btnExportAll       = makeMenuButton("Export All");
         btnLogout          = makeMenuButton("Logout");
 
         // add buttons in desired order
@@ -114,6 +105,12 @@ public class Dashboard extends JFrame {
         sidePanel.add(btnBookAppointment);
         sidePanel.add(Box.createVerticalStrut(8));
         sidePanel.add(btnViewAppointments);
+        sidePanel.add(Box.createVerticalStrut(8));
+        sidePanel.add(btnWaitlist);
+        sidePanel.add(Box.createVerticalStrut(8));
+        sidePanel.add(btnCalendar);
+        sidePanel.add(Box.createVerticalStrut(8));
+        sidePanel.add(btnExportAll);
         sidePanel.add(Box.createVerticalGlue());
         sidePanel.add(btnLogout);
 
@@ -124,31 +121,35 @@ public class Dashboard extends JFrame {
         mainPanel = new JPanel(cardLayout);
         mainPanel.setBorder(BorderFactory.createEmptyBorder(12, 12, 12, 12));
 
-        // Placeholder panels
+        // Only the home card is built up front; the rest are created (and start
+        // loading their data in the background) the first time they're opened
         mainPanel.add(makeLabelPanel("Welcome to Hospital Appointment System\n\nSelect an option from the left."), "HOME");
-        mainPanel.add(makeCreatePatientUserPanel(), "CREATE_PATIENT_USER");
-        mainPanel.add(makeAddPatientPanel(), "ADD_PATIENT");
-        mainPanel.add(makeViewPatientsPanel(), "VIEW_PATIENTS");
-        mainPanel.add(makeAddDoctorPanel(), "ADD_DOCTOR");
-        mainPanel.add(makeViewDoctorsPanel(), "VIEW_DOCTORS");
-        mainPanel.add(makeBookAppointmentPanel(), "BOOK_APPOINTMENT");
-        mainPanel.add(makeViewAppointmentsPanel(), "VIEW_APPOINTMENTS");
+        builtCards.add("HOME");
+        cardFactories.put("CREATE_PATIENT_USER", this::makeCreatePatientUserPanel);
+        cardFactories.put("ADD_PATIENT", this::makeAddPatientPanel);
+        cardFactories.put("VIEW_PATIENTS", this::makeViewPatientsPanel);
+        cardFactories.put("ADD_DOCTOR", this::makeAddDoctorPanel);
+        cardFactories.put("VIEW_DOCTORS", this::makeViewDoctorsPanel);
+        cardFactories.put("BOOK_APPOINTMENT", this::makeBookAppointmentPanel);
+        cardFactories.put("VIEW_APPOINTMENTS", this::makeViewAppointmentsPanel);
+        cardFactories.put("WAITLIST", this::makeWaitlistPanel);
+        cardFactories.put("CALENDAR", this::makeCalendarPanel);
 
         add(mainPanel, BorderLayout.CENTER);
 
         // Default show home or add patient
-        cardLayout.show(mainPanel, "HOME");
-        btnCreatePatientUser.addActionListener(e -> cardLayout.show(mainPanel, "CREATE_PATIENT_USER"));
+        showCard("HOME");
+        btnCreatePatientUser.addActionListener(e -> showCard("CREATE_PATIENT_USER"));
         // Button listeners: switch cards
-        btnAddPatient.addActionListener(e -> cardLayout.show(mainPanel, "ADD_PATIENT"));
-        btnViewPatients.addActionListener(e -> cardLayout.show(mainPanel, "VIEW_PATIENTS"));
-        btnAddDoctor.addActionListener(e -> cardLayout.show(mainPanel, "ADD_DOCTOR"));
-        // btnViewDoctors = makeMenuButton("View Doctors");
-        // sidePanel.add(btnViewDoctors);
-        // sidePanel.add(Box.createVerticalStrut(8));
-        btnViewDoctors.addActionListener(e -> cardLayout.show(mainPanel, "VIEW_DOCTORS"));
-        btnBookAppointment.addActionListener(e -> cardLayout.show(mainPanel, "BOOK_APPOINTMENT"));
-        btnViewAppointments.addActionListener(e -> cardLayout.show(mainPanel, "VIEW_APPOINTMENTS"));
+        btnAddPatient.addActionListener(e -> showCard("ADD_PATIENT"));
+        btnViewPatients.addActionListener(e -> showCard("VIEW_PATIENTS"));
+        btnAddDoctor.addActionListener(e -> showCard("ADD_DOCTOR"));
+        btnViewDoctors.addActionListener(e -> showCard("VIEW_DOCTORS"));
+        btnBookAppointment.addActionListener(e -> showCard("BOOK_APPOINTMENT"));
+        btnViewAppointments.addActionListener(e -> showCard("VIEW_APPOINTMENTS"));
+        btnWaitlist.addActionListener(e -> showCard("WAITLIST"));
+        btnCalendar.addActionListener(e -> showCard("CALENDAR"));
+        btnExportAll.addActionListener(e -> exportAll());
         btnLogout.addActionListener(e -> {
             int confirm = JOptionPane.showConfirmDialog(this, "Logout and return to login?", "Confirm", JOptionPane.YES_NO_OPTION);
             if (confirm == JOptionPane.YES_OPTION) {
@@ -158,40 +159,139 @@ public class Dashboard extends JFrame {
         });
     }
 
+    // builds a card on first use, then switches to it
+    private void showCard(String name) {
+        if (builtCards.add(name)) {
+            java.util.function.Supplier<JPanel> factory = cardFactories.remove(name);
+            if (factory != null) mainPanel.add(factory.get(), name);
+        }
+        cardLayout.show(mainPanel, name);
+    }
+
     // --- Role permission application ---
     private void applyRolePermissions() {
-        // admin = full access
-        if (userRole.equalsIgnoreCase("admin")) {
-            // nothing to hide
-        } else if (userRole.equalsIgnoreCase("receptionist")) {
-            // receptionists should not be able to add/remove doctors
-            if (btnAddDoctor != null) btnAddDoctor.setVisible(false);
-        } else if (userRole.equalsIgnoreCase("patient")) {
-
-            // Patients should only be allowed to:
-            // - Book appointments (but only for their own patient_id; booking form locks that field)
-            // - View their appointments (view panel already enforces ownership checks)
-            // - Logout
-
-            if (btnAddDoctor != null) btnAddDoctor.setVisible(false);
-            if (btnViewDoctors != null) btnViewDoctors.setVisible(false);
-            if (btnCreatePatientUser != null) btnCreatePatientUser.setVisible(false);
-            if (btnAddPatient != null) btnAddPatient.setVisible(false);
-            if (btnViewPatients != null) btnViewPatients.setVisible(false);
-
-            // Booking visible for patients (they will only be able to book for their own id).
-            if (btnBookAppointment != null) btnBookAppointment.setVisible(true);
-
-            // View appointments are visible so patient can see their own appointments
-            if (btnViewAppointments != null) btnViewAppointments.setVisible(true);
-   
-        } else { // guest or unknown
-            if (btnAddDoctor != null) btnAddDoctor.setVisible(false);
-            if (btnViewPatients != null) btnViewPatients.setVisible(false);
-            if (btnAddPatient != null) btnAddPatient.setVisible(false);
+        // patients see only booking and their own appointments; guests only the doctor list
+        if (btnAddPatient != null) btnAddPatient.setVisible(session.has(Permission.MANAGE_PATIENTS));
+        if (btnViewPatients != null) btnViewPatients.setVisible(session.has(Permission.VIEW_PATIENTS));
+        if (btnAddDoctor != null) btnAddDoctor.setVisible(session.has(Permission.MANAGE_DOCTORS));
+        if (btnViewDoctors != null) btnViewDoctors.setVisible(session.has(Permission.VIEW_DOCTORS));
+        if (btnCreatePatientUser != null) btnCreatePatientUser.setVisible(session.has(Permission.CREATE_PATIENT_USERS));
+        if (btnBookAppointment != null) btnBookAppointment.setVisible(
+                session.has(Permission.BOOK_ANY_PATIENT) || session.has(Permission.BOOK_OWN));
+        if (btnViewAppointments != null) btnViewAppointments.setVisible(
+                session.has(Permission.VIEW_ALL_APPOINTMENTS) || session.has(Permission.VIEW_OWN_APPOINTMENTS));
+        if (btnWaitlist != null) btnWaitlist.setVisible(session.has(Permission.MANAGE_WAITLIST));
+        if (btnCalendar != null) btnCalendar.setVisible(session.has(Permission.VIEW_CALENDAR));
+        if (btnExportAll != null) btnExportAll.setVisible(session.has(Permission.EXPORT_ALL));
+    }
+
+    // ---- background DB helpers ----
+
+    // runs work off the EDT; shows the card's busy bar and reports errors relative to this window
+    private <T> DbExecutor.Task<T> runDb(BusyBar busy, DbExecutor.Work<T> work, java.util.function.Consumer<T> onDone) {
+        return runDb(this, busy, work, onDone);
+    }
+
+    private <T> DbExecutor.Task<T> runDb(Component parent, BusyBar busy, DbExecutor.Work<T> work, java.util.function.Consumer<T> onDone) {
+        return runDb(parent, RequestScheduler.Lane.INTERACTIVE, busy, work, onDone);
+    }
+
+    // exports, imports and printed reports: the BULK lane, so they wait for each
+    // other (or are turned away) instead of slowing down bookings
+    private <T> DbExecutor.Task<T> runBulk(BusyBar busy, DbExecutor.Work<T> work, java.util.function.Consumer<T> onDone) {
+        return runDb(this, RequestScheduler.Lane.BULK, busy, work, onDone);
+    }
+
+    private <T> DbExecutor.Task<T> runDb(Component parent, RequestScheduler.Lane lane, BusyBar busy,
+                                         DbExecutor.Work<T> work, java.util.function.Consumer<T> onDone) {
+        if (busy != null) busy.begin();
+        DbExecutor.Task<T> task = DbExecutor.submit(lane, work, onDone, ex -> showDbError(parent, ex));
+        tasks.add(task);
+        return task.whenFinished(() -> {
+            tasks.remove(task);
+            if (busy != null) busy.end();
+        });
+    }
+
+    private void showDbError(Component parent, Exception ex) {
+        if (ex instanceof ValidationException) {
+            JOptionPane.showMessageDialog(parent, ex.getMessage());
+            return;
+        }
+        ex.printStackTrace();
+        String prefix = (ex instanceof IOException) ? "Export error: " : "DB Error: ";
+        JOptionPane.showMessageDialog(parent, prefix + ex.getMessage());
+    }
+
+    @Override
+    public void dispose() {
+        DataChangeBus.removeListener(changeListener);
+        for (DbExecutor.Task<?> t : new java.util.ArrayList<>(tasks)) t.cancel();
+        super.dispose();
+    }
+
+    // ---- delta updates from the DataChangeBus ----
+
+    private final DataChangeBus.Listener changeListener = this::onDataChange;
+
+    // reads one row by id (null if it no longer exists)
+    private interface RowFetcher {
+        Object[] fetch(int id) throws Exception;
+    }
+
+    private void onDataChange(DataChangeBus.Change c) {
+        if (c.is("patients")) {
+            applyTableChange(patientsModel, patientsBusy, c, this::fetchPatientRow, this::loadPatients);
+        } else if (c.is("doctors")) {
+            applyTableChange(doctorsModel, doctorsBusy, c, this::fetchDoctorRow, this::loadDoctors);
+        } else if (c.is("appointments")) {
+            if (appointmentsModel != null) appointmentsModel.applyChange(c);
+            loadCalendar(); // a few dozen aggregate rows for the visible range
+        } else if (c.is("waitlist")) {
+            loadWaitlist(); // short list of open entries; just re-read it
+        }
+    }
+
+    // applies a change to a newest-first DefaultTableModel keyed by column 0;
+    // insertRow/removeRow/setValueAt fire the matching fine-grained table events
+    private void applyTableChange(DefaultTableModel m, BusyBar busy, DataChangeBus.Change c, RowFetcher fetcher, Runnable reload) {
+        if (m == null) return;
+        switch (c.kind) {
+            case RELOAD:
+                reload.run();
+                return;
+            case DELETE:
+                for (int id : c.ids) {
+                    int r = findRowById(m, id);
+                    if (r >= 0) m.removeRow(r);
+                }
+                return;
+            default:
+                for (int id : c.ids) {
+                    runDb(busy, () -> fetcher.fetch(id), row -> {
+                        int r = findRowById(m, id);
+                        if (row == null) {
+                            if (r >= 0) m.removeRow(r);
+                        } else if (r >= 0) {
+                            for (int col = 0; col < row.length; col++) m.setValueAt(row[col], r, col);
+                        } else {
+                            int pos = 0;
+                            while (pos < m.getRowCount() && ((Number) m.getValueAt(pos, 0)).intValue() > id) pos++;
+                            m.insertRow(pos, row);
+                        }
+                    });
+                }
         }
     }
 
+    private static int findRowById(DefaultTableModel m, int id) {
+        for (int r = 0; r < m.getRowCount(); r++) {
+            Object v = m.getValueAt(r, 0);
+            if (v instanceof Number && ((Number) v).intValue() == id) return r;
+        }
+        return -1;
+    }
+
     // Helper to create the styled menu button
     private JButton makeMenuButton(String text) {
         JButton b = new JButton(text);
@@ -236,6 +336,7 @@ public class Dashboard extends JFrame {
     // ---- Panels ----
 
     private JPanel makeCreatePatientUserPanel() {
+        BusyBar busy = new BusyBar();
         JPanel p = new JPanel();
         p.setLayout(new BoxLayout(p, BoxLayout.Y_AXIS));
         p.add(Box.createVerticalStrut(12));
@@ -268,8 +369,7 @@ public class Dashboard extends JFrame {
 
         // Action
         btnCreate.addActionListener(ev -> {
-            String role = Session.currentUserRole == null ? "guest" : Session.currentUserRole;
-            if (!role.equalsIgnoreCase("admin") && !role.equalsIgnoreCase("receptionist")) {
+            if (!session.has(Permission.CREATE_PATIENT_USERS)) {
                 JOptionPane.showMessageDialog(this, "Access denied. Only admin/receptionist can create patient users.");
                 return;
             }
@@ -279,7 +379,7 @@ public class Dashboard extends JFrame {
             String pass = new String(tPassword.getPassword()).trim();
             String conf = new String(tConfirm.getPassword()).trim();
 
-            if (pidStr.isEmpty() || username.isEmpty() || pass.isEmpty() || conf.isEmpty()) {
+            if (pidStr.isEmpty() || conf.isEmpty()) {
                 JOptionPane.showMessageDialog(this, "All fields required.");
                 return;
             }
@@ -294,60 +394,25 @@ public class Dashboard extends JFrame {
                 return;
             }
 
-            // Check patient exists
-            String chk = "SELECT COUNT(*) FROM patients WHERE patient_id = ?";
-            String ins = "INSERT INTO users (username, password, role, patient_ref_id) VALUES (?, ?, 'patient', ?)";
-
-            try (Connection con = DBConnection.getConnection();
-                 PreparedStatement pchk = con.prepareStatement(chk)) {
-
-                pchk.setInt(1, pid);
-                try (ResultSet rs = pchk.executeQuery()) {
-                    rs.next();
-                    if (rs.getInt(1) == 0) {
-                        JOptionPane.showMessageDialog(this, "Patient ID does not exist. Create patient first.");
-                        return;
-                    }
-                }
-
-                // try insert - check username uniqueness first
-                String existsQ = "SELECT COUNT(*) FROM users WHERE username = ?";
-                try (PreparedStatement pex = con.prepareStatement(existsQ)) {
-                    pex.setString(1, username);
-                    try (ResultSet r2 = pex.executeQuery()) {
-                        r2.next();
-                        if (r2.getInt(1) > 0) {
-                            JOptionPane.showMessageDialog(this, "Username already taken. Choose another.");
-                            return;
-                        }
-                    }
-                }
-
-                try (PreparedStatement pins = con.prepareStatement(ins)) {
-                    pins.setString(1, username);
-                    pins.setString(2, pass);
-                    pins.setInt(3, pid);
-                    int aff = pins.executeUpdate();
-                    if (aff > 0) {
-                        JOptionPane.showMessageDialog(this, "Patient user created successfully.");
-                        tPatientId.setText(""); tUsername.setText(""); tPassword.setText(""); tConfirm.setText("");
-                    } else {
-                        JOptionPane.showMessageDialog(this, "Failed to create user.");
-                    }
+            // patient check, username check and INSERT live in PatientService
+            btnCreate.setEnabled(false);
+            runDb(busy, () -> PatientService.createLogin(session, pid, username, pass), created -> {
+                if (created) {
+                    JOptionPane.showMessageDialog(this, "Patient user created successfully.");
+                    tPatientId.setText(""); tUsername.setText(""); tPassword.setText(""); tConfirm.setText("");
+                } else {
+                    JOptionPane.showMessageDialog(this, "Failed to create user.");
                 }
-
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "DB Error: " + ex.getMessage());
-            }
+            }).whenFinished(() -> btnCreate.setEnabled(true));
         });
 
         p.add(form);
-        return makeCardPanel("Create Patient User Account", p);
+        return makeCardPanel("Create Patient User Account", p, busy);
     }
 
 
     private JPanel makeAddPatientPanel() {
+        BusyBar busy = new BusyBar();
         JPanel p = new JPanel();
         p.setLayout(new BoxLayout(p, BoxLayout.Y_AXIS));
         p.add(Box.createVerticalStrut(12));
@@ -383,76 +448,26 @@ public class Dashboard extends JFrame {
         // Save button action -> INSERT into patients
         btnSave.addActionListener(ev -> {
             // Role check: receptionist and admin can add patients
-            String role = Session.currentUserRole == null ? "guest" : Session.currentUserRole;
-            if (!role.equalsIgnoreCase("admin") && !role.equalsIgnoreCase("receptionist")) {
+            if (!session.has(Permission.MANAGE_PATIENTS)) {
                 JOptionPane.showMessageDialog(this, "Access denied. Only admin/receptionist can add patients.");
                 return;
             }
 
-            String name = txtName.getText().trim();
-            String ageStr = txtAge.getText().trim();
+            String name = txtName.getText();
+            String ageStr = txtAge.getText();
             String gender = (String) cmbGender.getSelectedItem();
-            String phone = txtPhone.getText().trim();
-            String address = txtAddress.getText().trim();
-            String userRefStr = txtUserRef.getText().trim();
-
-            if (name.isEmpty() || ageStr.isEmpty()) {
-                JOptionPane.showMessageDialog(this, "Please enter Name and Age.");
-                return;
-            }
-
-            int age = 0;
-            try {
-                age = Integer.parseInt(ageStr);
-            } catch (NumberFormatException ex) {
-                JOptionPane.showMessageDialog(this, "Age must be a number.");
-                return;
-            }
-
-            // Insert into DB
-            String sql = "INSERT INTO patients (name, age, gender, phone, address) VALUES (?, ?, ?, ?, ?)";
-            try (Connection con = DBConnection.getConnection();
-                 PreparedStatement pst = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-
-                pst.setString(1, name);
-                pst.setInt(2, age);
-                pst.setString(3, gender);
-                pst.setString(4, phone);
-                pst.setString(5, address);
-
-                int affected = pst.executeUpdate();
-                if (affected == 0) {
-                    JOptionPane.showMessageDialog(this, "Failed to save patient.");
-                    return;
-                }
-
-                // get generated patient_id
-                try (ResultSet keys = pst.getGeneratedKeys()) {
-                    if (keys.next()) {
-                        int newPatientId = keys.getInt(1);
-                        // optionally link user -> (if userRefStr provided)
-                        if (!userRefStr.isEmpty()) {
-                            try {
-                                int userId = Integer.parseInt(userRefStr);
-                                String upd = "UPDATE users SET patient_ref_id = ? WHERE user_id = ?";
-                                try (PreparedStatement pst2 = con.prepareStatement(upd)) {
-                                    pst2.setInt(1, newPatientId);
-                                    pst2.setInt(2, userId);
-                                    pst2.executeUpdate();
-                                }
-                            } catch (NumberFormatException ex) {
-                                // ignore invalid user id input
-                            }
-                        }
-                        // If current user is a patient and logged in, and they created themself, set session
-                        if ("patient".equalsIgnoreCase(Session.currentUserRole)) {
-                            Session.currentPatientId = newPatientId;
-                        }
-
-                        JOptionPane.showMessageDialog(this, "Patient saved with ID: " + newPatientId);
-                    } else {
-                        JOptionPane.showMessageDialog(this, "Patient saved, but couldn't read ID.");
-                    }
+            String phone = txtPhone.getText();
+            String address = txtAddress.getText();
+            String userRefStr = txtUserRef.getText();
+
+            // validation and INSERT live in PatientService (shared with the HTTP API);
+            // -1 = saved but the driver returned no key
+            btnSave.setEnabled(false);
+            runDb(busy, () -> PatientService.add(session, name, ageStr, gender, phone, address, userRefStr), newPatientId -> {
+                if (newPatientId > 0) {
+                    JOptionPane.showMessageDialog(this, "Patient saved with ID: " + newPatientId);
+                } else {
+                    JOptionPane.showMessageDialog(this, "Patient saved, but couldn't read ID.");
                 }
 
                 // clear fields
@@ -462,23 +477,40 @@ public class Dashboard extends JFrame {
                 txtAddress.setText("");
                 txtUserRef.setText("");
 
-                // refresh table if visible
-                SwingUtilities.invokeLater(() -> {
-                    loadPatients();
-                    cardLayout.show(mainPanel, "VIEW_PATIENTS");
-                });
-
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "DB Error: " + ex.getMessage());
-            }
+                // the new row reaches the table through the DataChangeBus
+                showCard("VIEW_PATIENTS");
+            }).whenFinished(() -> btnSave.setEnabled(true));
         });
 
         p.add(form);
-        return makeCardPanel("Add Patient", p);
+        return makeCardPanel("Add Patient", p, busy);
     }
 
     private JPanel makeCardPanel(String titleText, JComponent content) {
+        return makeCardPanel(titleText, content, null);
+    }
+
+    // search field that calls onSearch once typing pauses (on the EDT)
+    private JPanel makeSearchBox(String hint, java.util.function.Consumer<String> onSearch) {
+        JTextField field = new JTextField(24);
+        field.setToolTipText(hint);
+        Timer debounce = new Timer(250, e -> onSearch.accept(field.getText()));
+        debounce.setRepeats(false);
+        field.getDocument().addDocumentListener(new javax.swing.event.DocumentListener() {
+            @Override public void insertUpdate(javax.swing.event.DocumentEvent e) { debounce.restart(); }
+            @Override public void removeUpdate(javax.swing.event.DocumentEvent e) { debounce.restart(); }
+            @Override public void changedUpdate(javax.swing.event.DocumentEvent e) { debounce.restart(); }
+        });
+        field.addActionListener(e -> { debounce.stop(); onSearch.accept(field.getText()); }); // Enter: search now
+
+        JPanel box = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 4));
+        box.setOpaque(false);
+        box.add(new JLabel("Search:"));
+        box.add(field);
+        return box;
+    }
+
+    private JPanel makeCardPanel(String titleText, JComponent content, BusyBar busy) {
         JPanel root = new JPanel(new GridBagLayout());
         root.setBackground(new Color(240, 240, 240)); // page background
 
@@ -493,7 +525,16 @@ public class Dashboard extends JFrame {
         title.setFont(new Font("SansSerif", Font.BOLD, 18));
         title.setBorder(BorderFactory.createEmptyBorder(16,16,8,16));
 
-        card.add(title, BorderLayout.NORTH);
+        if (busy != null) {
+            // busy bar sits under the title while background DB work runs
+            JPanel header = new JPanel(new BorderLayout());
+            header.setOpaque(false);
+            header.add(title, BorderLayout.CENTER);
+            header.add(busy, BorderLayout.SOUTH);
+            card.add(header, BorderLayout.NORTH);
+        } else {
+            card.add(title, BorderLayout.NORTH);
+        }
 
         // content wrapper with padding
         JPanel wrapper = new JPanel(new BorderLayout());
@@ -509,6 +550,7 @@ public class Dashboard extends JFrame {
 
     
     private JPanel makeViewPatientsPanel() {
+        patientsBusy = new BusyBar();
         JPanel p = new JPanel(new BorderLayout());
 
         // Table and model (columns)
@@ -522,16 +564,27 @@ public class Dashboard extends JFrame {
         patientsTable = new JTable(patientsModel);
         JScrollPane sp = new JScrollPane(patientsTable);
 
+        // full-text search on name / phone / address
+        p.add(makeSearchBox("Search name, phone or address", text -> {
+            patientsQuery = FullTextSearch.toMatchExpression(text);
+            loadPatients();
+        }), BorderLayout.NORTH);
+
         // Control panel with refresh and delete
         JPanel controls = new JPanel();
         JButton btnRefresh = new JButton("Refresh");
         JButton btnDelete = new JButton("Delete Selected");
         JButton btnExport = new JButton("Export CSV");
+        JButton btnImport = new JButton("Import CSV");
         JButton btnPrint = new JButton("Print");
         controls.add(btnExport);
+        controls.add(btnImport);
         controls.add(btnPrint);
         controls.add(btnRefresh);
         controls.add(btnDelete);
+        btnExport.setVisible(session.has(Permission.EXPORT));
+        btnImport.setVisible(session.has(Permission.IMPORT));
+        btnDelete.setVisible(session.has(Permission.MANAGE_PATIENTS));
 
         p.add(sp, BorderLayout.CENTER);
         p.add(controls, BorderLayout.SOUTH);
@@ -539,6 +592,7 @@ public class Dashboard extends JFrame {
         // Refresh action -> load from DB
         btnRefresh.addActionListener(e -> loadPatients());
         btnExport.addActionListener(e -> exportPatientsCSV());
+        btnImport.addActionListener(e -> importCsv(CsvImporter.Target.PATIENTS, patientsBusy));
         btnPrint.addActionListener(e -> printPatients());
         // Delete selected row action
         btnDelete.addActionListener(e -> {
@@ -549,8 +603,7 @@ public class Dashboard extends JFrame {
             }
 
             // role check - only admin/receptionist can delete
-            String role = Session.currentUserRole == null ? "guest" : Session.currentUserRole;
-            if (!role.equalsIgnoreCase("admin") && !role.equalsIgnoreCase("receptionist")) {
+            if (!session.has(Permission.MANAGE_PATIENTS)) {
                 JOptionPane.showMessageDialog(this, "Access denied. Only admin/receptionist can delete patients.");
                 return;
             }
@@ -559,30 +612,23 @@ public class Dashboard extends JFrame {
             int conf = JOptionPane.showConfirmDialog(this, "Delete patient ID " + id + " ? This will also remove related appointments.", "Confirm delete", JOptionPane.YES_NO_OPTION);
             if (conf != JOptionPane.YES_OPTION) return;
 
-            String del = "DELETE FROM patients WHERE patient_id = ?";
-            try (Connection con = DBConnection.getConnection();
-                 PreparedStatement pst = con.prepareStatement(del)) {
-                pst.setInt(1, id);
-                int affected = pst.executeUpdate();
+            runDb(patientsBusy, () -> PatientService.delete(session, id), affected -> {
                 if (affected > 0) {
                     JOptionPane.showMessageDialog(this, "Patient deleted.");
-                    loadPatients();
                 } else {
                     JOptionPane.showMessageDialog(this, "Delete failed.");
                 }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "DB Error: " + ex.getMessage());
-            }
+            });
         });
 
         // Initial load
         loadPatients();
 
-        return makeCardPanel("View Patients", p);
+        return makeCardPanel("View Patients", p, patientsBusy);
     }
 
     private JPanel makeAddDoctorPanel() {
+        BusyBar busy = new BusyBar();
         JPanel p = new JPanel();
         p.setLayout(new BoxLayout(p, BoxLayout.Y_AXIS));
 
@@ -608,52 +654,34 @@ public class Dashboard extends JFrame {
 
         // --- Save Doctor (ADMIN ONLY) ---
         btnSave.addActionListener(e -> {
-            if (!Session.currentUserRole.equalsIgnoreCase("admin")) {
+            if (!session.has(Permission.MANAGE_DOCTORS)) {
                 JOptionPane.showMessageDialog(this, "Only ADMIN can add doctors.");
                 return;
             }
 
-            String name = txtName.getText().trim();
-            String spec = txtSpec.getText().trim();
-            String phone = txtPhone.getText().trim();
-
-            if (name.isEmpty() || spec.isEmpty()) {
-                JOptionPane.showMessageDialog(this, "Enter name & specialization.");
-                return;
-            }
-
-            String sql = "INSERT INTO doctors (name, specialization, phone) VALUES (?, ?, ?)";
-
-            try (Connection con = DBConnection.getConnection();
-                 PreparedStatement pst = con.prepareStatement(sql)) {
-
-                pst.setString(1, name);
-                pst.setString(2, spec);
-                pst.setString(3, phone);
+            String name = txtName.getText();
+            String spec = txtSpec.getText();
+            String phone = txtPhone.getText();
 
-                pst.executeUpdate();
+            // validation and INSERT live in DoctorService
+            btnSave.setEnabled(false);
+            runDb(busy, () -> DoctorService.add(session, name, spec, phone), newDoctorId -> {
                 JOptionPane.showMessageDialog(this, "Doctor Added!");
 
                 txtName.setText("");
                 txtSpec.setText("");
                 txtPhone.setText("");
 
-                SwingUtilities.invokeLater(() -> {
-                    loadDoctors();
-                    cardLayout.show(mainPanel, "VIEW_DOCTORS");
-                });
-
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, ex.getMessage());
-            }
+                showCard("VIEW_DOCTORS");
+            }).whenFinished(() -> btnSave.setEnabled(true));
         });
 
         p.add(form);
-        return makeCardPanel("Add Doctor", p);
+        return makeCardPanel("Add Doctor", p, busy);
     }
 
     private JPanel makeViewDoctorsPanel() {
+        doctorsBusy = new BusyBar();
         JPanel p = new JPanel(new BorderLayout());
 
         String[] cols = {"doctor_id","name","specialization","phone"};
@@ -669,11 +697,16 @@ public class Dashboard extends JFrame {
         JButton btnRefresh = new JButton("Refresh");
         JButton btnDelete = new JButton("Delete Selected");
         JButton btnExport = new JButton("Export CSV");
+        JButton btnImport = new JButton("Import CSV");
         JButton btnPrint = new JButton("Print");
         controls.add(btnExport);
+        controls.add(btnImport);
         controls.add(btnPrint);
         controls.add(btnRefresh);
         controls.add(btnDelete);
+        btnImport.setVisible(session.has(Permission.IMPORT_DOCTORS));
+        btnExport.setVisible(session.has(Permission.EXPORT));
+        btnDelete.setVisible(session.has(Permission.MANAGE_DOCTORS));
 
         p.add(sp, BorderLayout.CENTER);
         p.add(controls, BorderLayout.SOUTH);
@@ -682,11 +715,12 @@ public class Dashboard extends JFrame {
         btnRefresh.addActionListener(e -> loadDoctors());
         
         btnExport.addActionListener(e -> exportDoctorsCSV());
+        btnImport.addActionListener(e -> importCsv(CsvImporter.Target.DOCTORS, doctorsBusy));
         btnPrint.addActionListener(e -> printDoctors());
         
         // Delete (ADMIN ONLY)
         btnDelete.addActionListener(e -> {
-            if (!Session.currentUserRole.equalsIgnoreCase("admin")) {
+            if (!session.has(Permission.MANAGE_DOCTORS)) {
                 JOptionPane.showMessageDialog(this, "Only ADMIN can delete doctors.");
                 return;
             }
@@ -704,28 +738,19 @@ public class Dashboard extends JFrame {
 
             if (confirm != JOptionPane.YES_OPTION) return;
 
-            String del = "DELETE FROM doctors WHERE doctor_id = ?";
-            try (Connection con = DBConnection.getConnection();
-                 PreparedStatement pst = con.prepareStatement(del)) {
-
-                pst.setInt(1, id);
-                pst.executeUpdate();
+            runDb(doctorsBusy, () -> DoctorService.delete(session, id), affected -> {
                 JOptionPane.showMessageDialog(this, "Doctor Deleted.");
-                loadDoctors();
-
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, ex.getMessage());
-            }
+            });
         });
 
         // initial load
         loadDoctors();
-        return makeCardPanel("View Doctors", p);
+        return makeCardPanel("View Doctors", p, doctorsBusy);
     }
     
 
     private JPanel makeBookAppointmentPanel() {
+        BusyBar busy = new BusyBar();
         JPanel p = new JPanel(new BorderLayout());
 
         JPanel form = new JPanel(new GridBagLayout());
@@ -733,11 +758,12 @@ public class Dashboard extends JFrame {
         g.insets = new Insets(6,6,6,6);
         g.anchor = GridBagConstraints.WEST;
 
-        g.gridx=0; g.gridy=0; form.add(new JLabel("Patient ID:"), g);
-        g.gridx=1; g.gridy=0; JTextField tPid = new JTextField(10); form.add(tPid, g);
+        // type-ahead pickers over the in-memory LookupCache (name, phone or id)
+        g.gridx=0; g.gridy=0; form.add(new JLabel("Patient:"), g);
+        g.gridx=1; g.gridy=0; LookupPicker tPid = new LookupPicker(LookupCache.patients()); form.add(tPid, g);
 
-        g.gridx=0; g.gridy=1; form.add(new JLabel("Doctor ID:"), g);
-        g.gridx=1; g.gridy=1; JTextField tDid = new JTextField(10); form.add(tDid, g);
+        g.gridx=0; g.gridy=1; form.add(new JLabel("Doctor:"), g);
+        g.gridx=1; g.gridy=1; LookupPicker tDid = new LookupPicker(LookupCache.doctors()); form.add(tDid, g);
 
         g.gridx=0; g.gridy=2; form.add(new JLabel("Date (YYYY-MM-DD):"), g);
         g.gridx=1; g.gridy=2; JTextField tDate = new JTextField(10); form.add(tDate, g);
@@ -749,243 +775,435 @@ public class Dashboard extends JFrame {
         g.gridx=1; g.gridy=4; JTextField tSymptoms = new JTextField(30); form.add(tSymptoms, g);
 
         g.gridx=1; g.gridy=5; g.anchor = GridBagConstraints.EAST;
+        JButton btnFindSlot = new JButton("Find Next Available...");
         JButton btnBook = new JButton("Book Appointment");
-        form.add(btnBook, g);
+        JPanel bookButtons = new JPanel(new FlowLayout(FlowLayout.RIGHT, 6, 0));
+        bookButtons.setOpaque(false);
+        JButton btnRepeat = new JButton("Book Recurring...");
+        JButton btnJoinWait = new JButton("Join Waitlist...");
+        bookButtons.add(btnFindSlot);
+        bookButtons.add(btnRepeat);
+        bookButtons.add(btnJoinWait);
+        bookButtons.add(btnBook);
+        form.add(bookButtons, g);
+
+        btnFindSlot.addActionListener(e -> openNextAvailableDialog(tDid, tDate, tTime, busy));
+        btnRepeat.addActionListener(e -> openRecurringDialog(tPid, tDid, tDate, tTime, tSymptoms, busy));
+        btnJoinWait.addActionListener(e -> openJoinWaitlistDialog(tPid, tDid, tDate, tSymptoms, busy));
 
         // Pre-fill / lock patient id if logged-in user is a patient
-        if ("patient".equalsIgnoreCase(Session.currentUserRole) && Session.currentPatientId > 0) {
-            tPid.setText(String.valueOf(Session.currentPatientId));
-            tPid.setEditable(false);
+        if (!session.has(Permission.BOOK_ANY_PATIENT) && session.patientId > 0) {
+            tPid.setFixed(session.patientId, "Patient #" + session.patientId);
         }
 
         btnBook.addActionListener(e -> {
             // Role check
-            String role = Session.currentUserRole == null ? "guest" : Session.currentUserRole;
-            if (!role.equalsIgnoreCase("admin") && !role.equalsIgnoreCase("receptionist") && !role.equalsIgnoreCase("patient")) {
+            if (!session.has(Permission.BOOK_ANY_PATIENT) && !session.has(Permission.BOOK_OWN)) {
                 JOptionPane.showMessageDialog(this, "Access denied. Please login with a valid user.");
                 return;
             }
 
-            String pidStr = tPid.getText().trim();
-            String didStr = tDid.getText().trim();
+            int pid = session.has(Permission.BOOK_ANY_PATIENT) ? tPid.getSelectedId() : session.patientId;
+            int did = tDid.getSelectedId();
             String dateStr = tDate.getText().trim();
             String timeStr = tTime.getText().trim();
             String symptoms = tSymptoms.getText().trim();
 
-            if (pidStr.isEmpty() || didStr.isEmpty() || dateStr.isEmpty()) {
-                JOptionPane.showMessageDialog(this, "Enter Patient ID, Doctor ID and Date.");
+            if (dateStr.isEmpty()) {
+                JOptionPane.showMessageDialog(this, "Enter Patient, Doctor and Date.");
                 return;
             }
-
-            int pid, did;
-            try {
-                pid = Integer.parseInt(pidStr);
-                did = Integer.parseInt(didStr);
-            } catch (NumberFormatException ex) {
-                JOptionPane.showMessageDialog(this, "Patient ID and Doctor ID must be numbers.");
+            if (pid <= 0) {
+                JOptionPane.showMessageDialog(this, "Choose a patient from the list.");
+                return;
+            }
+            if (did <= 0) {
+                JOptionPane.showMessageDialog(this, "Choose a doctor from the list.");
                 return;
             }
 
             // If current user is patient, ensure they book only for themselves
-            if ("patient".equalsIgnoreCase(role) && Session.currentPatientId > 0 && pid != Session.currentPatientId) {
+            if (!session.mayActFor(pid)) {
                 JOptionPane.showMessageDialog(this, "Patients can only book for their own ID.");
                 return;
             }
 
-            // ---- SAFE DATE PARSER ----
-            java.sql.Date sqlDate;
-            try {
-                String s = (dateStr == null ? "" : dateStr.trim());
-                if (s.isEmpty()) {
-                    JOptionPane.showMessageDialog(this, "Date required.");
-                    return;
+            // ---- DATE / TIME -> canonical appt_day / appt_minute ----
+            java.time.LocalDate ld = DateTimeUtils.parseDate(dateStr);
+            if (ld == null) {
+                JOptionPane.showMessageDialog(this,
+                    "Unrecognized date. Use YYYY-MM-DD or DD-MM-YYYY or MM/DD/YYYY.");
+                return;
+            }
+            // every booking takes a slot, so the time is required
+            java.time.LocalTime lt = DateTimeUtils.parseTime(timeStr);
+            if (lt == null) {
+                JOptionPane.showMessageDialog(this, "Enter a time, e.g. 10:30 AM or 15:30.");
+                return;
+            }
+            final int minute = DateTimeUtils.toMinuteOfDay(lt);
+
+            // the pickers only offer known ids; a patient/doctor deleted since then
+            // is caught by the foreign keys instead of two extra COUNT queries
+            final int fPid = pid, fDid = did;
+            btnBook.setEnabled(false);
+            // result: new appointment id, or -1 when the driver returned no key
+            runDb(busy, () -> AppointmentService.book(session, fPid, fDid, ld, minute, symptoms), apptId -> {
+                if (apptId > 0) {
+                    JOptionPane.showMessageDialog(this, "Appointment booked (ID: " + apptId + ")");
+                } else {
+                    JOptionPane.showMessageDialog(this, "Appointment booked.");
                 }
+                // clear fields (if patient, keep pid locked)
+                if (session.has(Permission.BOOK_ANY_PATIENT)) tPid.clear();
+                tDid.clear();
+                tDate.setText("");
+                tTime.setText("");
+                tSymptoms.setText("");
+
+                // the new row reaches View Appointments through the DataChangeBus
+                showCard("VIEW_APPOINTMENTS");
+            }).whenFinished(() -> btnBook.setEnabled(true));
+        });
 
-                java.time.LocalDate ld = null;
+        p.add(form, BorderLayout.CENTER);
+        return makeCardPanel("Book Appointment", p, busy);
+    }
 
-                java.time.format.DateTimeFormatter[] fmts = {
-                    java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd"),
-                    java.time.format.DateTimeFormatter.ofPattern("dd-MM-yyyy"),
-                    java.time.format.DateTimeFormatter.ofPattern("MM/dd/yyyy")
-                };
 
-                for (var f : fmts) {
-                    try { ld = java.time.LocalDate.parse(s, f); break; }
-                    catch (Exception ignore) {}
-                }
+    // ---- WAITLIST ----
 
-                if (ld == null) {
-                    try { ld = java.time.LocalDate.parse(s); } catch (Exception ignore) {}
-                }
+    private DefaultTableModel waitlistModel;
+    private BusyBar waitlistBusy;
+    private DbExecutor.Task<?> waitlistLoad;
 
-                if (ld == null) {
-                    JOptionPane.showMessageDialog(this,
-                        "Unrecognized date. Use YYYY-MM-DD or DD-MM-YYYY or MM/DD/YYYY.");
-                    return;
-                }
+    private JPanel makeWaitlistPanel() {
+        waitlistBusy = new BusyBar();
+        JPanel p = new JPanel(new BorderLayout());
 
-                sqlDate = java.sql.Date.valueOf(ld);
+        String[] cols = {"waitlist_id","patient","doctor","date","window","priority","symptoms"};
+        waitlistModel = new DefaultTableModel(cols, 0) {
+            @Override public boolean isCellEditable(int r, int c) { return false; }
+        };
+        JTable table = new JTable(waitlistModel);
 
-            } catch (Exception ex) {
-                JOptionPane.showMessageDialog(this, "Invalid date: " + ex.getMessage());
-                return;
-            }
+        JPanel controls = new JPanel();
+        JButton btnRefresh = new JButton("Refresh");
+        JButton btnRemove = new JButton("Remove Selected");
+        controls.add(btnRefresh);
+        controls.add(btnRemove);
 
-            // Check patient exists and doctor exists
-            String chkP = "SELECT COUNT(*) FROM patients WHERE patient_id = ?";
-            String chkD = "SELECT COUNT(*) FROM doctors WHERE doctor_id = ?";
-            try (Connection con = DBConnection.getConnection();
-                 PreparedStatement pChkP = con.prepareStatement(chkP);
-                 PreparedStatement pChkD = con.prepareStatement(chkD)) {
-
-                pChkP.setInt(1, pid);
-                try (ResultSet rs = pChkP.executeQuery()) {
-                    rs.next();
-                    if (rs.getInt(1) == 0) {
-                        JOptionPane.showMessageDialog(this, "Patient ID does not exist.");
-                        return;
-                    }
-                }
+        JLabel hint = new JLabel("Freed slots are booked automatically for the highest-priority matching entry.");
+        hint.setBorder(BorderFactory.createEmptyBorder(0, 4, 6, 4));
+        p.add(hint, BorderLayout.NORTH);
+        p.add(new JScrollPane(table), BorderLayout.CENTER);
+        p.add(controls, BorderLayout.SOUTH);
 
-                pChkD.setInt(1, did);
-                try (ResultSet rs2 = pChkD.executeQuery()) {
-                    rs2.next();
-                    if (rs2.getInt(1) == 0) {
-                        JOptionPane.showMessageDialog(this, "Doctor ID does not exist.");
-                        return;
-                    }
-                }
+        btnRefresh.addActionListener(e -> loadWaitlist());
+        btnRemove.addActionListener(e -> {
+            int sel = table.getSelectedRow();
+            if (sel == -1) { JOptionPane.showMessageDialog(this, "Select a row to remove."); return; }
+            int id = (Integer) waitlistModel.getValueAt(sel, 0);
+            runDb(waitlistBusy, () -> { Waitlist.remove(session, id); return null; }, none -> {});
+        });
 
-                // Insert appointment
-                String ins = "INSERT INTO appointments (patient_id, doctor_id, date, time, symptoms) VALUES (?, ?, ?, ?, ?)";
-                try (PreparedStatement pst = con.prepareStatement(ins, Statement.RETURN_GENERATED_KEYS)) {
-                    pst.setInt(1, pid);
-                    pst.setInt(2, did);
-                    pst.setDate(3, sqlDate);
-                    pst.setString(4, timeStr);
-                    pst.setString(5, symptoms);
+        loadWaitlist();
+        return makeCardPanel("Waitlist", p, waitlistBusy);
+    }
 
-                    int aff = pst.executeUpdate();
-                    if (aff > 0) {
-                        try (ResultSet keys = pst.getGeneratedKeys()) {
-                            if (keys.next()) {
-                                int apptId = keys.getInt(1);
-                                JOptionPane.showMessageDialog(this, "Appointment booked (ID: " + apptId + ")");
-                            } else {
-                                JOptionPane.showMessageDialog(this, "Appointment booked.");
-                            }
-                        }
-                        // clear fields (if patient, keep pid locked)
-                        if (!"patient".equalsIgnoreCase(role)) tPid.setText("");
-                        tDid.setText("");
-                        tDate.setText("");
-                        tTime.setText("");
-                        tSymptoms.setText("");
-
-                        // refresh appointments table and switch view
-                        SwingUtilities.invokeLater(() -> {
-                            btnRefresh.doClick();   // auto-refresh via the View Appointments panel
-                            cardLayout.show(mainPanel, "VIEW_APPOINTMENTS");
-                        });
-                    } else {
-                        JOptionPane.showMessageDialog(this, "Failed to book appointment.");
-                    }
+    private void loadWaitlist() {
+        if (waitlistModel == null) return;
+        if (waitlistLoad != null) waitlistLoad.cancel();
+        String sql = "SELECT w.waitlist_id, p.name AS patient_name, d.name AS doctor_name, w.appt_day, "
+                   + "w.earliest_minute, w.latest_minute, w.priority, w.symptoms "
+                   + "FROM waitlist w "
+                   + "LEFT JOIN patients p ON w.patient_id = p.patient_id "
+                   + "LEFT JOIN doctors d ON w.doctor_id = d.doctor_id "
+                   + "WHERE w.status = 'WAITING' ORDER BY w.appt_day, w.doctor_id, w.priority DESC, w.waitlist_id";
+        waitlistLoad = runDb(waitlistBusy, () -> {
+            java.util.List<Object[]> rows = new java.util.ArrayList<>();
+            try (Connection con = DBConnection.getConnection();
+                 PreparedStatement pst = con.prepareStatement(sql);
+                 ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    int from = rs.getInt("earliest_minute");
+                    boolean anyFrom = rs.wasNull();
+                    int to = rs.getInt("latest_minute");
+                    boolean anyTo = rs.wasNull();
+                    String window = (anyFrom && anyTo) ? "any time"
+                        : (anyFrom ? "" : DateTimeUtils.formatMinute(from)) + " - " + (anyTo ? "" : DateTimeUtils.formatMinute(to));
+                    rows.add(new Object[] {
+                        rs.getInt("waitlist_id"),
+                        rs.getString("patient_name"),
+                        rs.getString("doctor_name"),
+                        DateTimeUtils.formatDay(rs.getLong("appt_day")),
+                        window,
+                        rs.getInt("priority"),
+                        rs.getString("symptoms")
+                    });
                 }
-
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "DB Error: " + ex.getMessage());
             }
+            return rows;
+        }, rows -> {
+            waitlistModel.setRowCount(0);
+            for (Object[] row : rows) waitlistModel.addRow(row);
         });
-
-        p.add(form, BorderLayout.CENTER);
-        return makeCardPanel("Book Appointment", p);
     }
 
+    // puts the form's patient on the doctor's waitlist for the form's date
+    private void openJoinWaitlistDialog(LookupPicker tPid, LookupPicker tDid, JTextField tDate,
+                                        JTextField tSymptoms, BusyBar busy) {
+        int pid = session.has(Permission.BOOK_ANY_PATIENT) ? tPid.getSelectedId() : session.patientId;
+        int did = tDid.getSelectedId();
+        java.time.LocalDate day = DateTimeUtils.parseDate(tDate.getText().trim());
+        if (pid <= 0 || did <= 0 || day == null) {
+            JOptionPane.showMessageDialog(this, "Fill in patient, doctor and date on the form first.");
+            return;
+        }
 
-    private String formatDateFromResultSet(ResultSet rs, String col) throws SQLException {
-        Object obj = rs.getObject(col);
-        if (obj == null) return "";
-        try {
-            // java.sql.Date or Timestamp
-            if (obj instanceof java.sql.Date) return obj.toString();
-            if (obj instanceof java.sql.Timestamp) {
-                java.time.LocalDate ld = ((java.sql.Timestamp) obj).toLocalDateTime().toLocalDate();
-                return ld.toString();
-            }
+        JTextField tFrom = new JTextField(8);
+        JTextField tTo = new JTextField(8);
+        JSpinner sPriority = new JSpinner(new SpinnerNumberModel(0, 0, 9, 1));
+        sPriority.setEnabled(session.has(Permission.MANAGE_WAITLIST)); // staff decide urgency
+
+        JPanel fp = new JPanel(new GridLayout(0, 2, 6, 6));
+        fp.add(new JLabel("Date:"));
+        fp.add(new JLabel(day.toString()));
+        fp.add(new JLabel("Not before (optional):"));
+        fp.add(tFrom);
+        fp.add(new JLabel("Not after (optional):"));
+        fp.add(tTo);
+        fp.add(new JLabel("Priority (9 = most urgent):"));
+        fp.add(sPriority);
+
+        int ok = JOptionPane.showConfirmDialog(this, fp, "Join Waitlist", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (ok != JOptionPane.OK_OPTION) return;
+
+        String fromStr = tFrom.getText().trim(), toStr = tTo.getText().trim();
+        java.time.LocalTime from = DateTimeUtils.parseTime(fromStr), to = DateTimeUtils.parseTime(toStr);
+        if ((!fromStr.isEmpty() && from == null) || (!toStr.isEmpty() && to == null)) {
+            JOptionPane.showMessageDialog(this, "Unrecognized time. Use e.g. 10:30 AM or 15:30.");
+            return;
+        }
+        int priority = (Integer) sPriority.getValue();
+        String symptoms = tSymptoms.getText().trim();
+        runDb(busy, () -> Waitlist.add(session, pid, did, day, DateTimeUtils.toMinuteOfDay(from), DateTimeUtils.toMinuteOfDay(to),
+                priority, symptoms),
+            id -> JOptionPane.showMessageDialog(this, "Added to the waitlist (#" + id + "). "
+                + "The first matching cancellation will be booked automatically."));
+    }
 
-            // Numeric epoch stored as integer/long (seconds or milliseconds)
-            if (obj instanceof Number) {
-                long v = ((Number) obj).longValue();
-                // heuristics: if < 1e12 treat as seconds, otherwise ms
-                if (v < 1000000000000L) v = v * 1000L;
-                java.time.Instant ins = java.time.Instant.ofEpochMilli(v);
-                java.time.LocalDate ld = java.time.LocalDateTime.ofInstant(ins, java.time.ZoneId.systemDefault()).toLocalDate();
-                return ld.toString();
+    // ---- DOCTOR CALENDAR ----
+    // Day cells come from appointment_day_stats (one row per doctor/day, kept by
+    // triggers), so a month is at most 42 primary-key rows whatever the doctor's
+    // volume. A day's appointments are only read when its cell is opened.
+
+    private JPanel calGrid;
+    private JLabel calTitle;
+    private BusyBar calBusy;
+    private DbExecutor.Task<?> calLoad;
+    private int calDoctorId = -1;
+    private java.time.LocalDate calAnchor = java.time.LocalDate.now();
+    private boolean calWeekView;
+
+    private JPanel makeCalendarPanel() {
+        calBusy = new BusyBar();
+        JPanel p = new JPanel(new BorderLayout(0, 6));
+
+        LookupPicker tDoctor = new LookupPicker(LookupCache.doctors());
+        JComboBox<String> cView = new JComboBox<>(new String[] {"Month", "Week"});
+        JButton btnPrev = new JButton("<");
+        JButton btnToday = new JButton("Today");
+        JButton btnNext = new JButton(">");
+        calTitle = new JLabel(" ", SwingConstants.CENTER);
+        calTitle.setFont(new Font("SansSerif", Font.BOLD, 14));
+
+        JPanel controls = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 2));
+        controls.add(new JLabel("Doctor:"));
+        controls.add(tDoctor);
+        controls.add(cView);
+        controls.add(btnPrev);
+        controls.add(btnToday);
+        controls.add(btnNext);
+        JPanel top = new JPanel(new BorderLayout());
+        top.add(controls, BorderLayout.NORTH);
+        top.add(calTitle, BorderLayout.SOUTH);
+
+        calGrid = new JPanel(new GridLayout(0, 7, 2, 2));
+        p.add(top, BorderLayout.NORTH);
+        p.add(calGrid, BorderLayout.CENTER);
+
+        tDoctor.addActionListener(e -> {
+            int id = tDoctor.getSelectedId();
+            if (id > 0 && id != calDoctorId) {
+                calDoctorId = id;
+                loadCalendar();
             }
+        });
+        cView.addActionListener(e -> {
+            calWeekView = cView.getSelectedIndex() == 1;
+            loadCalendar();
+        });
+        btnPrev.addActionListener(e -> {
+            calAnchor = calWeekView ? calAnchor.minusWeeks(1) : calAnchor.minusMonths(1);
+            loadCalendar();
+        });
+        btnNext.addActionListener(e -> {
+            calAnchor = calWeekView ? calAnchor.plusWeeks(1) : calAnchor.plusMonths(1);
+            loadCalendar();
+        });
+        btnToday.addActionListener(e -> {
+            calAnchor = java.time.LocalDate.now();
+            loadCalendar();
+        });
 
-            // string: try numeric parse first (epoch), then known formats
-            String s = obj.toString().trim();
-            if (s.isEmpty()) return "";
-            try {
-                long lv = Long.parseLong(s);
-                long v = lv;
-                if (v < 1000000000000L) v = v * 1000L;
-                java.time.Instant ins = java.time.Instant.ofEpochMilli(v);
-                java.time.LocalDate ld = java.time.LocalDateTime.ofInstant(ins, java.time.ZoneId.systemDefault()).toLocalDate();
-                return ld.toString();
-            } catch (Exception ignore) {}
-
-            // Try several date formats
-            java.time.format.DateTimeFormatter[] fmts = new java.time.format.DateTimeFormatter[] {
-                java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd"),
-                java.time.format.DateTimeFormatter.ofPattern("dd-MM-yyyy"),
-                java.time.format.DateTimeFormatter.ofPattern("MM/dd/yyyy"),
-                java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"),
-                java.time.format.DateTimeFormatter.ISO_DATE_TIME,
-                java.time.format.DateTimeFormatter.ISO_LOCAL_DATE
-            };
+        loadCalendar();
+        return makeCardPanel("Doctor Calendar", p, calBusy);
+    }
 
-            for (var f : fmts) {
-                try {
-                    java.time.LocalDate ld = java.time.LocalDate.parse(s, f);
-                    return ld.toString();
-                } catch (Exception ignore) {}
-                // If pattern had time, try LocalDateTime then extract date
-                try {
-                    java.time.LocalDateTime ldt = java.time.LocalDateTime.parse(s, f);
-                    return ldt.toLocalDate().toString();
-                } catch (Exception ignore) {}
-            }
+    private void loadCalendar() {
+        if (calGrid == null) return;
+        if (calLoad != null) calLoad.cancel();
+
+        java.time.LocalDate first, last;
+        if (calWeekView) {
+            first = calAnchor.with(java.time.DayOfWeek.MONDAY);
+            last = first.plusDays(6);
+            calTitle.setText("Week of " + first);
+        } else {
+            java.time.LocalDate monthStart = calAnchor.withDayOfMonth(1);
+            first = monthStart.with(java.time.DayOfWeek.MONDAY);
+            last = first.plusDays(41); // six weeks always covers the month
+            calTitle.setText(monthStart.getMonth().getDisplayName(java.time.format.TextStyle.FULL, java.util.Locale.ENGLISH)
+                    + " " + monthStart.getYear());
+        }
+        int doctorId = calDoctorId;
+        if (doctorId <= 0) {
+            renderCalendar(first, last, java.util.Collections.emptyMap());
+            return;
+        }
 
-            return s;
+        String sql = "SELECT appt_day, appt_count, first_minute, last_minute FROM appointment_day_stats "
+                   + "WHERE doctor_id = ? AND appt_day BETWEEN ? AND ?";
+        calLoad = runDb(calBusy, () -> {
+            java.util.Map<Long, Integer[]> stats = new java.util.HashMap<>();
+            try (Connection con = DBConnection.getConnection();
+                 PreparedStatement pst = con.prepareStatement(sql)) {
+                pst.setInt(1, doctorId);
+                pst.setLong(2, first.toEpochDay());
+                pst.setLong(3, last.toEpochDay());
+                try (ResultSet rs = pst.executeQuery()) {
+                    while (rs.next()) {
+                        int count = rs.getInt(2);
+                        int from = rs.getInt(3);
+                        boolean noFrom = rs.wasNull();
+                        int to = rs.getInt(4);
+                        boolean noTo = rs.wasNull();
+                        stats.put(rs.getLong(1), new Integer[] { count, noFrom ? null : from, noTo ? null : to });
+                    }
+                }
+            }
+            return stats;
+        }, stats -> renderCalendar(first, last, stats));
+    }
 
-        } catch (Exception ex) {
-            // return original string
-            try { return rs.getString(col); } catch (Exception ignore) { return ""; }
+    // stats: epoch day -> {count, first minute, last minute}; minutes may be null for legacy rows
+    private void renderCalendar(java.time.LocalDate first, java.time.LocalDate last, java.util.Map<Long, Integer[]> stats) {
+        calGrid.removeAll();
+        for (java.time.DayOfWeek dow : java.time.DayOfWeek.values()) {
+            JLabel h = new JLabel(dow.getDisplayName(java.time.format.TextStyle.SHORT, java.util.Locale.ENGLISH), SwingConstants.CENTER);
+            h.setFont(new Font("SansSerif", Font.BOLD, 12));
+            calGrid.add(h);
+        }
+        java.time.LocalDate today = java.time.LocalDate.now();
+        int month = calAnchor.getMonthValue();
+        for (java.time.LocalDate d = first; !d.isAfter(last); d = d.plusDays(1)) {
+            Integer[] st = stats.get(d.toEpochDay());
+            StringBuilder html = new StringBuilder("<html><b>").append(d.getDayOfMonth()).append("</b>");
+            if (st != null) {
+                html.append("<br>").append(st[0]).append(st[0] == 1 ? " appt" : " appts");
+                if (st[1] != null) {
+                    html.append("<br>").append(DateTimeUtils.formatMinute(st[1]));
+                    if (!st[1].equals(st[2])) html.append("-").append(DateTimeUtils.formatMinute(st[2]));
+                }
+            }
+            html.append("</html>");
+
+            JButton cell = new JButton(html.toString());
+            cell.setVerticalAlignment(SwingConstants.TOP);
+            cell.setHorizontalAlignment(SwingConstants.LEFT);
+            cell.setMargin(new Insets(2, 4, 2, 4));
+            cell.setFocusPainted(false);
+            cell.setBackground(st != null ? new Color(214, 228, 250) : Color.WHITE);
+            if (!calWeekView && d.getMonthValue() != month) cell.setForeground(Color.GRAY);
+            if (d.equals(today)) cell.setBorder(BorderFactory.createLineBorder(new Color(60, 90, 140), 2));
+            java.time.LocalDate day = d;
+            cell.setEnabled(st != null);
+            cell.addActionListener(e -> openCalendarDay(calDoctorId, day));
+            calGrid.add(cell);
         }
+        calGrid.revalidate();
+        calGrid.repaint();
+    }
+
+    // the day's appointments, read through the (doctor_id, appt_day, appt_minute) slot index
+    private void openCalendarDay(int doctorId, java.time.LocalDate day) {
+        String sql = "SELECT a.appointment_id, a.appt_minute, a.time, p.name AS patient_name, a.symptoms "
+                   + "FROM appointments a LEFT JOIN patients p ON a.patient_id = p.patient_id "
+                   + "WHERE a.doctor_id = ? AND a.appt_day = ? ORDER BY a.appt_minute, a.appointment_id";
+        runDb(calBusy, () -> {
+            java.util.List<Object[]> rows = new java.util.ArrayList<>();
+            try (Connection con = DBConnection.getConnection();
+                 PreparedStatement pst = con.prepareStatement(sql)) {
+                pst.setInt(1, doctorId);
+                pst.setLong(2, day.toEpochDay());
+                try (ResultSet rs = pst.executeQuery()) {
+                    while (rs.next()) {
+                        int m = rs.getInt("appt_minute");
+                        String time = rs.wasNull() ? rs.getString("time") : DateTimeUtils.formatMinute(m);
+                        rows.add(new Object[] { rs.getInt("appointment_id"), time, rs.getString("patient_name"), rs.getString("symptoms") });
+                    }
+                }
+            }
+            return rows;
+        }, rows -> {
+            DefaultTableModel m = new DefaultTableModel(new String[] {"appointment_id","time","patient","symptoms"}, 0) {
+                @Override public boolean isCellEditable(int r, int c) { return false; }
+            };
+            for (Object[] row : rows) m.addRow(row);
+            JScrollPane sp = new JScrollPane(new JTable(m));
+            sp.setPreferredSize(new Dimension(520, 260));
+            JOptionPane.showMessageDialog(this, sp, day + " (" + rows.size() + " appointments)", JOptionPane.PLAIN_MESSAGE);
+        });
     }
 
     private JPanel makeViewAppointmentsPanel() {
+        BusyBar busy = appointmentsBusy = new BusyBar();
         JPanel p = new JPanel(new BorderLayout());
 
-        String[] cols = {"appointment_id","patient_name","doctor_name","date","time","symptoms"};
-        DefaultTableModel model = new DefaultTableModel(cols, 0) {
-            @Override public boolean isCellEditable(int r, int c) { return false; }
-        };
+        // paged model: only the visible window of rows is ever loaded
+        AppointmentsTableModel model = new AppointmentsTableModel(busy, session.appointmentScope());
         JTable table = new JTable(model);
         JScrollPane sp = new JScrollPane(table);
 
+        // full-text search on symptoms and patient name / phone / address
+        p.add(makeSearchBox("Search symptoms or patient", model::setFilter), BorderLayout.NORTH);
+
         JPanel controls = new JPanel();
         JButton btnRefresh = new JButton("Refresh");
         JButton btnEdit = new JButton("Edit Selected");
         JButton btnDelete = new JButton("Delete Selected"); 
         JButton btnExport = new JButton("Export CSV");
         JButton btnExportPdf = new JButton("Export PDF");
+        JButton btnImport = new JButton("Import CSV");
         JButton btnPrint = new JButton("Print");
-        // order: Export CSV, Export PDF, Print, Refresh, Edit, Delete
+        // order: Export CSV, Export PDF, Import CSV, Print, Refresh, Edit, Delete
         btnExport.setPreferredSize(new Dimension(110, 28));
         btnExportPdf.setPreferredSize(new Dimension(110, 28));
+        btnImport.setPreferredSize(new Dimension(110, 28));
+        btnImport.setVisible(session.has(Permission.IMPORT));
+        btnExport.setVisible(session.has(Permission.EXPORT));
+        btnExportPdf.setVisible(session.has(Permission.EXPORT));
         btnPrint.setPreferredSize(new Dimension(80, 28));
         btnRefresh.setPreferredSize(new Dimension(80, 28));
         btnEdit.setPreferredSize(new Dimension(100, 28));
@@ -993,6 +1211,7 @@ public class Dashboard extends JFrame {
 
         controls.add(btnExport);
         controls.add(btnExportPdf);
+        controls.add(btnImport);
         controls.add(btnPrint);
         controls.add(btnRefresh);
         controls.add(btnEdit);
@@ -1004,298 +1223,480 @@ public class Dashboard extends JFrame {
         btnExport.addActionListener(e -> exportAppointmentsCSV());
         btnPrint.addActionListener(e -> printAppointments());
         btnExportPdf.addActionListener(e -> exportAppointmentsPDF());
+        btnImport.addActionListener(e -> importCsv(CsvImporter.Target.APPOINTMENTS, appointmentsBusy));
         
-        // Refresh action: refill model
-        btnRefresh.addActionListener(e -> {
-            model.setRowCount(0);
-            String sql = "SELECT a.appointment_id, p.name AS patient_name, d.name AS doctor_name, a.date, a.time, a.symptoms, a.patient_id " +
-                         "FROM appointments a " +
-                         "LEFT JOIN patients p ON a.patient_id = p.patient_id " +
-                         "LEFT JOIN doctors d ON a.doctor_id = d.doctor_id " +
-                         "ORDER BY a.appointment_id DESC";
-            try (Connection con = DBConnection.getConnection();
-                 PreparedStatement pst = con.prepareStatement(sql);
-                 ResultSet rs = pst.executeQuery()) {
-                while (rs.next()) {
-                    String dateStr = formatDateFromResultSet(rs, "date");
-                    model.addRow(new Object[] {
-                        rs.getInt("appointment_id"),
-                        rs.getString("patient_name"),
-                        rs.getString("doctor_name"),
-                        dateStr,
-                        rs.getString("time"),
-                        rs.getString("symptoms")
-                    });
-                }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "DB Error: " + ex.getMessage());
-            }
-        });
+        // Refresh action: re-count and drop cached pages (rows reload as they're shown)
+        btnRefresh.addActionListener(e -> model.refresh());
 
         // Edit action: opens a small dialog to change date/time (with role checks)
         btnEdit.addActionListener(e -> {
             int sel = table.getSelectedRow();
             if (sel == -1) { JOptionPane.showMessageDialog(this, "Select a row to edit."); return; }
-            int apptId = Integer.parseInt(model.getValueAt(sel, 0).toString());
+            int apptId = model.getAppointmentId(sel);
+            if (apptId < 0) return; // row still loading
 
-            // Get appointment's patient_id to check ownership
-            int apptPatientId = -1;
-            String q = "SELECT patient_id, date, time FROM appointments WHERE appointment_id = ?";
-            try (Connection con = DBConnection.getConnection();
-                 PreparedStatement pst = con.prepareStatement(q)) {
-                pst.setInt(1, apptId);
-                try (ResultSet rs = pst.executeQuery()) {
-                    if (rs.next()) {
-                        apptPatientId = rs.getInt("patient_id");
-                    } else {
-                        JOptionPane.showMessageDialog(this, "Appointment not found.");
-                        return;
+            // Get appointment's patient_id (ownership check) and current date/time in one read
+            String q = "SELECT patient_id, date, time, appt_day, appt_minute FROM appointments WHERE appointment_id = ?";
+            runDb(busy, () -> {
+                try (Connection con = DBConnection.getConnection();
+                     PreparedStatement pst = con.prepareStatement(q)) {
+                    pst.setInt(1, apptId);
+                    try (ResultSet rs = pst.executeQuery()) {
+                        if (!rs.next()) throw new ValidationException("Appointment not found.");
+                        return new Object[] { rs.getInt("patient_id"), DateTimeUtils.formatApptDate(rs), DateTimeUtils.formatApptTime(rs) };
                     }
                 }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "DB Error: " + ex.getMessage());
-                return;
-            }
-
-            String role = Session.currentUserRole == null ? "guest" : Session.currentUserRole;
-            boolean allowed = role.equalsIgnoreCase("admin") || role.equalsIgnoreCase("receptionist")
-                              || (role.equalsIgnoreCase("patient") && Session.currentPatientId == apptPatientId);
-            if (!allowed) { JOptionPane.showMessageDialog(this, "Access denied."); return; }
+            }, current -> openEditAppointmentDialog(apptId, (Integer) current[0], (String) current[1], (String) current[2], busy));
+        });
 
-            // Build dialog
-            JDialog d = new JDialog(this, "Edit Appointment " + apptId, true);
-            d.setSize(360,200);
-            d.setLocationRelativeTo(this);
-            JPanel fp = new JPanel(new GridBagLayout());
-            GridBagConstraints g = new GridBagConstraints();
-            g.insets = new Insets(6,6,6,6);
-            g.anchor = GridBagConstraints.WEST;
+        // DELETE appointment action 
+        btnDelete.addActionListener(e -> {
+            int sel = table.getSelectedRow();
+            if (sel == -1) { JOptionPane.showMessageDialog(this, "Select an appointment to delete."); return; }
+            int apptId = model.getAppointmentId(sel);
+            if (apptId < 0) return; // row still loading
 
-            g.gridx=0; g.gridy=0; fp.add(new JLabel("Date (YYYY-MM-DD):"), g);
-            g.gridx=1; g.gridy=0; JTextField tDate = new JTextField(12); fp.add(tDate, g);
+            // check ownership/permission
+            String q2 = "SELECT patient_id FROM appointments WHERE appointment_id = ?";
+            runDb(busy, () -> {
+                try (Connection con = DBConnection.getConnection();
+                     PreparedStatement pst = con.prepareStatement(q2)) {
+                    pst.setInt(1, apptId);
+                    try (ResultSet rs = pst.executeQuery()) {
+                        return rs.next() ? rs.getInt("patient_id") : -1;
+                    }
+                }
+            }, apptPatientId -> {
+                if (!session.mayActFor(apptPatientId)) { JOptionPane.showMessageDialog(this, "Access denied."); return; }
 
-            g.gridx=0; g.gridy=1; fp.add(new JLabel("Time (e.g. 10:30 AM):"), g);
-            g.gridx=1; g.gridy=1; JTextField tTime = new JTextField(12); fp.add(tTime, g);
+                int conf = JOptionPane.showConfirmDialog(this, "Delete appointment " + apptId + " ?", "Confirm", JOptionPane.YES_NO_OPTION);
+                if (conf != JOptionPane.YES_OPTION) return;
 
-            // Load existing values safely
-            try (Connection con = DBConnection.getConnection();
-                 PreparedStatement pst = con.prepareStatement("SELECT date, time FROM appointments WHERE appointment_id = ?")) {
-                pst.setInt(1, apptId);
-                try (ResultSet rs = pst.executeQuery()) {
-                    if (rs.next()) {
-                        String dateStr = formatDateFromResultSet(rs, "date");
-                        tDate.setText(dateStr == null ? "" : dateStr);
-                        tTime.setText(rs.getString("time"));
+                runDb(busy, () -> AppointmentService.delete(session, apptId) ? 1 : 0, aff -> {
+                    if (aff > 0) {
+                        JOptionPane.showMessageDialog(this, "Appointment deleted.");
+                    } else {
+                        JOptionPane.showMessageDialog(this, "Delete failed.");
                     }
+                });
+            });
+        });
+
+        // initial load
+        model.refresh();
+        appointmentsModel = model;
+
+        return makeCardPanel("View Appointments", p, busy);
+    }
+
+    // searches every doctor of a specialization for the earliest free slots;
+    // "Use" copies the chosen doctor/date/time into the booking form
+    private void openNextAvailableDialog(LookupPicker tDid, JTextField tDate, JTextField tTime, BusyBar busy) {
+        JDialog d = new JDialog(this, "Find Next Available Slot", true);
+        d.setSize(560, 400);
+        d.setLocationRelativeTo(this);
+
+        JComboBox<String> cSpec = new JComboBox<>(new String[] {"(any)"});
+        JTextField tFrom = new JTextField(java.time.LocalDate.now().toString(), 10);
+        JSpinner sCount = new JSpinner(new SpinnerNumberModel(10, 1, 100, 1));
+        JButton btnSearch = new JButton("Search");
+
+        JPanel top = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 6));
+        top.add(new JLabel("Specialization:"));
+        top.add(cSpec);
+        top.add(new JLabel("From:"));
+        top.add(tFrom);
+        top.add(new JLabel("Show:"));
+        top.add(sCount);
+        top.add(btnSearch);
+
+        DefaultTableModel results = new DefaultTableModel(new String[] {"doctor", "date", "time"}, 0) {
+            @Override public boolean isCellEditable(int r, int c) { return false; }
+        };
+        JTable table = new JTable(results);
+        java.util.List<SlotScheduler.Opening> shown = new java.util.ArrayList<>();
+
+        JButton btnUse = new JButton("Use Selected");
+        JButton btnClose = new JButton("Close");
+        JPanel bot = new JPanel();
+        bot.add(btnUse);
+        bot.add(btnClose);
+
+        d.getContentPane().setLayout(new BorderLayout());
+        d.getContentPane().add(top, BorderLayout.NORTH);
+        d.getContentPane().add(new JScrollPane(table), BorderLayout.CENTER);
+        d.getContentPane().add(bot, BorderLayout.SOUTH);
+
+        runDb(d, busy, () -> {
+            try (Connection con = DBConnection.getConnection()) {
+                return SlotScheduler.specializations(con);
+            }
+        }, specs -> { for (String sp : specs) cSpec.addItem(sp); });
+
+        btnSearch.addActionListener(ae -> {
+            java.time.LocalDate from = DateTimeUtils.parseDate(tFrom.getText().trim());
+            if (from == null) { JOptionPane.showMessageDialog(d, "Unrecognized date. Use YYYY-MM-DD."); return; }
+            String spec = cSpec.getSelectedIndex() <= 0 ? null : (String) cSpec.getSelectedItem();
+            int n = (Integer) sCount.getValue();
+            int horizon = DBConfig.getInt("schedule.searchDays", 90);
+            btnSearch.setEnabled(false);
+            runDb(d, busy, () -> {
+                try (Connection con = DBConnection.getConnection()) {
+                    return SlotScheduler.nextAvailable(con, spec, from, n, horizon);
+                }
+            }, openings -> {
+                shown.clear();
+                shown.addAll(openings);
+                results.setRowCount(0);
+                for (SlotScheduler.Opening o : openings) {
+                    results.addRow(new Object[] {
+                        o.doctorName + " (#" + o.doctorId + ")",
+                        o.start.toLocalDate().toString(),
+                        o.start.toLocalTime().format(DateTimeUtils.DISPLAY_TIME)
+                    });
                 }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
+                if (openings.isEmpty()) JOptionPane.showMessageDialog(d, "No free slots in the next " + horizon + " days.");
+            }).whenFinished(() -> btnSearch.setEnabled(true));
+        });
+
+        btnUse.addActionListener(ae -> {
+            int row = table.getSelectedRow();
+            if (row < 0 || row >= shown.size()) { JOptionPane.showMessageDialog(d, "Select a slot."); return; }
+            SlotScheduler.Opening o = shown.get(row);
+            tDid.select(o.doctorId, o.doctorName + " (#" + o.doctorId + ")");
+            tDate.setText(o.start.toLocalDate().toString());
+            tTime.setText(o.start.toLocalTime().format(DateTimeUtils.DISPLAY_TIME));
+            d.dispose();
+        });
+        btnClose.addActionListener(ae -> d.dispose());
+
+        d.setVisible(true);
+    }
+
+    // books the patient/doctor/time from the booking form as a series
+    private void openRecurringDialog(LookupPicker tPid, LookupPicker tDid, JTextField tDate, JTextField tTime,
+                                     JTextField tSymptoms, BusyBar busy) {
+        int pid = session.has(Permission.BOOK_ANY_PATIENT) ? tPid.getSelectedId() : session.patientId;
+        int did = tDid.getSelectedId();
+        java.time.LocalDate first = DateTimeUtils.parseDate(tDate.getText().trim());
+        java.time.LocalTime lt = DateTimeUtils.parseTime(tTime.getText().trim());
+        if (pid <= 0 || did <= 0 || first == null || lt == null) {
+            JOptionPane.showMessageDialog(this, "Fill in patient, doctor, first date and time on the form first.");
+            return;
+        }
+        int minute = DateTimeUtils.toMinuteOfDay(lt);
+        String symptoms = tSymptoms.getText().trim();
+
+        JDialog d = new JDialog(this, "Book Recurring Appointments", true);
+        d.setSize(420, 260);
+        d.setLocationRelativeTo(this);
+        JPanel fp = new JPanel(new GridBagLayout());
+        GridBagConstraints g = new GridBagConstraints();
+        g.insets = new Insets(6,6,6,6);
+        g.anchor = GridBagConstraints.WEST;
+
+        JSpinner sEvery = new JSpinner(new SpinnerNumberModel(1, 1, 52, 1));
+        JComboBox<String> cUnit = new JComboBox<>(new String[] {"weeks", "days", "months"});
+        JPanel every = new JPanel(new FlowLayout(FlowLayout.LEFT, 4, 0));
+        every.add(sEvery);
+        every.add(cUnit);
+
+        JRadioButton rCount = new JRadioButton("Number of appointments:", true);
+        JRadioButton rUntil = new JRadioButton("Until (YYYY-MM-DD):");
+        ButtonGroup endGroup = new ButtonGroup();
+        endGroup.add(rCount);
+        endGroup.add(rUntil);
+        JSpinner sCount = new JSpinner(new SpinnerNumberModel(10, 1, Recurrence.MAX_OCCURRENCES, 1));
+        JTextField tUntil = new JTextField(first.plusMonths(3).toString(), 10);
+        JCheckBox cSkip = new JCheckBox("Skip dates that are taken or off-hours");
+
+        g.gridx=0; g.gridy=0; fp.add(new JLabel("Starting " + first + " at " + DateTimeUtils.formatMinute(minute) + ", every:"), g);
+        g.gridx=1; g.gridy=0; fp.add(every, g);
+        g.gridx=0; g.gridy=1; fp.add(rCount, g);
+        g.gridx=1; g.gridy=1; fp.add(sCount, g);
+        g.gridx=0; g.gridy=2; fp.add(rUntil, g);
+        g.gridx=1; g.gridy=2; fp.add(tUntil, g);
+        g.gridx=0; g.gridy=3; g.gridwidth=2; fp.add(cSkip, g);
+
+        JButton btnBookAll = new JButton("Book Series");
+        JButton btnCancel = new JButton("Cancel");
+        JPanel bot = new JPanel();
+        bot.add(btnBookAll);
+        bot.add(btnCancel);
+
+        d.getContentPane().setLayout(new BorderLayout());
+        d.getContentPane().add(fp, BorderLayout.CENTER);
+        d.getContentPane().add(bot, BorderLayout.SOUTH);
+
+        btnCancel.addActionListener(ae -> d.dispose());
+        btnBookAll.addActionListener(ae -> {
+            java.time.temporal.ChronoUnit unit;
+            switch (cUnit.getSelectedIndex()) {
+                case 1: unit = java.time.temporal.ChronoUnit.DAYS; break;
+                case 2: unit = java.time.temporal.ChronoUnit.MONTHS; break;
+                default: unit = java.time.temporal.ChronoUnit.WEEKS;
+            }
+            java.time.LocalDate until = null;
+            int count = 0;
+            if (rUntil.isSelected()) {
+                until = DateTimeUtils.parseDate(tUntil.getText().trim());
+                if (until == null) { JOptionPane.showMessageDialog(d, "Unrecognized end date."); return; }
+            } else {
+                count = (Integer) sCount.getValue();
             }
+            Recurrence rule = new Recurrence((Integer) sEvery.getValue(), unit, until, count);
+            boolean skip = cSkip.isSelected();
+
+            btnBookAll.setEnabled(false);
+            runDb(d, busy, () -> AppointmentService.bookSeries(session, pid, did, first, minute, symptoms, rule, skip), ids -> {
+                JOptionPane.showMessageDialog(d, "Booked " + ids.length + " appointments (" + rule + ").");
+                d.dispose();
+                showCard("VIEW_APPOINTMENTS");
+            }).whenFinished(() -> btnBookAll.setEnabled(true));
+        });
 
-            JButton btnSave = new JButton("Save");
-            JButton btnCancel = new JButton("Cancel");
-            JPanel bot = new JPanel();
-            bot.add(btnSave);
-            bot.add(btnCancel);
-
-            d.getContentPane().setLayout(new BorderLayout());
-            d.getContentPane().add(fp, BorderLayout.CENTER);
-            d.getContentPane().add(bot, BorderLayout.SOUTH);
-
-            btnCancel.addActionListener(ae -> d.dispose());
-
-            btnSave.addActionListener(ae -> {
-                String dateStr = tDate.getText().trim();
-                String timeStr = tTime.getText().trim();
-                if (dateStr.isEmpty()) { JOptionPane.showMessageDialog(d, "Date required."); return; }
-                
-                java.sql.Date sqlDate;
-                try {
-                    String s = (dateStr == null ? "" : dateStr.trim());
-                    if (s.isEmpty()) {
-                        JOptionPane.showMessageDialog(d, "Date required.");
-                        return;
-                    }
+        d.setVisible(true);
+    }
 
-                    java.time.LocalDate ld = null;
+    // edit dialog for one appointment; values were already read in the background
+    private void openEditAppointmentDialog(int apptId, int apptPatientId, String curDate, String curTime,
+                                           BusyBar busy) {
+        if (!session.mayActFor(apptPatientId)) { JOptionPane.showMessageDialog(this, "Access denied."); return; }
 
-                    java.time.format.DateTimeFormatter[] fmts = {
-                        java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd"),
-                        java.time.format.DateTimeFormatter.ofPattern("dd-MM-yyyy"),
-                        java.time.format.DateTimeFormatter.ofPattern("MM/dd/yyyy")
-                    };
+        // Build dialog
+        JDialog d = new JDialog(this, "Edit Appointment " + apptId, true);
+        d.setSize(360,200);
+        d.setLocationRelativeTo(this);
+        JPanel fp = new JPanel(new GridBagLayout());
+        GridBagConstraints g = new GridBagConstraints();
+        g.insets = new Insets(6,6,6,6);
+        g.anchor = GridBagConstraints.WEST;
 
-                    for (var f : fmts) {
-                        try { ld = java.time.LocalDate.parse(s, f); break; }
-                        catch (Exception ignore) {}
-                    }
+        g.gridx=0; g.gridy=0; fp.add(new JLabel("Date (YYYY-MM-DD):"), g);
+        g.gridx=1; g.gridy=0; JTextField tDate = new JTextField(12); fp.add(tDate, g);
 
-                    if (ld == null) {
-                        try { ld = java.time.LocalDate.parse(s); } catch (Exception ignore) {}
-                    }
+        g.gridx=0; g.gridy=1; fp.add(new JLabel("Time (e.g. 10:30 AM):"), g);
+        g.gridx=1; g.gridy=1; JTextField tTime = new JTextField(12); fp.add(tTime, g);
 
-                    if (ld == null) {
-                        JOptionPane.showMessageDialog(d,
-                            "Unrecognized date. Use YYYY-MM-DD or DD-MM-YYYY or MM/DD/YYYY.");
-                        return;
-                    }
+        tDate.setText(curDate == null ? "" : curDate);
+        tTime.setText(curTime == null ? "" : curTime);
 
-                    sqlDate = java.sql.Date.valueOf(ld);
+        JButton btnSave = new JButton("Save");
+        JButton btnCancel = new JButton("Cancel");
+        JPanel bot = new JPanel();
+        bot.add(btnSave);
+        bot.add(btnCancel);
 
-                } catch (Exception ex) {
-                    JOptionPane.showMessageDialog(d, "Invalid date: " + ex.getMessage());
-                    return;
-                }
+        d.getContentPane().setLayout(new BorderLayout());
+        d.getContentPane().add(fp, BorderLayout.CENTER);
+        d.getContentPane().add(bot, BorderLayout.SOUTH);
 
-                String upd = "UPDATE appointments SET date = ?, time = ? WHERE appointment_id = ?";
-                try (Connection con = DBConnection.getConnection();
-                     PreparedStatement pst = con.prepareStatement(upd)) {
-                    pst.setDate(1, sqlDate);
-                    pst.setString(2, timeStr);
-                    pst.setInt(3, apptId);
-                    int aff = pst.executeUpdate();
-                    if (aff > 0) {
-                        JOptionPane.showMessageDialog(d, "Appointment updated.");
-                        d.dispose();
-                        btnRefresh.doClick(); // refresh the table
-                    } else {
-                        JOptionPane.showMessageDialog(d, "Update failed.");
-                    }
-                } catch (SQLException ex) {
-                    ex.printStackTrace();
-                    JOptionPane.showMessageDialog(d, "DB Error: " + ex.getMessage());
-                }
-            });
+        btnCancel.addActionListener(ae -> d.dispose());
+
+        btnSave.addActionListener(ae -> {
+            String dateStr = tDate.getText().trim();
+            String timeStr = tTime.getText().trim();
+            if (dateStr.isEmpty()) { JOptionPane.showMessageDialog(d, "Date required."); return; }
 
-            d.setVisible(true);
+            java.time.LocalDate ld = DateTimeUtils.parseDate(dateStr);
+            if (ld == null) {
+                JOptionPane.showMessageDialog(d,
+                    "Unrecognized date. Use YYYY-MM-DD or DD-MM-YYYY or MM/DD/YYYY.");
+                return;
+            }
+            java.time.LocalTime lt = DateTimeUtils.parseTime(timeStr);
+            if (lt == null) {
+                JOptionPane.showMessageDialog(d, "Enter a time, e.g. 10:30 AM or 15:30.");
+                return;
+            }
+            final int minute = DateTimeUtils.toMinuteOfDay(lt);
+
+            btnSave.setEnabled(false);
+            runDb(d, busy, () -> {
+                AppointmentService.reschedule(session, apptId, ld, minute);
+                return null;
+            }, none -> {
+                JOptionPane.showMessageDialog(d, "Appointment updated.");
+                d.dispose();
+            }).whenFinished(() -> btnSave.setEnabled(true));
         });
 
-        // DELETE appointment action 
-        btnDelete.addActionListener(e -> {
-            int sel = table.getSelectedRow();
-            if (sel == -1) { JOptionPane.showMessageDialog(this, "Select an appointment to delete."); return; }
-            int apptId = Integer.parseInt(model.getValueAt(sel, 0).toString());
+        d.setVisible(true);
+    }
 
-            // check ownership/permission
-            int apptPatientId = -1;
-            String q2 = "SELECT patient_id FROM appointments WHERE appointment_id = ?";
+    // reloads the patients table in the background (a newer load supersedes an older one)
+    private void loadPatients() {
+        if (patientsModel == null) return;
+        if (patientsLoad != null) patientsLoad.cancel();
+
+        // with a search: newest MAX_RESULTS matches straight from the FTS index
+        final String match = patientsQuery;
+        String sql = "SELECT patient_id, name, age, gender, phone, address FROM patients "
+            + (match == null ? "" : "WHERE patient_id IN (" + FullTextSearch.PATIENT_IDS + ") ")
+            + "ORDER BY patient_id DESC";
+        patientsLoad = runDb(patientsBusy, () -> {
+            java.util.List<Object[]> rows = new java.util.ArrayList<>();
             try (Connection con = DBConnection.getConnection();
-                 PreparedStatement pst = con.prepareStatement(q2)) {
-                pst.setInt(1, apptId);
+                 PreparedStatement pst = con.prepareStatement(sql)) {
+                if (match != null) pst.setString(1, match);
                 try (ResultSet rs = pst.executeQuery()) {
-                    if (rs.next()) apptPatientId = rs.getInt("patient_id");
+                    while (rs.next()) rows.add(patientRow(rs));
                 }
-            } catch (SQLException ex) { ex.printStackTrace(); JOptionPane.showMessageDialog(this, "DB Error: " + ex.getMessage()); return; }
+            }
+            return rows;
+        }, rows -> {
+            patientsModel.setRowCount(0);
+            for (Object[] row : rows) patientsModel.addRow(row);
+        });
+    }
 
-            String role = Session.currentUserRole == null ? "guest" : Session.currentUserRole;
-            boolean allowed = false;
-            if (role.equalsIgnoreCase("admin") || role.equalsIgnoreCase("receptionist")) allowed = true;
-            if (role.equalsIgnoreCase("patient") && Session.currentPatientId == apptPatientId) allowed = true;
-            if (!allowed) { JOptionPane.showMessageDialog(this, "Access denied."); return; }
+    private void loadDoctors() {
+        if (doctorsModel == null) return;
+        if (doctorsLoad != null) doctorsLoad.cancel();
 
-            int conf = JOptionPane.showConfirmDialog(this, "Delete appointment " + apptId + " ?", "Confirm", JOptionPane.YES_NO_OPTION);
-            if (conf != JOptionPane.YES_OPTION) return;
+        String sql = "SELECT doctor_id, name, specialization, phone FROM doctors ORDER BY doctor_id DESC";
 
-            String del = "DELETE FROM appointments WHERE appointment_id = ?";
+        doctorsLoad = runDb(doctorsBusy, () -> {
+            java.util.List<Object[]> rows = new java.util.ArrayList<>();
             try (Connection con = DBConnection.getConnection();
-                 PreparedStatement pst = con.prepareStatement(del)) {
-                pst.setInt(1, apptId);
-                int aff = pst.executeUpdate();
-                if (aff > 0) {
-                    JOptionPane.showMessageDialog(this, "Appointment deleted.");
-                    btnRefresh.doClick();
-                } else {
-                    JOptionPane.showMessageDialog(this, "Delete failed.");
-                }
-            } catch (SQLException ex) {
-                ex.printStackTrace();
-                JOptionPane.showMessageDialog(this, "DB Error: " + ex.getMessage());
+                 PreparedStatement pst = con.prepareStatement(sql);
+                 ResultSet rs = pst.executeQuery()) {
+
+                while (rs.next()) rows.add(doctorRow(rs));
             }
+            return rows;
+        }, rows -> {
+            doctorsModel.setRowCount(0);
+            for (Object[] row : rows) doctorsModel.addRow(row);
         });
+    }
 
-        // initial load
-        btnRefresh.doClick();
-
-        // stored btnRefresh so other methods (book appointment) can call it
-        this.btnRefresh = btnRefresh;
-
-        return makeCardPanel("View Appointments", p);
+    private static Object[] patientRow(ResultSet rs) throws SQLException {
+        return new Object[] {
+            rs.getInt("patient_id"),
+            rs.getString("name"),
+            rs.getInt("age"),
+            rs.getString("gender"),
+            rs.getString("phone"),
+            rs.getString("address")
+        };
     }
 
-        private void loadPatients() {
-        // clear model
-        if (patientsModel == null) return;
-        patientsModel.setRowCount(0);
+    private static Object[] doctorRow(ResultSet rs) throws SQLException {
+        return new Object[] {
+            rs.getInt("doctor_id"),
+            rs.getString("name"),
+            rs.getString("specialization"),
+            rs.getString("phone")
+        };
+    }
 
-        String sql = "SELECT patient_id, name, age, gender, phone, address FROM patients ORDER BY patient_id DESC";
+    // null if the patient is gone or doesn't match the current search
+    private Object[] fetchPatientRow(int id) throws SQLException {
+        final String match = patientsQuery;
+        String sql = "SELECT patient_id, name, age, gender, phone, address FROM patients WHERE patient_id = ?"
+            + (match == null ? "" : " AND patient_id IN (SELECT rowid FROM patients_fts WHERE patients_fts MATCH ?)");
         try (Connection con = DBConnection.getConnection();
-             PreparedStatement pst = con.prepareStatement(sql);
-             ResultSet rs = pst.executeQuery()) {
-
-            while (rs.next()) {
-                Object[] row = new Object[] {
-                    rs.getInt("patient_id"),
-                    rs.getString("name"),
-                    rs.getInt("age"),
-                    rs.getString("gender"),
-                    rs.getString("phone"),
-                    rs.getString("address")
-                };
-                patientsModel.addRow(row);
+             PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setInt(1, id);
+            if (match != null) pst.setString(2, match);
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next() ? patientRow(rs) : null;
             }
+        }
+    }
 
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            
-            // JOptionPane.showMessageDialog(this, "DB Error while loading patients: " + ex.getMessage());
+    private Object[] fetchDoctorRow(int id) throws SQLException {
+        String sql = "SELECT doctor_id, name, specialization, phone FROM doctors WHERE doctor_id = ?";
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql)) {
+            pst.setInt(1, id);
+            try (ResultSet rs = pst.executeQuery()) {
+                return rs.next() ? doctorRow(rs) : null;
+            }
         }
     }
 
-            private void loadDoctors() {
-        if (doctorsModel == null) return;
-        doctorsModel.setRowCount(0);
+    // --- export helpers ----------------------------------------------------
 
-        String sql = "SELECT doctor_id, name, specialization, phone FROM doctors ORDER BY doctor_id DESC";
+    // an export that reports rows written; returns the row count
+    private interface ExportJob {
+        long run(CsvExporter.Progress progress) throws Exception;
+    }
 
-        try (Connection con = DBConnection.getConnection();
-             PreparedStatement pst = con.prepareStatement(sql);
-             ResultSet rs = pst.executeQuery()) {
-
-            while (rs.next()) {
-                doctorsModel.addRow(new Object[]{
-                    rs.getInt("doctor_id"),
-                    rs.getString("name"),
-                    rs.getString("specialization"),
-                    rs.getString("phone")
+    private void exportCsv(String defaultName, BusyBar busy, String countSql, String sql,
+                           String[] headers, CsvExporter.Column[] columns) {
+        File f = askSaveFile(defaultName);
+        if (f == null) return;
+        runExport(f, busy, countSql, progress -> CsvExporter.exportToFile(session, sql, headers, columns, f, progress));
+    }
+
+    // Runs the export on a worker thread behind a ProgressMonitor (row count,
+    // cancel); countSql only sizes the progress bar.
+    private void runExport(File f, BusyBar busy, String countSql, ExportJob job) {
+        ProgressMonitor pm = new ProgressMonitor(this, "Exporting " + f.getName(), "Counting rows...", 0, 1000);
+        pm.setMillisToDecideToPopup(300);
+        java.util.concurrent.atomic.AtomicBoolean cancel = new java.util.concurrent.atomic.AtomicBoolean();
+        java.util.concurrent.atomic.AtomicLong total = new java.util.concurrent.atomic.AtomicLong();
+
+        CsvExporter.Progress progress = new CsvExporter.Progress() {
+            @Override public void rows(long written) {
+                SwingUtilities.invokeLater(() -> {
+                    if (pm.isCanceled()) { cancel.set(true); return; }
+                    long max = Math.max(total.get(), written);
+                    // ProgressMonitor takes ints; per-mille so huge tables fit
+                    pm.setProgress(max == 0 ? 0 : (int) (written * 1000 / max));
+                    pm.setNote(written + " of " + max + " rows");
                 });
             }
+            @Override public boolean cancelled() { return cancel.get(); }
+        };
 
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-        }
+        runBulk(busy, () -> {
+            try (Connection con = DBConnection.getConnection();
+                 PreparedStatement pst = con.prepareStatement(countSql);
+                 ResultSet rs = pst.executeQuery()) {
+                if (rs.next()) total.set(rs.getLong(1));
+            }
+            return job.run(progress);
+        }, rows -> {
+            pm.close();
+            JOptionPane.showMessageDialog(this, "Saved " + rows + " rows: " + f.getAbsolutePath());
+        }).whenFinished(pm::close);
     }
 
-    // --- CSV export helper ------------------------------------------------
-    private boolean writeCsvFile(File f, String[] headers, java.util.List<String[]> rows) {
-        try (java.io.PrintWriter pw = new java.io.PrintWriter(new java.io.OutputStreamWriter(new java.io.FileOutputStream(f), "UTF-8"))) {
-            // header
-            pw.println(String.join(",", headers));
-            for (String[] r : rows) {
-                // escaped any double-quotes and wrap fields in quotes
-                for (int i = 0; i < r.length; i++) {
-                    if (r[i] == null) r[i] = "";
-                    r[i] = "\"" + r[i].replace("\"", "\"\"") + "\"";
-                }
-                pw.println(String.join(",", r));
-            }
-            return true;
-        } catch (Exception ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "Export error: " + ex.getMessage());
-            return false;
+    // --- CSV import ----------------------------------------------------------
+    // bulk import through CsvImporter; doctors are admin-only like Add Doctor
+    private void importCsv(CsvImporter.Target target, BusyBar busy) {
+        if (!session.has(target == CsvImporter.Target.DOCTORS ? Permission.IMPORT_DOCTORS : Permission.IMPORT)) {
+            JOptionPane.showMessageDialog(this, "Access denied.");
+            return;
         }
+        JFileChooser fc = new JFileChooser();
+        fc.setDialogTitle("Import " + target.name().toLowerCase() + " from CSV (first line = column names)");
+        if (fc.showOpenDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File f = fc.getSelectedFile();
+
+        ProgressMonitor pm = new ProgressMonitor(this, "Importing " + f.getName(), "Reading...", 0, 1);
+        pm.setMillisToDecideToPopup(300);
+        java.util.concurrent.atomic.AtomicBoolean cancel = new java.util.concurrent.atomic.AtomicBoolean();
+        CsvExporter.Progress progress = new CsvExporter.Progress() {
+            @Override public void rows(long read) {
+                SwingUtilities.invokeLater(() -> {
+                    if (pm.isCanceled()) { cancel.set(true); return; }
+                    pm.setNote(read + " rows processed");
+                });
+            }
+            @Override public boolean cancelled() { return cancel.get(); }
+        };
+
+        runBulk(busy, () -> CsvImporter.importFile(session, target, f, progress), r -> {
+            pm.close();
+            StringBuilder msg = new StringBuilder(r.cancelled ? "Import stopped. " : "Import finished. ")
+                .append(r.imported).append(" of ").append(r.read).append(" rows imported");
+            if (r.rejected > 0) msg.append(", ").append(r.rejected).append(" rejected.\nSee ").append(r.rejectFile.getAbsolutePath());
+            JOptionPane.showMessageDialog(this, msg.append('.').toString());
+        }).whenFinished(pm::close);
     }
 
     // quick file chooser (returns selected file or null)
@@ -1313,85 +1714,35 @@ public class Dashboard extends JFrame {
     }
 
     private void exportPatientsCSV() {
-        File f = askSaveFile("patients.csv");
-        if (f == null) return;
-        String sql = "SELECT patient_id, name, age, gender, phone, address FROM patients ORDER BY patient_id";
-        java.util.List<String[]> rows = new java.util.ArrayList<>();
-        try (Connection con = DBConnection.getConnection();
-             PreparedStatement pst = con.prepareStatement(sql);
-             ResultSet rs = pst.executeQuery()) {
-            while (rs.next()) {
-                rows.add(new String[] {
-                    String.valueOf(rs.getInt("patient_id")),
-                    rs.getString("name"),
-                    String.valueOf(rs.getInt("age")),
-                    rs.getString("gender"),
-                    rs.getString("phone"),
-                    rs.getString("address")
-                });
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "DB Error: " + ex.getMessage());
-            return;
-        }
-        String[] hdr = {"patient_id","name","age","gender","phone","address"};
-        if (writeCsvFile(f, hdr, rows)) JOptionPane.showMessageDialog(this, "Saved: " + f.getAbsolutePath());
+        exportCsv("patients.csv", patientsBusy, "SELECT COUNT(*) FROM patients",
+            "SELECT patient_id, name, age, gender, phone, address FROM patients ORDER BY patient_id",
+            new String[] {"patient_id","name","age","gender","phone","address"},
+            new CsvExporter.Column[] {
+                CsvExporter.column("patient_id"), CsvExporter.column("name"), CsvExporter.column("age"),
+                CsvExporter.column("gender"), CsvExporter.column("phone"), CsvExporter.column("address")
+            });
     }
-    
+
     private void exportDoctorsCSV() {
-        File f = askSaveFile("doctors.csv");
-        if (f == null) return;
-        String sql = "SELECT doctor_id, name, specialization, phone FROM doctors ORDER BY doctor_id";
-        java.util.List<String[]> rows = new java.util.ArrayList<>();
-        try (Connection con = DBConnection.getConnection();
-             PreparedStatement pst = con.prepareStatement(sql);
-             ResultSet rs = pst.executeQuery()) {
-            while (rs.next()) {
-                rows.add(new String[] {
-                    String.valueOf(rs.getInt("doctor_id")),
-                    rs.getString("name"),
-                    rs.getString("specialization"),
-                    rs.getString("phone")
-                });
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "DB Error: " + ex.getMessage());
-            return;
-        }
-        String[] hdr = {"doctor_id","name","specialization","phone"};
-        if (writeCsvFile(f, hdr, rows)) JOptionPane.showMessageDialog(this, "Saved: " + f.getAbsolutePath());
+        exportCsv("doctors.csv", doctorsBusy, "SELECT COUNT(*) FROM doctors",
+            "SELECT doctor_id, name, specialization, phone FROM doctors ORDER BY doctor_id",
+            new String[] {"doctor_id","name","specialization","phone"},
+            new CsvExporter.Column[] {
+                CsvExporter.column("doctor_id"), CsvExporter.column("name"),
+                CsvExporter.column("specialization"), CsvExporter.column("phone")
+            });
     }
 
     private void exportAppointmentsCSV() {
-        File f = askSaveFile("appointments.csv");
-        if (f == null) return;
-        String sql = "SELECT a.appointment_id, p.name AS patient_name, d.name AS doctor_name, a.date, a.time, a.symptoms " +
+        String sql = "SELECT a.appointment_id, p.name AS patient_name, d.name AS doctor_name, a.date, a.time, a.appt_day, a.appt_minute, a.symptoms " +
                      "FROM appointments a LEFT JOIN patients p ON a.patient_id = p.patient_id " +
                      "LEFT JOIN doctors d ON a.doctor_id = d.doctor_id ORDER BY a.appointment_id";
-        java.util.List<String[]> rows = new java.util.ArrayList<>();
-        try (Connection con = DBConnection.getConnection();
-             PreparedStatement pst = con.prepareStatement(sql);
-             ResultSet rs = pst.executeQuery()) {
-            while (rs.next()) {
-                String dateStr = formatDateFromResultSet(rs, "date");
-                rows.add(new String[] {
-                    String.valueOf(rs.getInt("appointment_id")),
-                    rs.getString("patient_name"),
-                    rs.getString("doctor_name"),
-                    dateStr,
-                    rs.getString("time"),
-                    rs.getString("symptoms")
-                });
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "DB Error: " + ex.getMessage());
-            return;
-        }
-        String[] hdr = {"appointment_id","patient_name","doctor_name","date","time","symptoms"};
-        if (writeCsvFile(f, hdr, rows)) JOptionPane.showMessageDialog(this, "Saved: " + f.getAbsolutePath());
+        exportCsv("appointments.csv", appointmentsBusy, "SELECT COUNT(*) FROM appointments", sql,
+            new String[] {"appointment_id","patient_name","doctor_name","date","time","symptoms"},
+            new CsvExporter.Column[] {
+                CsvExporter.column("appointment_id"), CsvExporter.column("patient_name"), CsvExporter.column("doctor_name"),
+                DateTimeUtils::formatApptDate, DateTimeUtils::formatApptTime, CsvExporter.column("symptoms")
+            });
     }
 
     // Prints patients table 
@@ -1407,33 +1758,50 @@ public class Dashboard extends JFrame {
         } catch (Exception ex) { ex.printStackTrace(); JOptionPane.showMessageDialog(this, "Print failed: " + ex.getMessage()); }
     }
 
-    // For appointments, this creates a temporary JTable from query and prints it
+    // Appointments are printed page by page straight from the database
+    // (AppointmentsPrintable), filtered by date range and doctor
     private void printAppointments() {
-        DefaultTableModel m = new DefaultTableModel(new String[] {"ID","Patient","Doctor","Date","Time","Symptoms"}, 0);
-        String sql = "SELECT a.appointment_id, p.name AS patient_name, d.name AS doctor_name, a.date, a.time, a.symptoms " +
-                     "FROM appointments a LEFT JOIN patients p ON a.patient_id = p.patient_id " +
-                     "LEFT JOIN doctors d ON a.doctor_id = d.doctor_id ORDER BY a.appointment_id";
-        try (Connection con = DBConnection.getConnection();
-             PreparedStatement pst = con.prepareStatement(sql);
-             ResultSet rs = pst.executeQuery()) {
-            while (rs.next()) {
-                String dateStr = formatDateFromResultSet(rs, "date");
-                m.addRow(new Object[] {
-                    rs.getInt("appointment_id"),
-                    rs.getString("patient_name"),
-                    rs.getString("doctor_name"),
-                    dateStr,
-                    rs.getString("time"),
-                    rs.getString("symptoms")
-                });
-            }
-        } catch (SQLException ex) {
-            ex.printStackTrace();
-            JOptionPane.showMessageDialog(this, "DB Error: " + ex.getMessage());
+        int scope = session.appointmentScope(); // patients print only their own
+
+        String today = java.time.LocalDate.now().toString();
+        JTextField tFrom = new JTextField(today, 10);
+        JTextField tTo = new JTextField(today, 10);
+        LookupPicker tDoctor = new LookupPicker(LookupCache.doctors());
+        JPanel fp = new JPanel(new GridLayout(0, 2, 6, 6));
+        fp.add(new JLabel("From (blank = earliest):"));
+        fp.add(tFrom);
+        fp.add(new JLabel("To (blank = latest):"));
+        fp.add(tTo);
+        fp.add(new JLabel("Doctor (blank = all):"));
+        fp.add(tDoctor);
+        int ok = JOptionPane.showConfirmDialog(this, fp, "Print Appointments", JOptionPane.OK_CANCEL_OPTION, JOptionPane.PLAIN_MESSAGE);
+        if (ok != JOptionPane.OK_OPTION) return;
+
+        String fromStr = tFrom.getText().trim(), toStr = tTo.getText().trim();
+        java.time.LocalDate from = fromStr.isEmpty() ? null : DateTimeUtils.parseDate(fromStr);
+        java.time.LocalDate to = toStr.isEmpty() ? null : DateTimeUtils.parseDate(toStr);
+        if ((!fromStr.isEmpty() && from == null) || (!toStr.isEmpty() && to == null)) {
+            JOptionPane.showMessageDialog(this, "Unrecognized date. Use YYYY-MM-DD, DD-MM-YYYY or MM/DD/YYYY.");
+            return;
+        }
+        if (from != null && to != null && to.isBefore(from)) {
+            JOptionPane.showMessageDialog(this, "The end date is before the start date.");
+            return;
+        }
+        String doctorText = ((javax.swing.text.JTextComponent) tDoctor.getEditor().getEditorComponent()).getText().trim();
+        int doctorId = doctorText.isEmpty() ? -1 : tDoctor.getSelectedId();
+        if (!doctorText.isEmpty() && doctorId <= 0) {
+            JOptionPane.showMessageDialog(this, "Pick a doctor from the list, or leave it blank for all doctors.");
             return;
         }
-        JTable tmp = new JTable(m);
-        try { tmp.print(); } catch (Exception ex) { ex.printStackTrace(); JOptionPane.showMessageDialog(this, "Print failed: " + ex.getMessage()); }
+
+        String title = "Appointments" + (doctorId > 0 ? " - " + doctorText : "");
+        java.awt.print.PrinterJob job = java.awt.print.PrinterJob.getPrinterJob();
+        job.setJobName(title);
+        job.setPrintable(new AppointmentsPrintable(from, to, doctorId, scope, title));
+        if (!job.printDialog()) return;
+        // pages are fetched while the job prints, so print off the EDT
+        runBulk(appointmentsBusy, () -> { job.print(); return null; }, none -> {});
     }
    
     // file chooser for PDF (returns file with .pdf extension)
@@ -1449,112 +1817,42 @@ public class Dashboard extends JFrame {
         return null;
     }
     
+    // every table in one ZIP (ExportAll), admin only
+    private void exportAll() {
+        JFileChooser fc = new JFileChooser();
+        fc.setSelectedFile(new File("hospital-export.zip"));
+        if (fc.showSaveDialog(this) != JFileChooser.APPROVE_OPTION) return;
+        File f = fc.getSelectedFile();
+        if (!f.getName().toLowerCase().endsWith(".zip")) f = new File(f.getAbsolutePath() + ".zip");
+        File zip = f;
+        String countSql = "SELECT (SELECT COUNT(*) FROM patients) + (SELECT COUNT(*) FROM doctors) "
+                        + "+ (SELECT COUNT(*) FROM appointments) + (SELECT COUNT(*) FROM users)";
+        runExport(zip, null, countSql, progress -> {
+            long rows = 0;
+            for (ExportAll.Entry e : ExportAll.export(session, zip, progress)) rows += e.rows;
+            return rows;
+        });
+    }
+
     private void exportAppointmentsPDF() {
         File f = askSaveFilePdf("appointments.pdf");
         if (f == null) return;
 
-        String sql = "SELECT a.appointment_id, p.name AS patient_name, d.name AS doctor_name, a.date, a.time, a.symptoms " +
+        String sql = "SELECT a.appointment_id, p.name AS patient_name, d.name AS doctor_name, a.date, a.time, a.appt_day, a.appt_minute, a.symptoms " +
                      "FROM appointments a LEFT JOIN patients p ON a.patient_id = p.patient_id " +
                      "LEFT JOIN doctors d ON a.doctor_id = d.doctor_id ORDER BY a.appointment_id";
-
-        PDDocument doc = null;
-        PDPageContentStream cs = null;
-
-        try (Connection con = DBConnection.getConnection();
-             PreparedStatement pst = con.prepareStatement(sql);
-             ResultSet rs = pst.executeQuery()) {
-
-            doc = new PDDocument();
-            PDPage page = new PDPage();
-            doc.addPage(page);
-            cs = new PDPageContentStream(doc, page);
-
-            // Starting coordinates
-            float margin = 50;
-            float y = page.getMediaBox().getHeight() - margin;
-            float leading = 16; // line spacing
-
-            // Title
-            cs.beginText();
-            cs.setFont(PDType1Font.HELVETICA_BOLD, 16);
-            cs.newLineAtOffset(margin, y);
-            cs.showText("Appointments Report");
-            cs.endText();
-            y -= leading + 6;
-
-            // Header
-            cs.beginText();
-            cs.setFont(PDType1Font.HELVETICA_BOLD, 11);
-            cs.newLineAtOffset(margin, y);
-            String header = String.format("%-8s %-20s %-20s %-12s %-10s %-20s", "ID", "Patient", "Doctor", "Date", "Time", "Symptoms");
-            cs.showText(header);
-            cs.endText();
-            y -= leading;
-
-            // Divider line
-            cs.moveTo(margin, y);
-            cs.lineTo(page.getMediaBox().getWidth() - margin, y);
-            cs.stroke();
-            y -= leading;
-
-            // Rows
-            cs.setFont(PDType1Font.HELVETICA, 10);
-            while (rs.next()) {
-                int id = rs.getInt("appointment_id");
-                String pName = rs.getString("patient_name") == null ? "" : rs.getString("patient_name");
-                String dName = rs.getString("doctor_name") == null ? "" : rs.getString("doctor_name");
-                String date = formatDateFromResultSet(rs, "date");
-                String time = rs.getString("time") == null ? "" : rs.getString("time");
-                String sym = rs.getString("symptoms") == null ? "" : rs.getString("symptoms");
-
-                String row = String.format("%-8s %-20s %-20s %-12s %-10s %-20s",
-                        String.valueOf(id),
-                        truncateForPdf(pName, 18),
-                        truncateForPdf(dName, 18),
-                        date,
-                        truncateForPdf(time, 9),
-                        truncateForPdf(sym, 18)
-                );
-
-                // If not enough space on page, create a new one
-                if (y < 70) {
-                    cs.close();
-                    page = new PDPage();
-                    doc.addPage(page);
-                    cs = new PDPageContentStream(doc, page);
-                    y = page.getMediaBox().getHeight() - margin;
-                }
-
-                cs.beginText();
-                cs.newLineAtOffset(margin, y);
-                cs.showText(row);
-                cs.endText();
-                y -= leading;
-            }
-
-            // finish and save
-            cs.close();
-            doc.save(f);
-            doc.close();
-            JOptionPane.showMessageDialog(this, "PDF saved: " + f.getAbsolutePath());
-
-        } catch (SQLException | IOException ex) {
-            ex.printStackTrace();
-            try { if (cs != null) cs.close(); } catch (IOException ignored) {}
-            try { if (doc != null) doc.close(); } catch (IOException ignored) {}
-            JOptionPane.showMessageDialog(this, "PDF export failed: " + ex.getMessage());
-        }
+        PdfReport.Column[] cols = {
+            new PdfReport.Column("ID", 45, rs -> rs.getString("appointment_id")),
+            new PdfReport.Column("Patient", 120, rs -> rs.getString("patient_name")),
+            new PdfReport.Column("Doctor", 120, rs -> rs.getString("doctor_name")),
+            new PdfReport.Column("Date", 70, DateTimeUtils::formatApptDate),
+            new PdfReport.Column("Time", 60, DateTimeUtils::formatApptTime),
+            new PdfReport.Column("Symptoms", 0, rs -> rs.getString("symptoms"))
+        };
+        runExport(f, appointmentsBusy, "SELECT COUNT(*) FROM appointments",
+                progress -> PdfReport.write(session, "Appointments Report", sql, cols, f, progress));
     }
 
-    // small util used above to keep fields short in the table
-    private String truncateForPdf(String s, int max) {
-        if (s == null) return "";
-        s = s.replaceAll("\\s+", " ").trim();
-        return s.length() <= max ? s : s.substring(0, max-1) + "…";
-    }
-    
-    
-            
     // Main for quick testing
     public static void main(String[] args) {
         SwingUtilities.invokeLater(() -> {
@@ -0,0 +1,62 @@
+package app;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import javax.swing.SwingUtilities;
+
+// In-process notifications about committed writes, so open tables can apply
+// just the changed rows instead of reloading everything. Publish from any
+// thread after the write commits; listeners are always called on the EDT.
+public class DataChangeBus {
+
+    public enum Kind { INSERT, UPDATE, DELETE, RELOAD }
+
+    public static final class Change {
+        public final String table;   // "patients", "doctors", "appointments", ...
+        public final Kind kind;
+        public final int[] ids;      // empty for RELOAD
+
+        public Change(String table, Kind kind, int... ids) {
+            this.table = table;
+            this.kind = kind;
+            this.ids = ids;
+        }
+
+        public boolean is(String t) { return table.equals(t); }
+
+        @Override
+        public String toString() { return kind + " " + table + " " + Arrays.toString(ids); }
+    }
+
+    public interface Listener {
+        void onChange(Change change);
+    }
+
+    private static final List<Listener> LISTENERS = new CopyOnWriteArrayList<>();
+
+    public static void addListener(Listener l) { LISTENERS.add(l); }
+
+    public static void removeListener(Listener l) { LISTENERS.remove(l); }
+
+    public static void publish(Change change) {
+        SwingUtilities.invokeLater(() -> {
+            for (Listener l : LISTENERS) {
+                try {
+                    l.onChange(change);
+                } catch (RuntimeException ex) {
+                    ex.printStackTrace();
+                }
+            }
+        });
+    }
+
+    public static void inserted(String table, int... ids) { publish(new Change(table, Kind.INSERT, ids)); }
+
+    public static void updated(String table, int... ids) { publish(new Change(table, Kind.UPDATE, ids)); }
+
+    public static void deleted(String table, int... ids) { publish(new Change(table, Kind.DELETE, ids)); }
+
+    // something changed that can't be described row by row (cascades, bulk imports)
+    public static void reload(String table) { publish(new Change(table, Kind.RELOAD)); }
+}
@@ -1,39 +1,132 @@
 package app;
 
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 public class DateTimeUtils {
 
+    // Formatters for storage (recommended formats)
+    public static final DateTimeFormatter STORE_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    public static final DateTimeFormatter STORE_TIME = DateTimeFormatter.ofPattern("HH:mm");
+    // how appointment times are shown / written to the legacy time column
+    public static final DateTimeFormatter DISPLAY_TIME = DateTimeFormatter.ofPattern("hh:mm a", Locale.ENGLISH);
+
+    private static final DateTimeFormatter DMY = DateTimeFormatter.ofPattern("dd-MM-yyyy");
+    private static final DateTimeFormatter MDY = DateTimeFormatter.ofPattern("MM/dd/yyyy");
+    private static final Pattern TIME = Pattern.compile("(\\d{1,2})[:.](\\d{2})(?::\\d{2})?\\s*([AaPp])?\\.?[Mm]?\\.?");
+
     // parse date stored as YYYY-MM-DD or other common formats
+    // (picks the pattern from the shape of the input instead of trying each one)
     public static LocalDate parseDate(String s) {
-        if (s == null || s.trim().isEmpty()) return null;
-        String[] patterns = {"yyyy-MM-dd", "dd-MM-yyyy", "MM/dd/yyyy"};
-        for (String p : patterns) {
-            try {
-                return LocalDate.parse(s, DateTimeFormatter.ofPattern(p));
-            } catch (DateTimeParseException e) { /* try next */ }
+        if (s == null) return null;
+        s = s.trim();
+        if (s.length() != 10) return null;
+        DateTimeFormatter f;
+        if (s.charAt(4) == '-') f = STORE_DATE;
+        else if (s.charAt(2) == '-') f = DMY;
+        else if (s.charAt(2) == '/') f = MDY;
+        else return null;
+        try {
+            return LocalDate.parse(s, f);
+        } catch (DateTimeParseException e) {
+            return null; // right shape but not a date (e.g. 2025-13-01)
         }
-        
-        try { return LocalDate.parse(s); } catch (Exception e) { return null; }
     }
 
     // parse time strings like "10:30 AM", "10:30", "15:30"
     public static LocalTime parseTime(String s) {
-        if (s == null || s.trim().isEmpty()) return null;
-        String[] patterns = {"h:mm a", "hh:mm a", "H:mm", "HH:mm", "h:mm"};
-        for (String p : patterns) {
-            try {
-                return LocalTime.parse(s, DateTimeFormatter.ofPattern(p));
-            } catch (DateTimeParseException e) { /* try next */ }
+        if (s == null) return null;
+        Matcher m = TIME.matcher(s.trim());
+        if (!m.matches()) return null;
+        int h = Integer.parseInt(m.group(1));
+        int min = Integer.parseInt(m.group(2));
+        String ampm = m.group(3);
+        if (ampm != null) {
+            if (h < 1 || h > 12) return null;
+            boolean pm = ampm.equalsIgnoreCase("p");
+            h = (h % 12) + (pm ? 12 : 0);
         }
-        // last resort try ISO
-        try { return LocalTime.parse(s); } catch (Exception e) { return null; }
+        if (h > 23 || min > 59) return null;
+        return LocalTime.of(h, min);
     }
 
-    // Formatters for storage (recommended formats)
-    public static final DateTimeFormatter STORE_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-    public static final DateTimeFormatter STORE_TIME = DateTimeFormatter.ofPattern("HH:mm");
+    // ---- canonical appointment columns: appt_day (epoch day) / appt_minute (minute of day) ----
+
+    public static Integer toMinuteOfDay(LocalTime t) {
+        return t == null ? null : t.getHour() * 60 + t.getMinute();
+    }
+
+    public static String formatDay(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).toString();
+    }
+
+    public static String formatMinute(int minuteOfDay) {
+        return LocalTime.of(minuteOfDay / 60, minuteOfDay % 60).format(DISPLAY_TIME);
+    }
+
+    // appointment date from the typed appt_day column; rows the background
+    // backfill hasn't reached yet fall back to the legacy text
+    public static String formatApptDate(java.sql.ResultSet rs) throws java.sql.SQLException {
+        long day = rs.getLong("appt_day");
+        if (!rs.wasNull()) return formatDay(day);
+        LocalDate ld = parseLegacyDate(rs.getObject("date"));
+        if (ld != null) return ld.toString();
+        String raw = rs.getString("date");
+        return raw == null ? "" : raw;
+    }
+
+    public static String formatApptTime(java.sql.ResultSet rs) throws java.sql.SQLException {
+        int minute = rs.getInt("appt_minute");
+        if (!rs.wasNull()) return formatMinute(minute);
+        String raw = rs.getString("time");
+        return raw == null ? "" : raw;
+    }
+
+    // best-effort reading of whatever older versions wrote into appointments.date:
+    // 'yyyy-MM-dd' text, other common text formats, or epoch seconds/millis from setDate()
+    public static LocalDate parseLegacyDate(Object obj) {
+        if (obj == null) return null;
+        if (obj instanceof java.sql.Date) return ((java.sql.Date) obj).toLocalDate();
+        if (obj instanceof java.sql.Timestamp) return ((java.sql.Timestamp) obj).toLocalDateTime().toLocalDate();
+        if (obj instanceof Number) return fromEpoch(((Number) obj).longValue());
+
+        String s = obj.toString().trim();
+        if (s.isEmpty()) return null;
+        if (isAllDigits(s)) {
+            try { return fromEpoch(Long.parseLong(s)); } catch (NumberFormatException e) { return null; }
+        }
+        LocalDate d = parseDate(s);
+        if (d != null) return d;
+        if (s.length() > 10) {
+            d = parseDate(s.substring(0, 10)); // 'yyyy-MM-dd HH:mm:ss' and ISO date-times
+            if (d != null) return d;
+        }
+        try {
+            return LocalDateTime.parse(s).toLocalDate();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static LocalDate fromEpoch(long v) {
+        // heuristics: if < 1e12 treat as seconds, otherwise ms
+        if (v < 1000000000000L) v = v * 1000L;
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(v), ZoneId.systemDefault()).toLocalDate();
+    }
+
+    private static boolean isAllDigits(String s) {
+        for (int i = 0; i < s.length(); i++) {
+            char ch = s.charAt(i);
+            if (ch < '0' || ch > '9') return false;
+        }
+        return true;
+    }
 }
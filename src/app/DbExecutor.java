@@ -0,0 +1,143 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import javax.swing.SwingUtilities;
+
+// Runs database work off the Swing event thread and reports back on it,
+// SwingWorker-style: work() on a pool thread, onSuccess/onError on the EDT.
+// Work is admitted through a RequestScheduler lane; BULK work has its own
+// threads, so a queued export never holds a worker that a lookup needs.
+// Neither pool queues more jobs than its lane can hold; the rest are turned
+// away with a BusyException.
+public class DbExecutor {
+
+    // a unit of background work; may throw SQLException / ValidationException
+    public interface Work<T> {
+        T run() throws Exception;
+    }
+
+    // waiting jobs bounded by the INTERACTIVE lane's capacity
+    private static final ExecutorService POOL = newPool(DBConfig.getInt("db.executor.threads", 4),
+            RequestScheduler.capacity(RequestScheduler.Lane.INTERACTIVE));
+
+    // one thread per job the BULK lane can hold (running + waiting); beyond that, rejected
+    private static final ExecutorService BULK_POOL = newBulkPool(RequestScheduler.capacity(RequestScheduler.Lane.BULK));
+
+    private static ExecutorService newPool(int threads, int queue) {
+        AtomicInteger n = new AtomicInteger();
+        ThreadPoolExecutor ex = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queue)), r -> {
+                    Thread t = new Thread(r, "db-worker-" + n.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        ex.allowCoreThreadTimeOut(true);
+        return ex;
+    }
+
+    private static ExecutorService newBulkPool(int threads) {
+        AtomicInteger n = new AtomicInteger();
+        return new ThreadPoolExecutor(0, threads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(), r -> {
+            Thread t = new Thread(r, "db-bulk-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    // interactive work (lookups, bookings, table pages)
+    public static <T> Task<T> submit(Work<T> work, Consumer<T> onSuccess, Consumer<Exception> onError) {
+        return submit(RequestScheduler.Lane.INTERACTIVE, work, onSuccess, onError);
+    }
+
+    // a full lane reaches onError as a BusyException
+    public static <T> Task<T> submit(RequestScheduler.Lane lane, Work<T> work, Consumer<T> onSuccess,
+                                     Consumer<Exception> onError) {
+        Task<T> task = new Task<>();
+        Runnable body = () -> {
+            if (task.cancelled) return;
+            T result;
+            try {
+                RequestScheduler.Permit permit = RequestScheduler.enter(lane);
+                try {
+                    if (task.cancelled) return; // cancelled while waiting for the lane
+                    result = work.run();
+                } finally {
+                    permit.close();
+                }
+            } catch (Exception ex) {
+                SwingUtilities.invokeLater(() -> task.finish(null, ex, onSuccess, onError));
+                return;
+            }
+            SwingUtilities.invokeLater(() -> task.finish(result, null, onSuccess, onError));
+        };
+        try {
+            task.future = (lane == RequestScheduler.Lane.BULK ? BULK_POOL : POOL).submit(body);
+        } catch (RejectedExecutionException ex) {
+            Exception busy = RequestScheduler.busy(lane);
+            SwingUtilities.invokeLater(() -> task.finish(null, busy, onSuccess, onError));
+        }
+        return task;
+    }
+
+    // handle for a submitted piece of work
+    public static final class Task<T> {
+        private volatile boolean cancelled = false;
+        private volatile boolean done = false;
+        private Future<?> future;
+        private final List<Runnable> finishHooks = new ArrayList<>(); // EDT only
+
+        // after cancel() neither callback runs; a statement already executing finishes in the background
+        public void cancel() {
+            if (done) return;
+            cancelled = true;
+            if (future != null) future.cancel(false);
+            SwingUtilities.invokeLater(this::runFinishHook);
+        }
+
+        public boolean isCancelled() { return cancelled; }
+
+        public boolean isDone() { return done || cancelled; }
+
+        // runs on the EDT once the task completes or is cancelled (used for busy indicators)
+        public Task<T> whenFinished(Runnable r) {
+            finishHooks.add(r);
+            if (isDone()) SwingUtilities.invokeLater(this::runFinishHook);
+            return this;
+        }
+
+        // lets long-running work bail out early
+        public void throwIfCancelled() {
+            if (cancelled) throw new CancellationException();
+        }
+
+        private void finish(T result, Exception error, Consumer<T> onSuccess, Consumer<Exception> onError) {
+            boolean wasCancelled = cancelled;
+            done = true;
+            runFinishHook();
+            if (wasCancelled) return;
+            if (error == null) {
+                if (onSuccess != null) onSuccess.accept(result);
+            } else if (!(error instanceof CancellationException) && onError != null) {
+                onError.accept(error);
+            }
+        }
+
+        private void runFinishHook() {
+            if (finishHooks.isEmpty()) return;
+            List<Runnable> hooks = new ArrayList<>(finishHooks);
+            finishHooks.clear();
+            for (Runnable r : hooks) r.run();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Adding and deleting doctor records, with the permission check next to the
+// write so every caller gets it. Call from a background thread.
+public class DoctorService {
+
+    // Returns the new doctor_id, or -1 when the row was saved but the driver returned no key.
+    public static int add(Session session, String name, String specialization, String phone)
+            throws SQLException, ValidationException {
+        session.require(Permission.MANAGE_DOCTORS);
+        name = name == null ? "" : name.trim();
+        specialization = specialization == null ? "" : specialization.trim();
+        if (name.isEmpty() || specialization.isEmpty()) throw new ValidationException("Enter name & specialization.");
+
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(
+                     "INSERT INTO doctors (name, specialization, phone) VALUES (?, ?, ?)", Statement.RETURN_GENERATED_KEYS)) {
+            pst.setString(1, name);
+            pst.setString(2, specialization);
+            pst.setString(3, phone == null ? "" : phone.trim());
+            if (pst.executeUpdate() == 0) throw new ValidationException("Failed to save doctor.");
+            try (ResultSet keys = pst.getGeneratedKeys()) {
+                if (!keys.next()) { DataChangeBus.reload("doctors"); return -1; }
+                int id = keys.getInt(1);
+                DataChangeBus.inserted("doctors", id);
+                return id;
+            }
+        }
+    }
+
+    // also removes the doctor's appointments (ON DELETE CASCADE). Returns rows deleted.
+    public static int delete(Session session, int doctorId) throws SQLException, ValidationException {
+        session.require(Permission.MANAGE_DOCTORS);
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement("DELETE FROM doctors WHERE doctor_id = ?")) {
+            pst.setInt(1, doctorId);
+            int affected = pst.executeUpdate();
+            if (affected > 0) {
+                SlotScheduler.invalidateDoctor(doctorId);
+                DataChangeBus.deleted("doctors", doctorId);
+                DataChangeBus.reload("appointments");
+            }
+            return affected;
+        }
+    }
+}
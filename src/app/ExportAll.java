@@ -0,0 +1,284 @@
+package app;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+// Exports patients, doctors, appointments and users into one ZIP with a
+// manifest.json of row counts and SHA-256 checksums. Tables are streamed into
+// temp files by a few reader threads, each on its own read connection, then
+// the files are packed. All readers see the same snapshot: their read
+// transactions are opened while a write lock is held, so no commit can land
+// between them. The connections are borrowed before the lock is taken, and
+// the lock is released as soon as the snapshots are open. Passwords are never
+// exported. Call from a background thread.
+public class ExportAll {
+
+    private static final class Table {
+        final String name;
+        final String sql;
+        final String[] columns;
+
+        Table(String name, String sql, String... columns) {
+            this.name = name;
+            this.sql = sql;
+            this.columns = columns;
+        }
+    }
+
+    private static final Table[] TABLES = {
+        new Table("patients", "SELECT patient_id, name, age, gender, phone, address FROM patients ORDER BY patient_id",
+                "patient_id", "name", "age", "gender", "phone", "address"),
+        new Table("doctors", "SELECT doctor_id, name, specialization, phone FROM doctors ORDER BY doctor_id",
+                "doctor_id", "name", "specialization", "phone"),
+        new Table("appointments", "SELECT appointment_id, patient_id, doctor_id, date, time, appt_day, appt_minute, symptoms "
+                + "FROM appointments ORDER BY appointment_id",
+                "appointment_id", "patient_id", "doctor_id", "date", "time", "appt_day", "appt_minute", "symptoms"),
+        new Table("users", "SELECT user_id, username, role, patient_ref_id FROM users ORDER BY user_id",
+                "user_id", "username", "role", "patient_ref_id")
+    };
+
+    // read connections held for the whole export; with fewer readers than tables a
+    // reader exports its tables in turn. Kept below db.pool.maxSize (the snapshot also
+    // briefly takes a writer) so bookings still get connections.
+    private static final int READERS = Math.max(1, Math.min(Math.min(TABLES.length, DBConfig.getInt("export.readers", 2)),
+            DBConfig.getInt("db.pool.maxSize", 8) - 2));
+
+    // what ended up in the archive for one table
+    public static final class Entry {
+        public final String file;
+        public final long rows;
+        public final long bytes;
+        public final String sha256;
+
+        Entry(String file, long rows, long bytes, String sha256) {
+            this.file = file;
+            this.rows = rows;
+            this.bytes = bytes;
+            this.sha256 = sha256;
+        }
+    }
+
+    // Writes the archive to zip (via zip.part, renamed when complete). progress gets
+    // the running total of rows across all tables and may cancel.
+    public static List<Entry> export(Session session, File zip, CsvExporter.Progress progress)
+            throws SQLException, IOException, ValidationException {
+        session.require(Permission.EXPORT_ALL);
+        long started = System.currentTimeMillis();
+        List<Connection> readers = openSnapshot();
+        List<Path> temps = new ArrayList<>();
+        File part = new File(zip.getAbsolutePath() + ".part");
+        AtomicInteger n = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(readers.size(), r -> {
+            Thread t = new Thread(r, "export-all-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            AtomicLong totalRows = new AtomicLong();
+            AtomicBoolean failed = new AtomicBoolean(); // one table failing stops the others
+            for (Table table : TABLES) temps.add(Files.createTempFile("export-" + table.name + "-", ".csv"));
+            Entry[] done = new Entry[TABLES.length];
+            List<Future<Object>> futures = new ArrayList<>();
+            for (int r = 0; r < readers.size(); r++) {
+                Connection c = readers.get(r);
+                int firstTable = r;
+                futures.add(pool.submit(() -> {
+                    // this reader's tables, one after another on the same snapshot
+                    for (int i = firstTable; i < TABLES.length; i += readers.size()) {
+                        done[i] = exportTable(c, TABLES[i], temps.get(i), totalRows, failed, progress);
+                    }
+                    return null;
+                }));
+            }
+            // wait for every worker before the readers are closed, keeping the first error
+            Exception first = null;
+            for (Future<Object> f : futures) {
+                try {
+                    await(f);
+                } catch (SQLException | IOException | RuntimeException ex) {
+                    failed.set(true);
+                    if (first == null || first instanceof CancellationException) first = ex;
+                }
+            }
+            if (first instanceof SQLException) throw (SQLException) first;
+            if (first instanceof IOException) throw (IOException) first;
+            if (first != null) throw (RuntimeException) first;
+            List<Entry> entries = java.util.Arrays.asList(done);
+
+            // pack; the CSVs are already on disk, so this is a sequential copy
+            try (ZipOutputStream zos = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(part), 1 << 16))) {
+                for (int i = 0; i < entries.size(); i++) {
+                    zos.putNextEntry(new ZipEntry(entries.get(i).file));
+                    Files.copy(temps.get(i), zos);
+                    zos.closeEntry();
+                }
+                zos.putNextEntry(new ZipEntry("manifest.json"));
+                zos.write(manifest(entries).getBytes(StandardCharsets.UTF_8));
+                zos.closeEntry();
+            }
+            Files.move(part.toPath(), zip.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            System.out.println("ExportAll: " + totalRows.get() + " rows in " + (System.currentTimeMillis() - started)
+                    + " ms -> " + zip.getAbsolutePath());
+            return entries;
+        } catch (SQLException | IOException | RuntimeException ex) {
+            Files.deleteIfExists(part.toPath());
+            throw ex;
+        } finally {
+            pool.shutdownNow();
+            for (Connection c : readers) closeReader(c);
+            for (Path p : temps) Files.deleteIfExists(p);
+        }
+    }
+
+    // ---- SNAPSHOT ----
+
+    // READERS read connections, all on the same snapshot. They are borrowed
+    // first, so the write lock (which stops every booking) is held only for the
+    // BEGIN/SELECT pairs and never while waiting on the pool.
+    private static List<Connection> openSnapshot() throws SQLException {
+        List<Connection> readers = new ArrayList<>();
+        try {
+            for (int i = 0; i < READERS; i++) readers.add(DBConnection.getConnection());
+            AppointmentService.inWriteTransaction(w -> {
+                for (Connection c : readers) rollback(c); // a retried attempt starts clean
+                for (Connection c : readers) {
+                    try (Statement st = c.createStatement()) {
+                        st.execute("BEGIN");
+                        // a read starts the snapshot; the writer lock guarantees none commits before the last one
+                        try (ResultSet rs = st.executeQuery("SELECT 1 FROM " + TABLES[0].name + " LIMIT 1")) {
+                            rs.next();
+                        }
+                    }
+                }
+                return null;
+            });
+            return readers;
+        } catch (ValidationException ex) {
+            for (Connection c : readers) closeReader(c);
+            throw new SQLException(ex.getMessage(), ex); // no validation happens here
+        } catch (SQLException | RuntimeException ex) {
+            for (Connection c : readers) closeReader(c);
+            throw ex;
+        }
+    }
+
+    private static void rollback(Connection c) {
+        try (Statement st = c.createStatement()) {
+            st.execute("ROLLBACK");
+        } catch (SQLException ignore) {
+            // no transaction open
+        }
+    }
+
+    private static void closeReader(Connection c) {
+        rollback(c);
+        try {
+            c.close();
+        } catch (SQLException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    // ---- ONE TABLE ----
+
+    private static Entry exportTable(Connection c, Table table, Path tmp, AtomicLong totalRows, AtomicBoolean failed,
+                                     CsvExporter.Progress progress) throws SQLException, IOException {
+        MessageDigest sha = sha256();
+        CsvExporter.Column[] cols = new CsvExporter.Column[table.columns.length];
+        for (int i = 0; i < cols.length; i++) cols[i] = CsvExporter.column(table.columns[i]);
+
+        long[] reported = new long[1];
+        CsvExporter.Progress tableProgress = new CsvExporter.Progress() {
+            @Override public void rows(long written) {
+                long total = totalRows.addAndGet(written - reported[0]);
+                reported[0] = written;
+                if (progress != null) progress.rows(total);
+            }
+            @Override public boolean cancelled() { return failed.get() || (progress != null && progress.cancelled()); }
+        };
+
+        long rows;
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery(table.sql);
+             OutputStream file = new DigestOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp), 1 << 16), sha);
+             Writer out = new BufferedWriter(new OutputStreamWriter(file, StandardCharsets.UTF_8), 1 << 20)) {
+            rows = CsvExporter.write(rs, table.columns, cols, out, tableProgress);
+        }
+        return new Entry(table.name + ".csv", rows, Files.size(tmp), hex(sha.digest()));
+    }
+
+    private static <T> T await(Future<T> f) throws SQLException, IOException {
+        try {
+            return f.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof SQLException) throw (SQLException) cause;
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IOException(cause);
+        }
+    }
+
+    // ---- MANIFEST ----
+
+    private static String manifest(List<Entry> entries) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"created\": \"").append(LocalDateTime.now().withNano(0)).append("\",\n");
+        sb.append("  \"files\": [\n");
+        for (int i = 0; i < entries.size(); i++) {
+            Entry e = entries.get(i);
+            sb.append("    {\"file\": \"").append(e.file).append("\", \"rows\": ").append(e.rows)
+              .append(", \"bytes\": ").append(e.bytes).append(", \"sha256\": \"").append(e.sha256).append("\"}")
+              .append(i < entries.size() - 1 ? ",\n" : "\n");
+        }
+        sb.append("  ]\n}\n");
+        return sb.toString();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex); // every JRE ships SHA-256
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,40 @@
+package app;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+
+// Command-line export of every table into one archive, without the UI:
+//   java -cp <classpath> app.ExportAllLauncher [archive.zip]
+public class ExportAllLauncher {
+    public static void main(String[] args) {
+        String name = args.length > 0 ? args[0]
+                : "hospital-export-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".zip";
+        File zip = new File(name);
+
+        DBConnection.initializeIfNeeded();
+
+        long[] lastPrint = new long[1];
+        CsvExporter.Progress progress = new CsvExporter.Progress() {
+            @Override public synchronized void rows(long written) {
+                long now = System.currentTimeMillis();
+                if (now - lastPrint[0] < 1000) return;
+                lastPrint[0] = now;
+                System.out.println("ExportAllLauncher: " + written + " rows...");
+            }
+            @Override public boolean cancelled() { return false; }
+        };
+
+        try {
+            List<ExportAll.Entry> entries = ExportAll.export(Session.SYSTEM, zip, progress);
+            for (ExportAll.Entry e : entries) {
+                System.out.println("  " + e.file + ": " + e.rows + " rows, " + e.bytes + " bytes, sha256 " + e.sha256);
+            }
+            System.out.println("Saved: " + zip.getAbsolutePath());
+        } catch (Exception ex) {
+            ex.printStackTrace();
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Helpers for the FTS5 tables created by SchemaMigrations v4
+// (patients_fts: name/phone/address, appointments_fts: symptoms).
+public class FullTextSearch {
+
+    // most rows a search box shows; FTS returns the newest matches first
+    public static final int MAX_RESULTS = 500;
+
+    // rowids of matching patients, newest first
+    public static final String PATIENT_IDS =
+        "SELECT rowid FROM patients_fts WHERE patients_fts MATCH ? ORDER BY rowid DESC LIMIT " + MAX_RESULTS;
+
+    // one keyset page of matching rowids: MATCH ?, rowid < ?, LIMIT ? (no MAX_RESULTS cap)
+    public static final String PATIENT_IDS_BEFORE =
+        "SELECT rowid FROM patients_fts WHERE patients_fts MATCH ? AND rowid < ? ORDER BY rowid DESC LIMIT ?";
+
+    // Turns what the user typed into a MATCH expression: every word must match
+    // as a prefix, e.g.  jo 9876  ->  "jo"* "9876"*
+    // Returns null when there is nothing searchable (caller shows everything).
+    public static String toMatchExpression(String input) {
+        List<String> tokens = tokenize(input);
+        if (tokens.isEmpty()) return null;
+        StringBuilder sb = new StringBuilder();
+        for (String t : tokens) {
+            if (sb.length() > 0) sb.append(' ');
+            // quoted, so FTS operators typed by the user (AND, NEAR, -, ...) are plain text
+            sb.append('"').append(t).append("\"*");
+        }
+        return sb.toString();
+    }
+
+    // same split as the unicode61 tokenizer: runs of letters/digits
+    static List<String> tokenize(String input) {
+        List<String> out = new ArrayList<>();
+        if (input == null) return out;
+        int start = -1;
+        for (int i = 0; i <= input.length(); i++) {
+            boolean word = i < input.length() && Character.isLetterOrDigit(input.charAt(i));
+            if (word && start < 0) start = i;
+            if (!word && start >= 0) {
+                out.add(input.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return out;
+    }
+}
@@ -3,7 +3,6 @@ package app;
 import java.sql.Connection;
 import java.sql.PreparedStatement; 
 import java.sql.ResultSet;
-import java.sql.SQLException;
 
 public class LoginForm extends javax.swing.JFrame {
 
@@ -92,7 +91,6 @@ public class LoginForm extends javax.swing.JFrame {
 
     private void btnLoginActionPerformed(java.awt.event.ActionEvent evt) {//GEN-FIRST:event_btnLoginActionPerformed
         // TODO add your handling code here:
-    try {
         String user = txtUsername.getText().trim();
         String pass = new String(txtPassword.getPassword()).trim();
 
@@ -102,38 +100,45 @@ public class LoginForm extends javax.swing.JFrame {
         }
 
         String sql = "SELECT user_id, role, patient_ref_id FROM users WHERE username = ? AND password = ?";
-        try (Connection con = DBConnection.getConnection();
-             PreparedStatement pst = con.prepareStatement(sql)) {
-
-            pst.setString(1, user);
-            pst.setString(2, pass);
-
-            try (ResultSet rs = pst.executeQuery()) {
-                if (rs.next()) {
-                    int userId = rs.getInt("user_id");
-                    String role = rs.getString("role");
-                    int patientRef = rs.getInt("patient_ref_id");
-
-                    // sets session values
-                    Session.currentUsername = user;
-                    Session.currentUserRole = role == null ? "guest" : role;
-                    Session.currentUserId = userId;
-                    Session.currentPatientId = patientRef > 0 ? patientRef : -1;
-
-                    // opens dashboard with role
-                    Dashboard dash = new Dashboard(Session.currentUserRole);
-                    dash.setVisible(true);
-                    this.dispose();
-                } else {
-                    javax.swing.JOptionPane.showMessageDialog(this, "Invalid username / password");
+
+        // query runs on a DB worker so the window stays responsive; null = no match
+        btnLogin.setEnabled(false);
+        setCursor(java.awt.Cursor.getPredefinedCursor(java.awt.Cursor.WAIT_CURSOR));
+        DbExecutor.submit(() -> {
+            try (Connection con = DBConnection.getConnection();
+                 PreparedStatement pst = con.prepareStatement(sql)) {
+
+                pst.setString(1, user);
+                pst.setString(2, pass);
+
+                try (ResultSet rs = pst.executeQuery()) {
+                    if (!rs.next()) return null;
+                    return new Object[] { rs.getInt("user_id"), rs.getString("role"), rs.getInt("patient_ref_id") };
                 }
             }
-        }
-    } catch (SQLException ex) {
-        ex.printStackTrace();
-        javax.swing.JOptionPane.showMessageDialog(this, "DB Error: " + ex.getMessage());
-    }
-
+        }, found -> {
+            if (found == null) {
+                javax.swing.JOptionPane.showMessageDialog(this, "Invalid username / password");
+                return;
+            }
+            int userId = (Integer) found[0];
+            String role = (String) found[1];
+            int patientRef = (Integer) found[2];
+
+            // the session (and its permissions) is fixed from here on
+            Session session = Session.of(userId, user, role, patientRef);
+
+            // opens dashboard for this user
+            Dashboard dash = new Dashboard(session);
+            dash.setVisible(true);
+            this.dispose();
+        }, ex -> {
+            ex.printStackTrace();
+            javax.swing.JOptionPane.showMessageDialog(this, "DB Error: " + ex.getMessage());
+        }).whenFinished(() -> {
+            btnLogin.setEnabled(true);
+            setCursor(java.awt.Cursor.getDefaultCursor());
+        });
     }//GEN-LAST:event_btnLoginActionPerformed
 
     public static void main(String args[]) {
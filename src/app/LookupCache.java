@@ -0,0 +1,165 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Patient and doctor names/phones held in memory for the booking pickers.
+// Each list is loaded once in the background on first use and then kept
+// current from DataChangeBus events, so lookups never touch the database.
+// Everything except the loading itself happens on the EDT.
+public class LookupCache {
+
+    public static final class Lookup {
+        private final String table;
+        private final String selectAll;
+        private final String selectOne;
+
+        private PrefixIndex index;                 // null until loaded
+        private final Map<Integer, String> labels = new HashMap<>();
+        private final List<Runnable> waiting = new ArrayList<>();
+        private boolean loading;
+        private boolean staleWhileLoading;          // a change arrived mid-load
+
+        private Lookup(String table, String columns, String idColumn) {
+            this.table = table;
+            this.selectAll = "SELECT " + columns + " FROM " + table;
+            this.selectOne = selectAll + " WHERE " + idColumn + " = ?";
+        }
+
+        public boolean isLoaded() { return index != null; }
+
+        // runs onReady (on the EDT) once the list is in memory
+        public void ensureLoaded(Runnable onReady) {
+            if (index != null) {
+                if (onReady != null) onReady.run();
+                return;
+            }
+            if (onReady != null) waiting.add(onReady);
+            if (!loading) load();
+        }
+
+        public List<Integer> search(String text, int limit) {
+            return index == null ? new ArrayList<>() : index.search(text, limit);
+        }
+
+        public boolean contains(int id) { return labels.containsKey(id); }
+
+        public String label(int id) { return labels.get(id); }
+
+        private void load() {
+            loading = true;
+            staleWhileLoading = false;
+            long started = System.nanoTime();
+            DbExecutor.submit(() -> {
+                Map<Integer, String> newLabels = new HashMap<>();
+                Map<Integer, String[]> terms = new HashMap<>();
+                try (Connection con = DBConnection.getConnection();
+                     PreparedStatement pst = con.prepareStatement(selectAll);
+                     ResultSet rs = pst.executeQuery()) {
+                    while (rs.next()) {
+                        int id = rs.getInt(1);
+                        newLabels.put(id, labelOf(rs));
+                        terms.put(id, termsOf(rs));
+                    }
+                }
+                return new Object[] { newLabels, PrefixIndex.build(terms) };
+            }, loaded -> {
+                loading = false;
+                @SuppressWarnings("unchecked")
+                Map<Integer, String> newLabels = (Map<Integer, String>) loaded[0];
+                labels.clear();
+                labels.putAll(newLabels);
+                index = (PrefixIndex) loaded[1];
+                System.out.println("LookupCache: " + table + " loaded (" + labels.size() + " rows, "
+                        + (System.nanoTime() - started) / 1_000_000 + " ms)");
+                if (staleWhileLoading) {
+                    load();
+                    return;
+                }
+                List<Runnable> ready = new ArrayList<>(waiting);
+                waiting.clear();
+                for (Runnable r : ready) r.run();
+            }, ex -> {
+                loading = false;
+                ex.printStackTrace();
+            });
+        }
+
+        private void onChange(DataChangeBus.Change c) {
+            if (index == null) {
+                if (loading) staleWhileLoading = true; // rows may predate the change
+                return;
+            }
+            switch (c.kind) {
+                case RELOAD:
+                    load();
+                    break;
+                case DELETE:
+                    for (int id : c.ids) {
+                        index.remove(id);
+                        labels.remove(id);
+                    }
+                    break;
+                default:
+                    for (int id : c.ids) {
+                        DbExecutor.submit(() -> fetchOne(id), row -> {
+                            if (index == null) return;
+                            if (row == null) {
+                                index.remove(id);
+                                labels.remove(id);
+                            } else {
+                                labels.put(id, (String) row[0]);
+                                index.put(id, (String[]) row[1]);
+                            }
+                        }, Exception::printStackTrace);
+                    }
+            }
+        }
+
+        private Object[] fetchOne(int id) throws SQLException {
+            try (Connection con = DBConnection.getConnection();
+                 PreparedStatement pst = con.prepareStatement(selectOne)) {
+                pst.setInt(1, id);
+                try (ResultSet rs = pst.executeQuery()) {
+                    return rs.next() ? new Object[] { labelOf(rs), termsOf(rs) } : null;
+                }
+            }
+        }
+    }
+
+    // columns: id, name, phone, extra (shown in the label: the doctor's specialization)
+    private static final Lookup PATIENTS = new Lookup("patients", "patient_id, name, phone, NULL", "patient_id");
+    private static final Lookup DOCTORS = new Lookup("doctors", "doctor_id, name, phone, specialization", "doctor_id");
+
+    static {
+        DataChangeBus.addListener(c -> {
+            if (c.is("patients")) PATIENTS.onChange(c);
+            else if (c.is("doctors")) DOCTORS.onChange(c);
+        });
+    }
+
+    public static Lookup patients() { return PATIENTS; }
+
+    public static Lookup doctors() { return DOCTORS; }
+
+    // e.g. "John Smith (#12) 98765-43210"
+    private static String labelOf(ResultSet rs) throws SQLException {
+        String name = rs.getString(2), phone = rs.getString(3), extra = rs.getString(4);
+        StringBuilder sb = new StringBuilder(name == null ? "" : name).append(" (#").append(rs.getInt(1)).append(')');
+        if (extra != null && !extra.isEmpty()) {
+            sb.append(" - ").append(extra);
+        }
+        if (phone != null && !phone.isEmpty()) sb.append(' ').append(phone);
+        return sb.toString();
+    }
+
+    private static String[] termsOf(ResultSet rs) throws SQLException {
+        return PrefixIndex.terms(rs.getString(2), rs.getString(3), String.valueOf(rs.getInt(1)));
+    }
+}
@@ -0,0 +1,127 @@
+package app;
+
+import java.util.List;
+import javax.swing.DefaultComboBoxModel;
+import javax.swing.JComboBox;
+import javax.swing.SwingUtilities;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
+import javax.swing.text.JTextComponent;
+
+// Editable combo box with type-ahead over a LookupCache list: typing a name,
+// phone or id fills the drop-down with matches from the in-memory index.
+public class LookupPicker extends JComboBox<Object> {
+
+    private static final int MAX_SUGGESTIONS = 15;
+
+    public static final class Item {
+        final int id;
+        final String label;
+
+        Item(int id, String label) {
+            this.id = id;
+            this.label = label;
+        }
+
+        @Override public String toString() { return label; }
+    }
+
+    private final LookupCache.Lookup lookup;
+    private final JTextComponent editor;
+    private boolean adjusting;
+
+    public LookupPicker(LookupCache.Lookup lookup) {
+        this.lookup = lookup;
+        setEditable(true);
+        setPrototypeDisplayValue("Xxxxxxxxxxxxxxxxxxxxxxxx (#00000) 00000-00000");
+        editor = (JTextComponent) getEditor().getEditorComponent();
+        editor.getDocument().addDocumentListener(new DocumentListener() {
+            @Override public void insertUpdate(DocumentEvent e) { textChanged(); }
+            @Override public void removeUpdate(DocumentEvent e) { textChanged(); }
+            @Override public void changedUpdate(DocumentEvent e) { }
+        });
+        // warm the cache as soon as the user starts on this field
+        editor.addFocusListener(new java.awt.event.FocusAdapter() {
+            @Override public void focusGained(java.awt.event.FocusEvent e) { lookup.ensureLoaded(null); }
+        });
+    }
+
+    // id of the chosen entry: a picked suggestion, a typed id, or the only match; -1 if none
+    public int getSelectedId() {
+        Object sel = getSelectedItem();
+        String text = editor.getText().trim();
+        if (sel instanceof Item && ((Item) sel).label.equals(text)) return ((Item) sel).id;
+        try {
+            int id = Integer.parseInt(text);
+            if (lookup.contains(id)) return id;
+        } catch (NumberFormatException ignore) {}
+        List<Integer> hits = lookup.search(text, 2);
+        return hits.size() == 1 ? hits.get(0) : -1;
+    }
+
+    // picks an entry chosen elsewhere (e.g. from a search dialog)
+    public void select(int id, String label) {
+        adjusting = true;
+        try {
+            String known = lookup.isLoaded() ? lookup.label(id) : null;
+            setSelectedItem(new Item(id, known != null ? known : label));
+        } finally {
+            adjusting = false;
+        }
+    }
+
+    // shows a fixed, non-searchable entry (e.g. the logged-in patient)
+    public void setFixed(int id, String label) {
+        adjusting = true;
+        try {
+            setSelectedItem(new Item(id, label));
+        } finally {
+            adjusting = false;
+        }
+        setEnabled(false);
+    }
+
+    public void clear() {
+        adjusting = true;
+        try {
+            setModel(new DefaultComboBoxModel<>());
+            editor.setText("");
+        } finally {
+            adjusting = false;
+        }
+    }
+
+    private void textChanged() {
+        // the document can't be modified from inside its own listener
+        if (!adjusting) SwingUtilities.invokeLater(this::updateSuggestions);
+    }
+
+    private void updateSuggestions() {
+        String text = editor.getText();
+        Object sel = getSelectedItem();
+        if (sel instanceof Item && ((Item) sel).label.equals(text)) return; // just picked from the list
+        if (!lookup.isLoaded()) {
+            lookup.ensureLoaded(this::updateSuggestions);
+            return;
+        }
+
+        adjusting = true;
+        try {
+            DefaultComboBoxModel<Object> m = new DefaultComboBoxModel<>();
+            for (int id : lookup.search(text, MAX_SUGGESTIONS)) m.addElement(new Item(id, lookup.label(id)));
+            m.setSelectedItem(text); // keep what was typed, don't jump to the first suggestion
+            int caret = editor.getCaretPosition();
+            setModel(m);
+            editor.setText(text);
+            editor.setCaretPosition(Math.min(caret, text.length()));
+            if (m.getSize() > 0 && editor.isFocusOwner()) {
+                hidePopup(); // re-open so the popup resizes to the new list
+                showPopup();
+            } else {
+                hidePopup();
+            }
+        } finally {
+            adjusting = false;
+        }
+    }
+}
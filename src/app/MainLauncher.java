@@ -14,6 +14,18 @@ public class MainLauncher {
         DBConnection.initializeIfNeeded();
         
         DBSeed.seedIfNeeded();
+
+        // converts appointments stored before the typed date columns existed
+        AppointmentBackfill.startInBackground();
+
+        // optional: serve the JSON API from this process too (api.enabled=true)
+        if (Boolean.parseBoolean(DBConfig.get("api.enabled", "false"))) {
+            try {
+                ApiServer.start(DBConfig.getInt("api.port", 8085));
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        }
         
         // Starts the app on the Event Dispatch Thread
         SwingUtilities.invokeLater(() -> {
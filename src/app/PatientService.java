@@ -0,0 +1,111 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Creating and deleting patient records and patient logins, shared by the Add Patient form and the HTTP API
+// so both apply the same checks. Call from a background thread.
+public class PatientService {
+
+    // ageText as typed; linkUserId optional (users.user_id to point at the new
+    // patient, ignored if not a number). Returns the new patient_id, or -1 when
+    // the row was saved but the driver returned no key.
+    public static int add(Session session, String name, String ageText, String gender, String phone, String address,
+                          String linkUserId) throws SQLException, ValidationException {
+        session.require(Permission.MANAGE_PATIENTS);
+        name = name == null ? "" : name.trim();
+        ageText = ageText == null ? "" : ageText.trim();
+        if (name.isEmpty() || ageText.isEmpty()) throw new ValidationException("Please enter Name and Age.");
+        int age;
+        try {
+            age = Integer.parseInt(ageText);
+        } catch (NumberFormatException ex) {
+            throw new ValidationException("Age must be a number.");
+        }
+
+        String sql = "INSERT INTO patients (name, age, gender, phone, address) VALUES (?, ?, ?, ?, ?)";
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            pst.setString(1, name);
+            pst.setInt(2, age);
+            pst.setString(3, gender);
+            pst.setString(4, phone == null ? "" : phone.trim());
+            pst.setString(5, address == null ? "" : address.trim());
+
+            int affected = pst.executeUpdate();
+            if (affected == 0) throw new ValidationException("Failed to save patient.");
+
+            try (ResultSet keys = pst.getGeneratedKeys()) {
+                if (!keys.next()) { DataChangeBus.reload("patients"); return -1; }
+                int newPatientId = keys.getInt(1);
+                if (linkUserId != null && !linkUserId.trim().isEmpty()) {
+                    try {
+                        int userId = Integer.parseInt(linkUserId.trim());
+                        try (PreparedStatement pst2 = con.prepareStatement(
+                                "UPDATE users SET patient_ref_id = ? WHERE user_id = ?")) {
+                            pst2.setInt(1, newPatientId);
+                            pst2.setInt(2, userId);
+                            pst2.executeUpdate();
+                        }
+                    } catch (NumberFormatException ex) {
+                        // ignore invalid user id input
+                    }
+                }
+                DataChangeBus.inserted("patients", newPatientId);
+                return newPatientId;
+            }
+        }
+    }
+
+    // a 'patient' login for an existing patient record. Returns false if nothing was inserted.
+    public static boolean createLogin(Session session, int patientId, String username, String password)
+            throws SQLException, ValidationException {
+        session.require(Permission.CREATE_PATIENT_USERS);
+        username = username == null ? "" : username.trim();
+        password = password == null ? "" : password.trim();
+        if (username.isEmpty() || password.isEmpty()) throw new ValidationException("All fields required.");
+
+        try (Connection con = DBConnection.getConnection()) {
+            try (PreparedStatement pst = con.prepareStatement("SELECT COUNT(*) FROM patients WHERE patient_id = ?")) {
+                pst.setInt(1, patientId);
+                try (ResultSet rs = pst.executeQuery()) {
+                    rs.next();
+                    if (rs.getInt(1) == 0) throw new ValidationException("Patient ID does not exist. Create patient first.");
+                }
+            }
+            try (PreparedStatement pst = con.prepareStatement("SELECT COUNT(*) FROM users WHERE username = ?")) {
+                pst.setString(1, username);
+                try (ResultSet rs = pst.executeQuery()) {
+                    rs.next();
+                    if (rs.getInt(1) > 0) throw new ValidationException("Username already taken. Choose another.");
+                }
+            }
+            try (PreparedStatement pst = con.prepareStatement(
+                    "INSERT INTO users (username, password, role, patient_ref_id) VALUES (?, ?, 'patient', ?)")) {
+                pst.setString(1, username);
+                pst.setString(2, password);
+                pst.setInt(3, patientId);
+                return pst.executeUpdate() > 0;
+            }
+        }
+    }
+
+    // also removes the patient's appointments (ON DELETE CASCADE). Returns rows deleted.
+    public static int delete(Session session, int patientId) throws SQLException, ValidationException {
+        session.require(Permission.MANAGE_PATIENTS);
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement("DELETE FROM patients WHERE patient_id = ?")) {
+            pst.setInt(1, patientId);
+            int affected = pst.executeUpdate();
+            if (affected > 0) {
+                SlotScheduler.invalidateAll(); // their appointments are gone from every doctor's days
+                DataChangeBus.deleted("patients", patientId);
+                DataChangeBus.reload("appointments");
+            }
+            return affected;
+        }
+    }
+}
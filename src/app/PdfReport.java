@@ -0,0 +1,234 @@
+package app;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.CancellationException;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDFont;
+import org.apache.pdfbox.pdmodel.font.PDType0Font;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+
+// Tabular PDF report streamed from a query. Rows go onto the current page as
+// they are read; page content is buffered in PDFBox's temp-file scratch
+// storage instead of the heap, so page count is bounded by disk, not memory.
+// Columns have fixed widths in points and cells are cut to the measured text
+// width. The bundled Inter font is embedded once per document (Helvetica if
+// it can't be loaded). Call from a background thread.
+public class PdfReport {
+
+    private static final String FONT_RESOURCE = "/app/resources/Inter-Regular.ttf";
+    private static final float MARGIN = 40;
+    private static final float TITLE_SIZE = 16;
+    private static final float HEADER_SIZE = 10;
+    private static final float BODY_SIZE = 9;
+    private static final float LEADING = 14;
+    private static final float CELL_PAD = 4;
+    private static final int PROGRESS_EVERY = 1_000;
+
+    // reads one cell of the current row
+    public interface Field {
+        String value(ResultSet rs) throws SQLException;
+    }
+
+    public static final class Column {
+        final String title;
+        final float width; // points; the last column takes whatever is left
+        final Field field;
+
+        public Column(String title, float width, Field field) {
+            this.title = title;
+            this.width = width;
+            this.field = field;
+        }
+    }
+
+    // Writes to f.part and renames it over f when complete. Returns the number of rows.
+    public static long write(Session session, String title, String sql, Column[] columns, File f,
+                             CsvExporter.Progress progress) throws SQLException, IOException, ValidationException {
+        session.require(Permission.EXPORT);
+        File part = new File(f.getAbsolutePath() + ".part");
+        long rows;
+        try (Connection con = DBConnection.getConnection();
+             PreparedStatement pst = con.prepareStatement(sql);
+             ResultSet rs = pst.executeQuery();
+             PDDocument doc = new PDDocument(MemoryUsageSetting.setupTempFileOnly())) {
+            PageWriter w = new PageWriter(doc, title, columns);
+            rows = w.writeRows(rs, progress);
+            w.finish();
+            doc.save(part);
+            System.out.println("PdfReport: " + rows + " rows, " + doc.getNumberOfPages() + " pages -> " + f.getAbsolutePath());
+        } catch (SQLException | IOException | RuntimeException ex) {
+            Files.deleteIfExists(part.toPath());
+            throw ex;
+        }
+        Files.move(part.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        return rows;
+    }
+
+    // ---- PAGE WRITER ----
+
+    private static final class PageWriter {
+        private final PDDocument doc;
+        private final String title;
+        private final Column[] columns;
+        private final float[] x;      // left edge of each column
+        private final float[] width;  // usable text width of each column
+        private final PDFont font, bold;
+        private final StringBuilder clean = new StringBuilder(64);
+
+        private PDPageContentStream cs;
+        private float y;
+        private int pageNo;
+
+        PageWriter(PDDocument doc, String title, Column[] columns) throws IOException {
+            this.doc = doc;
+            this.title = title;
+            this.columns = columns;
+            this.font = loadFont(doc);
+            this.bold = (font instanceof PDType0Font) ? font : PDType1Font.HELVETICA_BOLD;
+
+            float pageWidth = new PDPage().getMediaBox().getWidth();
+            x = new float[columns.length];
+            width = new float[columns.length];
+            float pos = MARGIN;
+            for (int i = 0; i < columns.length; i++) {
+                x[i] = pos;
+                float w = (i == columns.length - 1) ? pageWidth - MARGIN - pos : columns[i].width;
+                width[i] = Math.max(0, w - CELL_PAD);
+                pos += w;
+            }
+        }
+
+        long writeRows(ResultSet rs, CsvExporter.Progress progress) throws SQLException, IOException {
+            newPage();
+            long n = 0;
+            String[] cells = new String[columns.length];
+            while (rs.next()) {
+                for (int i = 0; i < columns.length; i++) cells[i] = columns[i].field.value(rs);
+                if (y < MARGIN + LEADING) newPage();
+                cs.setFont(font, BODY_SIZE);
+                for (int i = 0; i < columns.length; i++) text(x[i], y, fit(cells[i], font, BODY_SIZE, width[i]));
+                y -= LEADING;
+                if (++n % PROGRESS_EVERY == 0 && progress != null) {
+                    if (progress.cancelled()) throw new CancellationException();
+                    progress.rows(n);
+                }
+            }
+            if (progress != null) progress.rows(n);
+            return n;
+        }
+
+        void finish() throws IOException {
+            if (cs != null) cs.close();
+            cs = null;
+        }
+
+        // closes the current page and starts the next with the column header
+        private void newPage() throws IOException {
+            finish();
+            PDPage page = new PDPage();
+            doc.addPage(page);
+            cs = new PDPageContentStream(doc, page);
+            pageNo++;
+            y = page.getMediaBox().getHeight() - MARGIN;
+
+            if (pageNo == 1) {
+                cs.setFont(bold, TITLE_SIZE);
+                text(MARGIN, y, title);
+                y -= LEADING + 6;
+                cs.setFont(font, BODY_SIZE);
+                text(MARGIN, y, "Generated " + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")));
+                y -= LEADING + 4;
+            }
+            cs.setFont(font, BODY_SIZE);
+            text(MARGIN, MARGIN / 2, "Page " + pageNo);
+
+            cs.setFont(bold, HEADER_SIZE);
+            for (int i = 0; i < columns.length; i++) text(x[i], y, fit(columns[i].title, bold, HEADER_SIZE, width[i]));
+            y -= 4;
+            cs.moveTo(MARGIN, y);
+            cs.lineTo(x[x.length - 1] + width[width.length - 1] + CELL_PAD, y);
+            cs.stroke();
+            y -= LEADING;
+        }
+
+        private void text(float tx, float ty, String s) throws IOException {
+            if (s.isEmpty()) return;
+            cs.beginText();
+            cs.newLineAtOffset(tx, ty);
+            cs.showText(s);
+            cs.endText();
+        }
+
+        // one line, whitespace collapsed, cut with an ellipsis to fit maxWidth points
+        private String fit(String s, PDFont f, float size, float maxWidth) throws IOException {
+            if (s == null || s.isEmpty()) return "";
+            clean.setLength(0);
+            boolean space = false;
+            for (int i = 0; i < s.length(); i++) {
+                char ch = s.charAt(i);
+                if (Character.isWhitespace(ch)) {
+                    space = clean.length() > 0;
+                } else {
+                    if (space) clean.append(' ');
+                    space = false;
+                    clean.append(ch);
+                }
+            }
+            String line = encodable(clean.toString(), f);
+            float scale = size / 1000f;
+            if (f.getStringWidth(line) * scale <= maxWidth) return line;
+
+            float ellipsis = f.getStringWidth("…") * scale;
+            int end = line.length();
+            while (end > 0 && f.getStringWidth(line.substring(0, end)) * scale + ellipsis > maxWidth) {
+                end = Math.max(0, end - Math.max(1, (end - 1) / 8)); // big steps first, then one at a time
+            }
+            return end == 0 ? "" : line.substring(0, end) + "…";
+        }
+
+        // replaces characters the font has no glyph for (showText would throw on them)
+        private static String encodable(String s, PDFont f) throws IOException {
+            try {
+                f.getStringWidth(s);
+                return s;
+            } catch (IllegalArgumentException ex) {
+                StringBuilder sb = new StringBuilder(s.length());
+                for (int i = 0; i < s.length(); ) {
+                    int cp = s.codePointAt(i);
+                    String one = new String(Character.toChars(cp));
+                    try {
+                        f.getStringWidth(one);
+                        sb.append(one);
+                    } catch (IllegalArgumentException bad) {
+                        sb.append('?');
+                    }
+                    i += Character.charCount(cp);
+                }
+                return sb.toString();
+            }
+        }
+
+        private static PDFont loadFont(PDDocument doc) {
+            try (InputStream in = PdfReport.class.getResourceAsStream(FONT_RESOURCE)) {
+                if (in != null) return PDType0Font.load(doc, in); // subset-embedded when saved
+                System.err.println("Font resource not found: " + FONT_RESOURCE);
+            } catch (IOException ex) {
+                ex.printStackTrace();
+            }
+            return PDType1Font.HELVETICA;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package app;
+
+// What a signed-in user may do. Roles map to a fixed set of these in
+// Session; screens and services check permissions, never role names.
+public enum Permission {
+    VIEW_PATIENTS,
+    MANAGE_PATIENTS,        // add / edit / delete patient records
+    CREATE_PATIENT_USERS,   // patient logins
+    VIEW_DOCTORS,
+    MANAGE_DOCTORS,
+    BOOK_ANY_PATIENT,       // book, move and cancel for anyone
+    BOOK_OWN,               // book, move and cancel only for the session's own patient record
+    VIEW_ALL_APPOINTMENTS,
+    VIEW_OWN_APPOINTMENTS,
+    MANAGE_WAITLIST,
+    VIEW_CALENDAR,
+    EXPORT,                 // CSV / PDF exports and change feeds
+    EXPORT_ALL,             // the whole-database archive, which includes users
+    IMPORT,
+    IMPORT_DOCTORS
+}
@@ -0,0 +1,156 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// In-memory prefix index from search terms (lower-cased words) to int ids.
+// Terms live in one sorted array, so a prefix lookup is a binary search for
+// the first key >= prefix followed by a scan while keys still start with it.
+// Not thread-safe: LookupCache only touches it on the EDT once built.
+public class PrefixIndex {
+
+    private String[] keys;
+    private int[] ids;
+    private int size;
+    private final Map<Integer, String[]> termsById = new HashMap<>();
+
+    public PrefixIndex() {
+        keys = new String[16];
+        ids = new int[16];
+    }
+
+    // bulk build: one sort instead of one array insert per term
+    public static PrefixIndex build(Map<Integer, String[]> termsById) {
+        PrefixIndex ix = new PrefixIndex();
+        int total = 0;
+        for (String[] t : termsById.values()) total += t.length;
+
+        Integer[] order = new Integer[total];
+        String[] k = new String[total];
+        int[] v = new int[total];
+        int n = 0;
+        for (Map.Entry<Integer, String[]> e : termsById.entrySet()) {
+            for (String term : e.getValue()) {
+                k[n] = term;
+                v[n] = e.getKey();
+                order[n] = n;
+                n++;
+            }
+            ix.termsById.put(e.getKey(), e.getValue());
+        }
+        Arrays.sort(order, (a, b) -> k[a].compareTo(k[b]));
+
+        ix.keys = new String[Math.max(16, total)];
+        ix.ids = new int[Math.max(16, total)];
+        for (int i = 0; i < total; i++) {
+            ix.keys[i] = k[order[i]];
+            ix.ids[i] = v[order[i]];
+        }
+        ix.size = total;
+        return ix;
+    }
+
+    // splits text into index terms; digits-only runs are also joined so a
+    // phone like 98765-43210 can be found by typing 9876543210
+    public static String[] terms(String... texts) {
+        Set<String> out = new LinkedHashSet<>();
+        for (String text : texts) {
+            List<String> words = FullTextSearch.tokenize(text);
+            out.addAll(words);
+            if (words.size() > 1) {
+                StringBuilder digits = new StringBuilder();
+                for (String w : words) {
+                    if (!w.chars().allMatch(Character::isDigit)) { digits.setLength(0); break; }
+                    digits.append(w);
+                }
+                if (digits.length() > 0) out.add(digits.toString());
+            }
+        }
+        return out.toArray(new String[0]);
+    }
+
+    public boolean contains(int id) {
+        return termsById.containsKey(id);
+    }
+
+    // adds or replaces the terms for id
+    public void put(int id, String[] terms) {
+        remove(id);
+        termsById.put(id, terms);
+        for (String t : terms) insert(t, id);
+    }
+
+    public void remove(int id) {
+        String[] old = termsById.remove(id);
+        if (old == null) return;
+        for (String t : old) {
+            for (int i = lowerBound(t); i < size && keys[i].equals(t); i++) {
+                if (ids[i] == id) {
+                    System.arraycopy(keys, i + 1, keys, i, size - i - 1);
+                    System.arraycopy(ids, i + 1, ids, i, size - i - 1);
+                    keys[--size] = null;
+                    break;
+                }
+            }
+        }
+    }
+
+    // ids whose terms start with every word of the query (up to limit, no duplicates)
+    public List<Integer> search(String query, int limit) {
+        List<String> words = FullTextSearch.tokenize(query);
+        List<Integer> out = new ArrayList<>();
+        if (words.isEmpty()) return out;
+
+        // scan the first word's range, check the remaining words per candidate
+        String first = words.get(0);
+        Set<Integer> seen = new LinkedHashSet<>();
+        for (int i = lowerBound(first); i < size && keys[i].startsWith(first); i++) {
+            int id = ids[i];
+            if (!seen.add(id)) continue;
+            if (matchesAll(termsById.get(id), words)) {
+                out.add(id);
+                if (out.size() >= limit) break;
+            }
+        }
+        return out;
+    }
+
+    private static boolean matchesAll(String[] terms, List<String> words) {
+        for (int w = 1; w < words.size(); w++) {
+            boolean hit = false;
+            for (String t : terms) {
+                if (t.startsWith(words.get(w))) { hit = true; break; }
+            }
+            if (!hit) return false;
+        }
+        return true;
+    }
+
+    private void insert(String term, int id) {
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size * 2);
+            ids = Arrays.copyOf(ids, size * 2);
+        }
+        int at = lowerBound(term);
+        System.arraycopy(keys, at, keys, at + 1, size - at);
+        System.arraycopy(ids, at, ids, at + 1, size - at);
+        keys[at] = term;
+        ids[at] = id;
+        size++;
+    }
+
+    // first position whose key is >= s
+    private int lowerBound(String s) {
+        int lo = 0, hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keys[mid].compareTo(s) < 0) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+}
@@ -0,0 +1,51 @@
+package app;
+
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+
+// "Every N days/weeks/months" until an end date or for a number of
+// occurrences, whichever is given (count wins if both are).
+public class Recurrence {
+
+    // upper bound on one series, so a typo can't book years of slots
+    public static final int MAX_OCCURRENCES = 366;
+
+    public final int every;
+    public final ChronoUnit unit;     // DAYS, WEEKS or MONTHS
+    public final LocalDate until;     // inclusive, or null
+    public final int count;           // 0 = use until
+
+    public Recurrence(int every, ChronoUnit unit, LocalDate until, int count) {
+        if (every < 1) throw new IllegalArgumentException("every must be >= 1");
+        if (unit != ChronoUnit.DAYS && unit != ChronoUnit.WEEKS && unit != ChronoUnit.MONTHS) {
+            throw new IllegalArgumentException("unsupported unit " + unit);
+        }
+        if (until == null && count <= 0) throw new IllegalArgumentException("need an end date or a count");
+        this.every = every;
+        this.unit = unit;
+        this.until = until;
+        this.count = count;
+    }
+
+    // dates of the series starting at first (first included)
+    public List<LocalDate> dates(LocalDate first) {
+        List<LocalDate> out = new ArrayList<>();
+        int limit = count > 0 ? Math.min(count, MAX_OCCURRENCES) : MAX_OCCURRENCES;
+        for (int i = 0; out.size() < limit; i++) {
+            // step from the first date each time so month-ends don't drift (Jan 31 -> Feb 28 -> Mar 31)
+            LocalDate d = first.plus((long) i * every, unit);
+            if (count <= 0 && d.isAfter(until)) break;
+            out.add(d);
+        }
+        return out;
+    }
+
+    @Override
+    public String toString() {
+        String u = unit.toString().toLowerCase();
+        return "every " + every + " " + (every == 1 ? u.substring(0, u.length() - 1) : u)
+                + (count > 0 ? ", " + count + " times" : " until " + until);
+    }
+}
@@ -0,0 +1,134 @@
+package app;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Admission control in front of the database. Work enters one of two lanes:
+// INTERACTIVE (bookings, lookups, screens, API calls) and BULK (exports,
+// imports, printed reports). Each lane has its own concurrency limit and a
+// bounded number of waiters; when both are used up the caller gets a
+// BusyException at once instead of joining an ever-growing queue. Keeping
+// BULK small (one job at a time by default) leaves connections and disk
+// bandwidth for bookings while a long export runs. Limits apply within one
+// process; separate launcher processes each have their own.
+public class RequestScheduler {
+
+    // in priority order: work already admitted to a lane may run lower-priority work inline
+    public enum Lane { INTERACTIVE, BULK }
+
+    private static final class Gate {
+        final Lane lane;
+        final int maxRunning;
+        final int maxQueued;
+        final long maxWaitMs;     // 0 = wait until a slot frees
+        final Semaphore running;
+        final AtomicInteger queued = new AtomicInteger();
+        final AtomicLong rejected = new AtomicLong(); // since startup; shown by stats()
+
+        Gate(Lane lane, int maxRunning, int maxQueued, long maxWaitMs) {
+            this.lane = lane;
+            this.maxRunning = Math.max(1, maxRunning);
+            this.maxQueued = Math.max(0, maxQueued);
+            this.maxWaitMs = Math.max(0, maxWaitMs);
+            this.running = new Semaphore(this.maxRunning, true); // FIFO among waiters
+        }
+    }
+
+    // by default no more than the UI has workers (db.executor.threads) or the pool has connections
+    private static final Gate INTERACTIVE = new Gate(Lane.INTERACTIVE,
+            DBConfig.getInt("scheduler.interactive.maxConcurrent",
+                    Math.min(DBConfig.getInt("db.executor.threads", 4), DBConfig.getInt("db.pool.maxSize", 8))),
+            DBConfig.getInt("scheduler.interactive.queue", 200),
+            DBConfig.getLong("scheduler.interactive.maxWaitMs", 2000));
+
+    private static final Gate BULK = new Gate(Lane.BULK,
+            DBConfig.getInt("scheduler.bulk.maxConcurrent", 1),
+            DBConfig.getInt("scheduler.bulk.queue", 2),
+            DBConfig.getLong("scheduler.bulk.maxWaitMs", 0));
+
+    // the highest-priority lane this thread already holds, so nested work doesn't wait on itself
+    private static final ThreadLocal<Lane> HELD = new ThreadLocal<>();
+
+    // released by close(), in a finally block
+    public static final class Permit implements AutoCloseable {
+        private final Gate gate; // null = nested, nothing to release
+        private final Lane outer; // what this thread held before, restored on close
+        private boolean closed;
+
+        private Permit(Gate gate, Lane outer) {
+            this.gate = gate;
+            this.outer = outer;
+        }
+
+        @Override
+        public void close() {
+            if (closed || gate == null) return;
+            closed = true;
+            if (outer == null) HELD.remove(); else HELD.set(outer);
+            gate.running.release();
+        }
+    }
+
+    // Waits for a slot in lane, or throws BusyException when the lane's
+    // waiting room is full or the wait times out. A thread that already holds
+    // lane, or a higher-priority one, passes straight through.
+    public static Permit enter(Lane lane) throws BusyException {
+        Lane held = HELD.get();
+        if (held != null && held.ordinal() <= lane.ordinal()) return new Permit(null, held);
+        Gate g = lane == Lane.BULK ? BULK : INTERACTIVE;
+        if (!g.running.tryAcquire()) {
+            if (g.queued.incrementAndGet() > g.maxQueued) {
+                g.queued.decrementAndGet();
+                throw busy(g);
+            }
+            try {
+                boolean got;
+                if (g.maxWaitMs == 0) {
+                    g.running.acquire();
+                    got = true;
+                } else {
+                    got = g.running.tryAcquire(g.maxWaitMs, TimeUnit.MILLISECONDS);
+                }
+                if (!got) throw busy(g);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw busy(g);
+            } finally {
+                g.queued.decrementAndGet();
+            }
+        }
+        HELD.set(lane);
+        return new Permit(g, held);
+    }
+
+    // most jobs that can be running or waiting in lane at once
+    public static int capacity(Lane lane) {
+        Gate g = lane == Lane.BULK ? BULK : INTERACTIVE;
+        return g.maxRunning + g.maxQueued;
+    }
+
+    // e.g. "INTERACTIVE 3/4 running, 0 waiting, 0 rejected; BULK 1/1 running, 2 waiting, 5 rejected"
+    public static String stats() {
+        return describe(INTERACTIVE) + "; " + describe(BULK);
+    }
+
+    private static String describe(Gate g) {
+        return g.lane + " " + (g.maxRunning - g.running.availablePermits()) + "/" + g.maxRunning + " running, "
+             + g.queued.get() + " waiting, " + g.rejected.get() + " rejected";
+    }
+
+    // for work turned away before it reached enter(), e.g. by a full executor queue
+    static BusyException busy(Lane lane) {
+        return busy(lane == Lane.BULK ? BULK : INTERACTIVE);
+    }
+
+    // counted, not logged: rejections come in bursts exactly when the system is overloaded
+    private static BusyException busy(Gate g) {
+        g.rejected.incrementAndGet();
+        return new BusyException(g.lane == Lane.BULK
+                ? "Other exports or imports are already running. Try again when they finish."
+                : "The system is busy right now. Please try again in a moment.");
+    }
+}
@@ -0,0 +1,276 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+// Ordered, versioned schema changes. Each migration runs in its own
+// write transaction and is recorded in schema_version; never edit a
+// migration once shipped, add a new one instead.
+public class SchemaMigrations {
+
+    // a migration body; runs inside the migration's transaction
+    interface Step {
+        void apply(Connection c) throws SQLException;
+    }
+
+    private static final class Migration {
+        final int version;
+        final String description;
+        final Step step;
+
+        Migration(int version, String description, Step step) {
+            this.version = version;
+            this.description = description;
+            this.step = step;
+        }
+    }
+
+    // trigger bodies for migration 7 (new.* = row being counted in, old.* = row counted out)
+    private static final String STATS_ADD =
+        "INSERT INTO appointment_day_stats (doctor_id, appt_day, appt_count, first_minute, last_minute) "
+        + "VALUES (new.doctor_id, new.appt_day, 1, new.appt_minute, new.appt_minute) "
+        + "ON CONFLICT (doctor_id, appt_day) DO UPDATE SET appt_count = appt_count + 1, "
+        + "first_minute = (SELECT MIN(appt_minute) FROM appointments WHERE doctor_id = new.doctor_id AND appt_day = new.appt_day), "
+        + "last_minute = (SELECT MAX(appt_minute) FROM appointments WHERE doctor_id = new.doctor_id AND appt_day = new.appt_day);";
+
+    private static final String STATS_REMOVE =
+        "UPDATE appointment_day_stats SET appt_count = appt_count - 1, "
+        + "first_minute = (SELECT MIN(appt_minute) FROM appointments WHERE doctor_id = old.doctor_id AND appt_day = old.appt_day), "
+        + "last_minute = (SELECT MAX(appt_minute) FROM appointments WHERE doctor_id = old.doctor_id AND appt_day = old.appt_day) "
+        + "WHERE doctor_id = old.doctor_id AND appt_day = old.appt_day; "
+        + "DELETE FROM appointment_day_stats WHERE doctor_id = old.doctor_id AND appt_day = old.appt_day AND appt_count <= 0;";
+
+    private static final List<Migration> MIGRATIONS = new ArrayList<>();
+
+    static {
+        // 1: original tables (IF NOT EXISTS so databases created before migrations adopt cleanly)
+        add(1, "base tables",
+            "CREATE TABLE IF NOT EXISTS patients ("
+                + "patient_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "name TEXT NOT NULL, age INTEGER, gender TEXT, phone TEXT, address TEXT)",
+            "CREATE TABLE IF NOT EXISTS doctors ("
+                + "doctor_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "name TEXT NOT NULL, specialization TEXT, phone TEXT)",
+            "CREATE TABLE IF NOT EXISTS appointments ("
+                + "appointment_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "patient_id INTEGER NOT NULL, doctor_id INTEGER NOT NULL, "
+                + "date TEXT NOT NULL, time TEXT, symptoms TEXT, "
+                + "FOREIGN KEY(patient_id) REFERENCES patients(patient_id) ON DELETE CASCADE, "
+                + "FOREIGN KEY(doctor_id) REFERENCES doctors(doctor_id) ON DELETE CASCADE)",
+            "CREATE TABLE IF NOT EXISTS users ("
+                + "user_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "username TEXT UNIQUE NOT NULL, password TEXT NOT NULL, "
+                + "role TEXT NOT NULL, patient_ref_id INTEGER)");
+
+        // 2: indexes for the appointment joins, per-patient lookups and login
+        add(2, "hot-path indexes",
+            "CREATE INDEX IF NOT EXISTS idx_appointments_doctor_date ON appointments(doctor_id, date)",
+            "CREATE INDEX IF NOT EXISTS idx_appointments_patient ON appointments(patient_id)",
+            // covering index: the login query is answered from the index alone
+            "CREATE INDEX IF NOT EXISTS idx_users_login ON users(username, password, role, patient_ref_id)");
+
+        // 3: typed appointment date/time. appt_day = LocalDate.toEpochDay(), appt_minute = minutes
+        //    since midnight. Existing rows are converted by AppointmentBackfill in the background.
+        add(3, "typed appointment date/time",
+            "ALTER TABLE appointments ADD COLUMN appt_day INTEGER",
+            "ALTER TABLE appointments ADD COLUMN appt_minute INTEGER",
+            "DROP INDEX IF EXISTS idx_appointments_doctor_date",
+            "CREATE INDEX IF NOT EXISTS idx_appointments_doctor_day ON appointments(doctor_id, appt_day, appt_minute)",
+            "CREATE INDEX IF NOT EXISTS idx_appointments_day ON appointments(appt_day)");
+
+        // 4: full-text search. External-content FTS5 tables (no second copy of the text),
+        //    kept in sync by triggers; prefix='2 3' makes short type-ahead prefixes cheap.
+        add(4, "full-text search",
+            "CREATE VIRTUAL TABLE IF NOT EXISTS patients_fts USING fts5("
+                + "name, phone, address, content='patients', content_rowid='patient_id', prefix='2 3')",
+            "CREATE TRIGGER IF NOT EXISTS patients_fts_ai AFTER INSERT ON patients BEGIN "
+                + "INSERT INTO patients_fts(rowid, name, phone, address) VALUES (new.patient_id, new.name, new.phone, new.address); END",
+            "CREATE TRIGGER IF NOT EXISTS patients_fts_ad AFTER DELETE ON patients BEGIN "
+                + "INSERT INTO patients_fts(patients_fts, rowid, name, phone, address) "
+                + "VALUES ('delete', old.patient_id, old.name, old.phone, old.address); END",
+            "CREATE TRIGGER IF NOT EXISTS patients_fts_au AFTER UPDATE OF name, phone, address ON patients BEGIN "
+                + "INSERT INTO patients_fts(patients_fts, rowid, name, phone, address) "
+                + "VALUES ('delete', old.patient_id, old.name, old.phone, old.address); "
+                + "INSERT INTO patients_fts(rowid, name, phone, address) VALUES (new.patient_id, new.name, new.phone, new.address); END",
+            "CREATE VIRTUAL TABLE IF NOT EXISTS appointments_fts USING fts5("
+                + "symptoms, content='appointments', content_rowid='appointment_id', prefix='2 3')",
+            "CREATE TRIGGER IF NOT EXISTS appointments_fts_ai AFTER INSERT ON appointments BEGIN "
+                + "INSERT INTO appointments_fts(rowid, symptoms) VALUES (new.appointment_id, new.symptoms); END",
+            "CREATE TRIGGER IF NOT EXISTS appointments_fts_ad AFTER DELETE ON appointments BEGIN "
+                + "INSERT INTO appointments_fts(appointments_fts, rowid, symptoms) VALUES ('delete', old.appointment_id, old.symptoms); END",
+            "CREATE TRIGGER IF NOT EXISTS appointments_fts_au AFTER UPDATE OF symptoms ON appointments BEGIN "
+                + "INSERT INTO appointments_fts(appointments_fts, rowid, symptoms) VALUES ('delete', old.appointment_id, old.symptoms); "
+                + "INSERT INTO appointments_fts(rowid, symptoms) VALUES (new.appointment_id, new.symptoms); END",
+            // index rows that existed before this migration
+            "INSERT INTO patients_fts(patients_fts) VALUES ('rebuild')",
+            "INSERT INTO appointments_fts(appointments_fts) VALUES ('rebuild')");
+
+        // 5: slot scheduling. One appointment per doctor per start minute, enforced by the
+        //    database. Older double bookings keep their text time but lose appt_minute
+        //    (NULLs don't collide); the unique index replaces idx_appointments_doctor_day.
+        add(5, "unique doctor slots",
+            "UPDATE appointments SET appt_minute = NULL WHERE appt_minute IS NOT NULL AND appointment_id NOT IN ("
+                + "SELECT MIN(appointment_id) FROM appointments WHERE appt_minute IS NOT NULL "
+                + "GROUP BY doctor_id, appt_day, appt_minute)",
+            "CREATE UNIQUE INDEX IF NOT EXISTS ux_appointments_slot ON appointments(doctor_id, appt_day, appt_minute)",
+            "DROP INDEX IF EXISTS idx_appointments_doctor_day",
+            // optional per-doctor working hours (weekday 1 = Monday); doctors without rows use schedule.* defaults
+            "CREATE TABLE IF NOT EXISTS doctor_hours ("
+                + "doctor_id INTEGER NOT NULL REFERENCES doctors(doctor_id) ON DELETE CASCADE, "
+                + "weekday INTEGER NOT NULL CHECK (weekday BETWEEN 1 AND 7), "
+                + "start_minute INTEGER NOT NULL, end_minute INTEGER NOT NULL, "
+                + "PRIMARY KEY (doctor_id, weekday)) WITHOUT ROWID");
+
+        // 6: waitlist per doctor/day. The partial index holds only open entries, in the
+        //    order they are offered a freed slot (priority, then first come).
+        add(6, "waitlist",
+            "CREATE TABLE IF NOT EXISTS waitlist ("
+                + "waitlist_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "patient_id INTEGER NOT NULL REFERENCES patients(patient_id) ON DELETE CASCADE, "
+                + "doctor_id INTEGER NOT NULL REFERENCES doctors(doctor_id) ON DELETE CASCADE, "
+                + "appt_day INTEGER NOT NULL, "
+                + "earliest_minute INTEGER, latest_minute INTEGER, "   // NULL = any time that day
+                + "priority INTEGER NOT NULL DEFAULT 0, "                // higher goes first
+                + "symptoms TEXT, "
+                + "status TEXT NOT NULL DEFAULT 'WAITING', "             // WAITING, BOOKED, REMOVED
+                + "appointment_id INTEGER, "
+                + "created_at TEXT NOT NULL DEFAULT (datetime('now')))",
+            "CREATE INDEX IF NOT EXISTS idx_waitlist_open ON waitlist(doctor_id, appt_day, priority DESC, waitlist_id) "
+                + "WHERE status = 'WAITING'");
+
+        // 7: per doctor/day aggregates for the calendar, maintained by triggers. first/last
+        //    are re-read with MIN/MAX on the unique slot index, a two-row lookup.
+        add(7, "appointment day stats",
+            "CREATE TABLE IF NOT EXISTS appointment_day_stats ("
+                + "doctor_id INTEGER NOT NULL REFERENCES doctors(doctor_id) ON DELETE CASCADE, "
+                + "appt_day INTEGER NOT NULL, appt_count INTEGER NOT NULL, "
+                + "first_minute INTEGER, last_minute INTEGER, "
+                + "PRIMARY KEY (doctor_id, appt_day)) WITHOUT ROWID",
+            "CREATE TRIGGER IF NOT EXISTS appt_stats_ai AFTER INSERT ON appointments "
+                + "WHEN new.appt_day IS NOT NULL BEGIN " + STATS_ADD + " END",
+            "CREATE TRIGGER IF NOT EXISTS appt_stats_ad AFTER DELETE ON appointments "
+                + "WHEN old.appt_day IS NOT NULL BEGIN " + STATS_REMOVE + " END",
+            "CREATE TRIGGER IF NOT EXISTS appt_stats_au_old AFTER UPDATE OF doctor_id, appt_day, appt_minute ON appointments "
+                + "WHEN old.appt_day IS NOT NULL BEGIN " + STATS_REMOVE + " END",
+            "CREATE TRIGGER IF NOT EXISTS appt_stats_au_new AFTER UPDATE OF doctor_id, appt_day, appt_minute ON appointments "
+                + "WHEN new.appt_day IS NOT NULL BEGIN " + STATS_ADD + " END",
+            "INSERT OR REPLACE INTO appointment_day_stats (doctor_id, appt_day, appt_count, first_minute, last_minute) "
+                + "SELECT doctor_id, appt_day, COUNT(*), MIN(appt_minute), MAX(appt_minute) "
+                + "FROM appointments WHERE appt_day IS NOT NULL GROUP BY doctor_id, appt_day");
+
+        // 8: change log for incremental exports. Every appointment write appends
+        //    (row id, op); change_id only grows, so "since the last export" is a rowid
+        //    range scan. export_watermarks stores how far each feed has read.
+        add(8, "change log",
+            "CREATE TABLE IF NOT EXISTS change_log ("
+                + "change_id INTEGER PRIMARY KEY AUTOINCREMENT, "
+                + "tbl TEXT NOT NULL, row_id INTEGER NOT NULL, "
+                + "op TEXT NOT NULL, "                                   // I, U or D
+                + "changed_at TEXT NOT NULL DEFAULT (datetime('now')))",
+            "CREATE TRIGGER IF NOT EXISTS appointments_log_ai AFTER INSERT ON appointments BEGIN "
+                + "INSERT INTO change_log (tbl, row_id, op) VALUES ('appointments', new.appointment_id, 'I'); END",
+            "CREATE TRIGGER IF NOT EXISTS appointments_log_au AFTER UPDATE ON appointments BEGIN "
+                + "INSERT INTO change_log (tbl, row_id, op) VALUES ('appointments', new.appointment_id, 'U'); END",
+            "CREATE TRIGGER IF NOT EXISTS appointments_log_ad AFTER DELETE ON appointments BEGIN "
+                + "INSERT INTO change_log (tbl, row_id, op) VALUES ('appointments', old.appointment_id, 'D'); END",
+            "CREATE TABLE IF NOT EXISTS export_watermarks ("
+                + "feed TEXT PRIMARY KEY, last_change_id INTEGER NOT NULL, "
+                + "exported_at TEXT NOT NULL DEFAULT (datetime('now'))) WITHOUT ROWID");
+
+        // 9: one open waitlist entry per patient, doctor and day. Existing duplicates
+        //    keep the entry that would be offered first; the others are marked REMOVED.
+        add(9, "unique open waitlist entry",
+            "UPDATE waitlist SET status = 'REMOVED' WHERE status = 'WAITING' AND EXISTS ("
+                + "SELECT 1 FROM waitlist w WHERE w.status = 'WAITING' AND w.patient_id = waitlist.patient_id "
+                + "AND w.doctor_id = waitlist.doctor_id AND w.appt_day = waitlist.appt_day "
+                + "AND (w.priority > waitlist.priority "
+                + "OR (w.priority = waitlist.priority AND w.waitlist_id < waitlist.waitlist_id)))",
+            "CREATE UNIQUE INDEX IF NOT EXISTS ux_waitlist_open_patient ON waitlist(patient_id, doctor_id, appt_day) "
+                + "WHERE status = 'WAITING'");
+
+        // 10: drop the v2 covering login index: it kept a second copy of every password
+        //     for a query run once per session. The UNIQUE(username) index answers it.
+        add(10, "drop covering login index",
+            "DROP INDEX IF EXISTS idx_users_login");
+    }
+
+    private static void add(int version, String description, String... statements) {
+        add(version, description, c -> {
+            try (Statement st = c.createStatement()) {
+                for (String s : statements) st.execute(s);
+            }
+        });
+    }
+
+    private static void add(int version, String description, Step step) {
+        MIGRATIONS.add(new Migration(version, description, step));
+    }
+
+    public static int latestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version;
+    }
+
+    // ---- APPLY PENDING MIGRATIONS ----
+    public static void migrate() throws SQLException {
+        try (Connection c = DBConnection.getConnection()) {
+            int current = currentVersion(c);
+            if (current >= latestVersion()) return; // already current: no DDL at all
+
+            try (Statement st = c.createStatement()) {
+                st.execute("CREATE TABLE IF NOT EXISTS schema_version ("
+                        + "version INTEGER PRIMARY KEY, description TEXT NOT NULL, "
+                        + "applied_at TEXT NOT NULL DEFAULT (datetime('now')))");
+            }
+
+            for (Migration m : MIGRATIONS) {
+                if (m.version <= current) continue;
+                applyOne(c, m);
+            }
+
+            try (Statement st = c.createStatement()) {
+                st.execute("PRAGMA optimize");
+            } catch (SQLException ignore) {}
+        }
+    }
+
+    private static void applyOne(Connection c, Migration m) throws SQLException {
+        try (Statement st = c.createStatement()) {
+            // IMMEDIATE takes the write lock up front, so two app instances starting
+            // together can't both apply the same migration
+            st.execute("BEGIN IMMEDIATE");
+            try {
+                if (currentVersion(c) >= m.version) {
+                    st.execute("ROLLBACK");
+                    return;
+                }
+                m.step.apply(c);
+                try (PreparedStatement ps = c.prepareStatement(
+                        "INSERT INTO schema_version (version, description) VALUES (?, ?)")) {
+                    ps.setInt(1, m.version);
+                    ps.setString(2, m.description);
+                    ps.executeUpdate();
+                }
+                st.execute("COMMIT");
+                System.out.println("SchemaMigrations: applied v" + m.version + " (" + m.description + ")");
+            } catch (SQLException | RuntimeException ex) {
+                try { st.execute("ROLLBACK"); } catch (SQLException ignore) {}
+                throw new SQLException("Migration v" + m.version + " (" + m.description + ") failed: "
+                        + ex.getMessage(), ex);
+            }
+        }
+    }
+
+    private static int currentVersion(Connection c) {
+        try (Statement st = c.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MAX(version) FROM schema_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        } catch (SQLException ex) {
+            return 0; // schema_version not created yet
+        }
+    }
+}
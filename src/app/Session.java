@@ -1,8 +1,103 @@
 package app;
 
-public class Session {
-    public static String currentUsername = null;
-    public static String currentUserRole = "guest";
-    public static int currentUserId = -1; // optional: links to users.user_id
-    public static int currentPatientId = -1; // if logged-in user is a patient, stores their patient_id
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+// Who is signed in and what they may do. Built once at login and never
+// changed afterwards, so it can be handed to background threads and the
+// data layer without synchronisation. The permission set is resolved from
+// the role here, once; everything else asks has(...) instead of comparing
+// role strings.
+public final class Session {
+
+    // not signed in: can only look at the doctor list
+    public static final Session GUEST = new Session(-1, null, "guest", -1);
+
+    // command-line tools and background jobs that run without a login
+    public static final Session SYSTEM = new Session(-1, "system", "system", -1);
+
+    public final int userId;       // users.user_id, -1 if none
+    public final String username;
+    public final String role;      // lower-case
+    public final int patientId;    // the user's own patients.patient_id, -1 if not a patient
+    private final Set<Permission> permissions;
+
+    private Session(int userId, String username, String role, int patientId) {
+        this.userId = userId;
+        this.username = username;
+        this.role = role;
+        this.patientId = patientId;
+        this.permissions = Collections.unmodifiableSet(permissionsFor(role, patientId));
+    }
+
+    // role null/unknown = guest permissions; patientRefId <= 0 = no patient record
+    public static Session of(int userId, String username, String role, int patientRefId) {
+        String r = role == null ? "guest" : role.trim().toLowerCase();
+        if (r.equals("system")) r = "guest"; // SYSTEM is not something a users row can claim
+        return new Session(userId, username, r, patientRefId > 0 ? patientRefId : -1);
+    }
+
+    private static EnumSet<Permission> permissionsFor(String role, int patientId) {
+        switch (role) {
+            case "system":
+            case "admin":
+                return EnumSet.allOf(Permission.class);
+            case "receptionist":
+                return EnumSet.complementOf(EnumSet.of(Permission.MANAGE_DOCTORS, Permission.IMPORT_DOCTORS,
+                        Permission.EXPORT_ALL));
+            case "patient":
+                // without a linked patient record there is nothing of their own to see or book
+                return patientId > 0 ? EnumSet.of(Permission.BOOK_OWN, Permission.VIEW_OWN_APPOINTMENTS)
+                                     : EnumSet.noneOf(Permission.class);
+            default:
+                return EnumSet.of(Permission.VIEW_DOCTORS);
+        }
+    }
+
+    // ---- CHECKS ----
+
+    public boolean has(Permission p) {
+        return permissions.contains(p);
+    }
+
+    public Set<Permission> permissions() {
+        return permissions;
+    }
+
+    public void require(Permission p) throws AccessDeniedException {
+        if (!has(p)) throw new AccessDeniedException("You don't have permission to do that (" + describe(p) + ").");
+    }
+
+    // book / move / cancel an appointment of this patient
+    public boolean mayActFor(int appointmentPatientId) {
+        return has(Permission.BOOK_ANY_PATIENT)
+            || (has(Permission.BOOK_OWN) && patientId > 0 && appointmentPatientId == patientId);
+    }
+
+    public void requireActFor(int appointmentPatientId) throws AccessDeniedException {
+        if (!mayActFor(appointmentPatientId)) {
+            throw new AccessDeniedException("You can only manage your own appointments.");
+        }
+    }
+
+    // -1 when every appointment is visible, else the only patient_id whose
+    // appointments are (0 = none, which matches no row)
+    public int appointmentScope() {
+        if (has(Permission.VIEW_ALL_APPOINTMENTS)) return -1;
+        return has(Permission.VIEW_OWN_APPOINTMENTS) && patientId > 0 ? patientId : 0;
+    }
+
+    public boolean isPatient() {
+        return role.equals("patient");
+    }
+
+    private static String describe(Permission p) {
+        return p.name().toLowerCase().replace('_', ' ');
+    }
+
+    @Override
+    public String toString() {
+        return (username == null ? "guest" : username) + " (" + role + ")";
+    }
 }
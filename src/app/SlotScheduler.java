@@ -0,0 +1,384 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Fixed-length appointment slots inside each doctor's working hours.
+// Occupancy is cached per doctor and day as a bitmap (one bit per slot)
+// read from appointments on first use, so checking a slot is a bit test.
+// The unique index on (doctor_id, appt_day, appt_minute) is what actually
+// prevents double booking across desks; the cache only answers quickly and
+// expires after schedule.cacheSeconds so other desks' changes show up.
+public class SlotScheduler {
+
+    // working hours for one doctor on one weekday, as minutes since midnight
+    public static final class Hours {
+        public final int start, end, slotMinutes;
+
+        Hours(int start, int end, int slotMinutes) {
+            this.start = start;
+            this.end = end;
+            this.slotMinutes = slotMinutes;
+        }
+
+        public int slotCount() { return Math.max(0, (end - start) / slotMinutes); }
+
+        public int minuteOf(int slot) { return start + slot * slotMinutes; }
+
+        // slot index for a start minute, or -1 if it's outside hours or not on a slot boundary
+        public int slotOf(int minute) {
+            if (minute < start || (minute - start) % slotMinutes != 0) return -1;
+            int slot = (minute - start) / slotMinutes;
+            return slot < slotCount() ? slot : -1;
+        }
+    }
+
+    private static final class DaySlots {
+        final Hours hours;
+        final long[] bits;
+        final long loadedAt = System.currentTimeMillis();
+
+        DaySlots(Hours hours) {
+            this.hours = hours;
+            this.bits = new long[(hours.slotCount() + 63) / 64];
+        }
+
+        synchronized boolean isFree(int slot) { return (bits[slot >> 6] & (1L << slot)) == 0; }
+
+        synchronized void set(int slot, boolean taken) {
+            if (taken) bits[slot >> 6] |= (1L << slot); else bits[slot >> 6] &= ~(1L << slot);
+        }
+    }
+
+    private static final int SLOT_MINUTES = Math.max(5, DBConfig.getInt("schedule.slotMinutes", 15));
+    private static final int DAY_START = parseMinute(DBConfig.get("schedule.dayStart", "09:00"), 9 * 60);
+    private static final int DAY_END = parseMinute(DBConfig.get("schedule.dayEnd", "17:00"), 17 * 60);
+    private static final Set<DayOfWeek> WORK_DAYS = parseDays(DBConfig.get("schedule.workDays", "MON,TUE,WED,THU,FRI,SAT"));
+    private static final long CACHE_MILLIS = DBConfig.getLong("schedule.cacheSeconds", 60) * 1000L;
+
+    // (doctor_id << 32 | epoch day) -> occupancy of that day
+    private static final Map<Long, DaySlots> DAYS = new ConcurrentHashMap<>();
+    // doctor_id -> weekday (1-7) -> hours, from doctor_hours; doctors without rows use the defaults
+    private static volatile Map<Integer, Map<Integer, Hours>> doctorHours;
+
+    // ---- WORKING HOURS ----
+
+    // null when the doctor doesn't work that day
+    public static Hours hoursFor(Connection c, int doctorId, LocalDate day) throws SQLException {
+        return hoursFor(doctorHours(c), doctorId, day);
+    }
+
+    static Hours hoursFor(Map<Integer, Map<Integer, Hours>> all, int doctorId, LocalDate day) {
+        Map<Integer, Hours> own = all.get(doctorId);
+        if (own != null) return own.get(day.getDayOfWeek().getValue());
+        return WORK_DAYS.contains(day.getDayOfWeek()) ? new Hours(DAY_START, DAY_END, SLOT_MINUTES) : null;
+    }
+
+    // doctor_id -> ISO weekday -> hours; doctors without rows use the configured defaults
+    static Map<Integer, Map<Integer, Hours>> doctorHours(Connection c) throws SQLException {
+        Map<Integer, Map<Integer, Hours>> m = doctorHours;
+        if (m != null) return m;
+        m = new HashMap<>();
+        try (PreparedStatement pst = c.prepareStatement(
+                "SELECT doctor_id, weekday, start_minute, end_minute FROM doctor_hours");
+             ResultSet rs = pst.executeQuery()) {
+            while (rs.next()) {
+                m.computeIfAbsent(rs.getInt(1), k -> new HashMap<>())
+                 .put(rs.getInt(2), new Hours(rs.getInt(3), rs.getInt(4), SLOT_MINUTES));
+            }
+        }
+        doctorHours = m;
+        return m;
+    }
+
+    // ---- OCCUPANCY ----
+
+    // free slot start minutes for one doctor/day (empty if the doctor is off)
+    public static List<Integer> freeMinutes(Connection c, int doctorId, LocalDate day) throws SQLException {
+        List<Integer> out = new ArrayList<>();
+        DaySlots ds = slots(c, doctorId, day);
+        if (ds == null) return out;
+        for (int s = 0; s < ds.hours.slotCount(); s++) {
+            if (ds.isFree(s)) out.add(ds.hours.minuteOf(s));
+        }
+        return out;
+    }
+
+    // throws a ValidationException (with alternatives) unless the slot can be booked
+    public static void checkBookable(Connection c, int doctorId, LocalDate day, int minute) throws SQLException, ValidationException {
+        try {
+            checkSlot(c, doctorId, day, minute);
+        } catch (ValidationException ex) {
+            throw new ValidationException(ex.getMessage() + alternatives(c, doctorId, day, minute));
+        }
+    }
+
+    // the same check with a short message and no alternatives (used per date of a series)
+    public static void checkSlot(Connection c, int doctorId, LocalDate day, int minute) throws SQLException, ValidationException {
+        DaySlots ds = slots(c, doctorId, day);
+        int slot = checkHours(ds == null ? null : ds.hours, day, minute);
+        if (!ds.isFree(slot)) {
+            throw new ValidationException("The doctor is already booked at " + DateTimeUtils.formatMinute(minute) + " on " + day + ".");
+        }
+    }
+
+    // working day, hours and slot grid only (h = hoursFor(...)); returns the slot index
+    static int checkHours(Hours h, LocalDate day, int minute) throws ValidationException {
+        if (h == null || h.slotCount() == 0) {
+            throw new ValidationException("The doctor doesn't work on " + day.getDayOfWeek() + " " + day + ".");
+        }
+        int slot = h.slotOf(minute);
+        if (slot < 0) {
+            throw new ValidationException("Appointments are " + h.slotMinutes + "-minute slots between "
+                    + DateTimeUtils.formatMinute(h.start) + " and " + DateTimeUtils.formatMinute(h.end) + ".");
+        }
+        return slot;
+    }
+
+    // the message for a slot that turned out to be taken (also used when the unique index fires)
+    public static ValidationException conflict(Connection c, int doctorId, LocalDate day, int minute) throws SQLException {
+        return new ValidationException("The doctor is already booked at " + DateTimeUtils.formatMinute(minute)
+                + " on " + day + "." + alternatives(c, doctorId, day, minute));
+    }
+
+    // true if the insert/update lost a race for the slot to another desk
+    public static boolean isSlotTaken(SQLException ex) {
+        String msg = String.valueOf(ex.getMessage());
+        return msg.contains("UNIQUE constraint failed: appointments.");
+    }
+
+    // up to n free slots closest to the wanted time, that day first, then the following two weeks
+    public static List<LocalDateTime> suggest(Connection c, int doctorId, LocalDate day, int minute, int n) throws SQLException {
+        List<LocalDateTime> out = new ArrayList<>();
+        List<Integer> free = freeMinutes(c, doctorId, day);
+        free.sort((a, b) -> Math.abs(a - minute) - Math.abs(b - minute));
+        for (int m : free) {
+            if (out.size() >= n) return out;
+            out.add(day.atTime(LocalTime.of(m / 60, m % 60)));
+        }
+        for (int i = 1; i <= 14 && out.size() < n; i++) {
+            LocalDate d = day.plusDays(i);
+            for (int m : freeMinutes(c, doctorId, d)) {
+                if (out.size() >= n) break;
+                out.add(d.atTime(LocalTime.of(m / 60, m % 60)));
+            }
+        }
+        return out;
+    }
+
+    private static String alternatives(Connection c, int doctorId, LocalDate day, int minute) throws SQLException {
+        List<LocalDateTime> alt = suggest(c, doctorId, day, minute, 5);
+        if (alt.isEmpty()) return "";
+        StringBuilder sb = new StringBuilder("\n\nFree slots:");
+        for (LocalDateTime t : alt) {
+            sb.append("\n  ").append(t.toLocalDate()).append("  ")
+              .append(DateTimeUtils.formatMinute(t.getHour() * 60 + t.getMinute()));
+        }
+        return sb.toString();
+    }
+
+    // ---- NEXT AVAILABLE (across doctors) ----
+
+    public static final class Opening {
+        public final int doctorId;
+        public final String doctorName;
+        public final LocalDateTime start;
+
+        Opening(int doctorId, String doctorName, LocalDateTime start) {
+            this.doctorId = doctorId;
+            this.doctorName = doctorName;
+            this.start = start;
+        }
+    }
+
+    // The n earliest free slots from `earliest` on, over every doctor whose specialization
+    // matches (blank = all doctors), looking horizonDays ahead. Missing days are read in
+    // one query; the scan itself is in memory, one doctor per fork-join task.
+    public static List<Opening> nextAvailable(Connection c, String specialization, LocalDate earliest,
+                                              int n, int horizonDays) throws SQLException {
+        Map<Integer, String> doctors = new java.util.LinkedHashMap<>();
+        String spec = specialization == null ? "" : specialization.trim();
+        String sql = "SELECT doctor_id, name FROM doctors"
+                + (spec.isEmpty() ? "" : " WHERE specialization = ? COLLATE NOCASE");
+        try (PreparedStatement pst = c.prepareStatement(sql)) {
+            if (!spec.isEmpty()) pst.setString(1, spec);
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) doctors.put(rs.getInt(1), rs.getString(2));
+            }
+        }
+        if (doctors.isEmpty() || n <= 0) return new ArrayList<>();
+
+        LocalDate last = earliest.plusDays(Math.max(0, horizonDays - 1));
+        Map<Integer, Map<Integer, Hours>> hours = doctorHours(c);
+        preload(c, hours, doctors.keySet(), earliest, last);
+
+        // if the search starts today, slots that have already begun don't count
+        LocalDateTime now = LocalDateTime.now();
+        int nowMinute = earliest.equals(now.toLocalDate()) ? now.getHour() * 60 + now.getMinute() : -1;
+
+        return doctors.entrySet().parallelStream()
+            .flatMap(d -> scanDoctor(hours, d.getKey(), d.getValue(), earliest, last, nowMinute, n).stream())
+            .sorted((a, b) -> {
+                int cmp = a.start.compareTo(b.start);
+                return cmp != 0 ? cmp : Integer.compare(a.doctorId, b.doctorId);
+            })
+            .limit(n)
+            .collect(java.util.stream.Collectors.toList());
+    }
+
+    // this doctor's first n free slots in [from, to]; reads only cached bitmaps
+    private static List<Opening> scanDoctor(Map<Integer, Map<Integer, Hours>> hours, int doctorId, String name,
+                                            LocalDate from, LocalDate to, int nowMinute, int n) {
+        List<Opening> out = new ArrayList<>(n);
+        for (LocalDate day = from; !day.isAfter(to) && out.size() < n; day = day.plusDays(1)) {
+            if (hoursFor(hours, doctorId, day) == null) continue;
+            DaySlots ds = DAYS.get(key(doctorId, day.toEpochDay()));
+            if (ds == null) continue; // evicted by a concurrent invalidation; skip rather than block
+            for (int s = 0; s < ds.hours.slotCount() && out.size() < n; s++) {
+                int m = ds.hours.minuteOf(s);
+                if (day.equals(from) && m <= nowMinute) continue;
+                if (ds.isFree(s)) out.add(new Opening(doctorId, name, day.atTime(m / 60, m % 60)));
+            }
+        }
+        return out;
+    }
+
+    // fills the cache for every (doctor, working day) in the range that isn't cached or fresh,
+    // with a single range query instead of one query per doctor and day
+    private static void preload(Connection c, Map<Integer, Map<Integer, Hours>> hours,
+                                java.util.Collection<Integer> doctorIds, LocalDate from, LocalDate to) throws SQLException {
+        long now = System.currentTimeMillis();
+        Map<Long, DaySlots> missing = new HashMap<>();
+        for (int id : doctorIds) {
+            for (LocalDate day = from; !day.isAfter(to); day = day.plusDays(1)) {
+                long k = key(id, day.toEpochDay());
+                DaySlots ds = DAYS.get(k);
+                if (ds != null && now - ds.loadedAt < CACHE_MILLIS) continue;
+                Hours h = hoursFor(hours, id, day);
+                if (h != null && h.slotCount() > 0) missing.put(k, new DaySlots(h));
+            }
+        }
+        if (missing.isEmpty()) return;
+
+        // one doctor: walk the unique slot index; many: the appt_day index
+        boolean one = doctorIds.size() == 1;
+        try (PreparedStatement pst = c.prepareStatement(
+                "SELECT doctor_id, appt_day, appt_minute FROM appointments "
+                + "WHERE " + (one ? "doctor_id = ? AND " : "") + "appt_day BETWEEN ? AND ? AND appt_minute IS NOT NULL")) {
+            int i = 1;
+            if (one) pst.setInt(i++, doctorIds.iterator().next());
+            pst.setLong(i++, from.toEpochDay());
+            pst.setLong(i, to.toEpochDay());
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    DaySlots ds = missing.get(key(rs.getInt(1), rs.getLong(2)));
+                    if (ds == null) continue;
+                    int m = rs.getInt(3);
+                    Hours h = ds.hours;
+                    if (m >= h.start && m < h.start + h.slotCount() * h.slotMinutes) ds.set((m - h.start) / h.slotMinutes, true);
+                }
+            }
+        }
+        DAYS.putAll(missing);
+    }
+
+    // loads a doctor's days in [from, to] with one query (e.g. before checking a long series)
+    public static void warm(Connection c, int doctorId, LocalDate from, LocalDate to) throws SQLException {
+        preload(c, doctorHours(c), java.util.Collections.singleton(doctorId), from, to);
+    }
+
+    // distinct specializations, for pickers
+    public static List<String> specializations(Connection c) throws SQLException {
+        List<String> out = new ArrayList<>();
+        try (PreparedStatement pst = c.prepareStatement(
+                "SELECT DISTINCT specialization FROM doctors WHERE specialization IS NOT NULL AND specialization <> '' "
+                + "ORDER BY specialization COLLATE NOCASE");
+             ResultSet rs = pst.executeQuery()) {
+            while (rs.next()) out.add(rs.getString(1));
+        }
+        return out;
+    }
+
+    // ---- CACHE UPDATES (call after the write has committed) ----
+
+    public static void occupy(int doctorId, long day, Integer minute) { mark(doctorId, day, minute, true); }
+
+    public static void release(int doctorId, long day, Integer minute) { mark(doctorId, day, minute, false); }
+
+    private static void mark(int doctorId, long day, Integer minute, boolean taken) {
+        if (minute == null) return;
+        DaySlots ds = DAYS.get(key(doctorId, day));
+        if (ds == null) return; // not cached; read fresh when needed
+        int slot = ds.hours.slotOf(minute);
+        if (slot >= 0) ds.set(slot, taken);
+    }
+
+    public static void invalidate(int doctorId, long day) { DAYS.remove(key(doctorId, day)); }
+
+    public static void invalidateDoctor(int doctorId) { DAYS.keySet().removeIf(k -> (int) (k >>> 32) == doctorId); }
+
+    public static void invalidateAll() {
+        DAYS.clear();
+        doctorHours = null;
+    }
+
+    private static DaySlots slots(Connection c, int doctorId, LocalDate day) throws SQLException {
+        long k = key(doctorId, day.toEpochDay());
+        DaySlots ds = DAYS.get(k);
+        if (ds != null && System.currentTimeMillis() - ds.loadedAt < CACHE_MILLIS) return ds;
+
+        Hours h = hoursFor(c, doctorId, day);
+        if (h == null || h.slotCount() == 0) {
+            DAYS.remove(k);
+            return null;
+        }
+        ds = new DaySlots(h);
+        try (PreparedStatement pst = c.prepareStatement(
+                "SELECT appt_minute FROM appointments WHERE doctor_id = ? AND appt_day = ? AND appt_minute IS NOT NULL")) {
+            pst.setInt(1, doctorId);
+            pst.setLong(2, day.toEpochDay());
+            try (ResultSet rs = pst.executeQuery()) {
+                while (rs.next()) {
+                    // legacy times off the slot grid still block the slot they fall in
+                    int m = rs.getInt(1);
+                    if (m >= h.start && m < h.start + h.slotCount() * h.slotMinutes) ds.set((m - h.start) / h.slotMinutes, true);
+                }
+            }
+        }
+        DAYS.put(k, ds);
+        return ds;
+    }
+
+    private static long key(int doctorId, long epochDay) {
+        return ((long) doctorId << 32) | (epochDay & 0xFFFFFFFFL);
+    }
+
+    private static int parseMinute(String s, int def) {
+        LocalTime t = DateTimeUtils.parseTime(s);
+        return t == null ? def : DateTimeUtils.toMinuteOfDay(t);
+    }
+
+    private static Set<DayOfWeek> parseDays(String s) {
+        Set<DayOfWeek> out = EnumSet.noneOf(DayOfWeek.class);
+        for (String part : s.split(",")) {
+            String p = part.trim().toUpperCase();
+            for (DayOfWeek d : DayOfWeek.values()) {
+                if (!p.isEmpty() && d.name().startsWith(p)) out.add(d);
+            }
+        }
+        return out.isEmpty() ? EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.SATURDAY) : out;
+    }
+}
@@ -0,0 +1,10 @@
+package app;
+
+// A rule the user broke (unknown patient, slot taken, ...). The message is
+// shown to the user as-is, unlike SQLExceptions which are reported as DB errors.
+public class ValidationException extends Exception {
+
+    public ValidationException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,152 @@
+package app;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Patients waiting for a doctor on a given day. When an appointment is
+// cancelled or moved, AppointmentService reports the freed slot here and
+// the matcher thread books it for the best waiting entry for that exact
+// doctor/day: one indexed lookup per freed slot, never a scan of the list.
+public class Waitlist {
+
+    // one thread, so two freed slots never race for the same entry in this process
+    private static final ExecutorService MATCHER = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "waitlist-matcher");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // ---- ENTRIES ----
+
+    // earliest/latest: minute-of-day window, null = any time that day. Returns the new id.
+    // Patients may only add themselves, and only staff may raise the priority.
+    public static int add(Session session, int patientId, int doctorId, LocalDate day, Integer earliestMinute,
+                          Integer latestMinute, int priority, String symptoms) throws SQLException, ValidationException {
+        session.requireActFor(patientId);
+        if (priority != 0) session.require(Permission.MANAGE_WAITLIST);
+        if (earliestMinute != null && latestMinute != null && earliestMinute > latestMinute) {
+            throw new ValidationException("The earliest time must not be after the latest time.");
+        }
+        String sql = "INSERT INTO waitlist (patient_id, doctor_id, appt_day, earliest_minute, latest_minute, priority, symptoms) "
+                   + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        try (Connection c = DBConnection.getConnection();
+             PreparedStatement pst = c.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            pst.setInt(1, patientId);
+            pst.setInt(2, doctorId);
+            pst.setLong(3, day.toEpochDay());
+            pst.setObject(4, earliestMinute);
+            pst.setObject(5, latestMinute);
+            pst.setInt(6, priority);
+            pst.setString(7, symptoms);
+            try {
+                pst.executeUpdate();
+            } catch (SQLException ex) {
+                if (String.valueOf(ex.getMessage()).contains("FOREIGN KEY")) {
+                    throw new ValidationException("That patient or doctor no longer exists.");
+                }
+                if (String.valueOf(ex.getMessage()).contains("UNIQUE")) {
+                    throw new ValidationException("This patient is already on the waitlist for that doctor and day.");
+                }
+                throw ex;
+            }
+            try (ResultSet keys = pst.getGeneratedKeys()) {
+                int id = keys.next() ? keys.getInt(1) : -1;
+                DataChangeBus.inserted("waitlist", id);
+                return id;
+            }
+        }
+    }
+
+    public static void remove(Session session, int waitlistId) throws SQLException, ValidationException {
+        session.require(Permission.MANAGE_WAITLIST);
+        try (Connection c = DBConnection.getConnection();
+             PreparedStatement pst = c.prepareStatement(
+                     "UPDATE waitlist SET status = 'REMOVED' WHERE waitlist_id = ? AND status = 'WAITING'")) {
+            pst.setInt(1, waitlistId);
+            if (pst.executeUpdate() > 0) DataChangeBus.updated("waitlist", waitlistId);
+        }
+    }
+
+    // ---- MATCHING ----
+
+    // called after a cancellation/move has committed
+    public static void slotFreed(int doctorId, long day, Integer minute) {
+        if (minute == null) return; // legacy row without a slot
+        MATCHER.execute(() -> {
+            try {
+                match(doctorId, day, minute);
+            } catch (Exception ex) {
+                ex.printStackTrace();
+            }
+        });
+    }
+
+    private static void match(int doctorId, long day, int minute) throws SQLException, ValidationException {
+        String pick = "SELECT waitlist_id, patient_id, symptoms FROM waitlist "
+                    + "WHERE doctor_id = ? AND appt_day = ? AND status = 'WAITING' "
+                    + "AND (earliest_minute IS NULL OR earliest_minute <= ?) "
+                    + "AND (latest_minute IS NULL OR latest_minute >= ?) "
+                    + "ORDER BY priority DESC, waitlist_id LIMIT 1";
+        String ins = "INSERT INTO appointments (patient_id, doctor_id, date, time, symptoms, appt_day, appt_minute) "
+                   + "VALUES (?, ?, ?, ?, ?, ?, ?)";
+        String done = "UPDATE waitlist SET status = 'BOOKED', appointment_id = ? WHERE waitlist_id = ?";
+        LocalDate date = LocalDate.ofEpochDay(day);
+
+        // pick + book + mark in one IMMEDIATE transaction, so a desk can't take
+        // the slot or the entry in between
+        int[] booked = AppointmentService.inWriteTransaction(c -> {
+            int waitlistId, patientId;
+            String symptoms;
+            try (PreparedStatement pst = c.prepareStatement(pick)) {
+                pst.setInt(1, doctorId);
+                pst.setLong(2, day);
+                pst.setInt(3, minute);
+                pst.setInt(4, minute);
+                try (ResultSet rs = pst.executeQuery()) {
+                    if (!rs.next()) return null;
+                    waitlistId = rs.getInt(1);
+                    patientId = rs.getInt(2);
+                    symptoms = rs.getString(3);
+                }
+            }
+            int apptId;
+            try (PreparedStatement pst = c.prepareStatement(ins, Statement.RETURN_GENERATED_KEYS)) {
+                pst.setInt(1, patientId);
+                pst.setInt(2, doctorId);
+                pst.setString(3, date.toString());
+                pst.setString(4, DateTimeUtils.formatMinute(minute));
+                pst.setString(5, symptoms);
+                pst.setLong(6, day);
+                pst.setInt(7, minute);
+                try {
+                    pst.executeUpdate();
+                } catch (SQLException ex) {
+                    if (SlotScheduler.isSlotTaken(ex)) return null; // a desk re-booked it first
+                    throw ex;
+                }
+                try (ResultSet keys = pst.getGeneratedKeys()) {
+                    apptId = keys.next() ? keys.getInt(1) : -1;
+                }
+            }
+            try (PreparedStatement pst = c.prepareStatement(done)) {
+                pst.setInt(1, apptId);
+                pst.setInt(2, waitlistId);
+                pst.executeUpdate();
+            }
+            return new int[] { waitlistId, patientId, apptId };
+        });
+        if (booked == null) return;
+
+        SlotScheduler.occupy(doctorId, day, minute);
+        if (booked[2] > 0) DataChangeBus.inserted("appointments", booked[2]); else DataChangeBus.reload("appointments");
+        DataChangeBus.updated("waitlist", booked[0]);
+        System.out.println("Waitlist: entry " + booked[0] + " (patient " + booked[1] + ") booked into doctor "
+                + doctorId + " " + date + " " + DateTimeUtils.formatMinute(minute));
+    }
+}